@@ -3,25 +3,38 @@ package videocutter.app;
 import com.sun.jna.NativeLibrary;
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import uk.co.caprica.vlcj.binding.support.runtime.RuntimeUtil;
 import videocutter.controller.MainController;
+import videocutter.model.AsyncVideoRepository;
 import videocutter.model.Project;
+import videocutter.model.RecentProject;
+import videocutter.model.VaultScanner;
 import videocutter.model.VideoRepository;
 import videocutter.service.FfmpegService;
 import videocutter.view.AppShell;
 import videocutter.view.MainView;
 import videocutter.view.ProjectsView;
+import videocutter.view.ThumbnailService;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import javafx.stage.FileChooser;
 
 public class Main extends Application {
+    private static final Logger LOG = LoggerFactory.getLogger(Main.class);
+
     static {
         String vlcDir = System.getenv("VLC_HOME");
         if (vlcDir == null || vlcDir.isBlank()) {
@@ -35,16 +48,37 @@ public class Main extends Application {
         System.setProperty("VLC_PLUGIN_PATH", vlcDir + "\\plugins");
     }
 
+    private VideoRepository repo;
+    private AsyncVideoRepository db;
+    private ThumbnailService thumbs;
+
+    // Decoded posters kept in memory across the library and the projects screen.
+    private static final long THUMBNAIL_MEMORY_BYTES = 64L << 20;
+    private static final int RECENT_PROJECTS = 24;
+
     @Override
     public void start(Stage stage) throws SQLException {
-        VideoRepository repo = new VideoRepository("videos.db");
+        repo = new VideoRepository("videos.db");
+        // From here on, any SQL on the FX thread is a bug; count and log it.
+        repo.watchUiThread(Platform::isFxApplicationThread);
+        db = new AsyncVideoRepository(repo, Platform::runLater);
+        try {
+            repo.startMediaServer();
+        } catch (RuntimeException e) {
+            // Preview still works; database-backed media is just copied out first.
+            LOG.warn("Media server unavailable", e);
+        }
+        startVaultMaintenance(repo);
+        thumbs = new ThumbnailService(repo::thumbnail, THUMBNAIL_MEMORY_BYTES, Platform::runLater, 2);
 
         AppShell shell = new AppShell();
         ProjectsView home = new ProjectsView();
+        home.setThumbnails(thumbs);
         shell.showProjects(home);
+        showRecentProjects(home, db);
 
         home.setOnNewProject(() -> {
-            openEditor(shell, home, repo, new Project(), null);
+            openEditor(shell, home, db, thumbs, new Project(), null);
         });
 
         home.setOnOpenProject(() -> {
@@ -55,10 +89,15 @@ public class Main extends Application {
             File f = fc.showOpenDialog(shell.getRoot().getScene().getWindow());
             if (f == null) return;
             Project project = new Project();
-            MainController controller = openEditor(shell, home, repo, project, f.toPath());
+            MainController controller = openEditor(shell, home, db, thumbs, project, f.toPath());
             controller.loadFromFile(f.toPath());
         });
 
+        home.setOnOpenRecent(file -> {
+            MainController controller = openEditor(shell, home, db, thumbs, new Project(), file);
+            controller.loadFromFile(file);
+        });
+
         Scene scene = new Scene(shell.getRoot(), 1280, 720);
 
         var css = Main.class.getResource("/videocutter/theme.css");
@@ -72,12 +111,75 @@ public class Main extends Application {
         stage.show();
     }
 
-    private static MainController openEditor(AppShell shell, ProjectsView home,
-                                             VideoRepository repo, Project project, Path saveFile) {
+    /**
+     * Background upkeep, one job after the other so they never compete for the disk: moves media
+     * left inside the database by old versions out to the vault, then garbage-collects the vault.
+     */
+    private static void startVaultMaintenance(VideoRepository repo) {
+        Task<Void> t = new Task<>() {
+            @Override
+            protected Void call() {
+                if (repo.hasLegacyBlobs()) repo.migrateBlobsToVault(p -> updateProgress(p, 1.0));
+                repo.scanVault(VaultScanner.Options.DEFAULT, null);
+                return null;
+            }
+        };
+        t.progressProperty().addListener((obs, ov, nv) -> {
+            int pct = (int) (nv.doubleValue() * 100);
+            if (pct / 10 != (int) (ov.doubleValue() * 100) / 10) LOG.info("Legacy BLOB migration {}%", pct);
+        });
+        t.setOnFailed(e -> LOG.warn("Vault maintenance failed", t.getException()));
+
+        Thread th = new Thread(t, "vault-maintenance");
+        th.setDaemon(true); // every step commits on its own, so stopping midway is safe
+        th.start();
+    }
+
+    /** Fills the projects screen with recently opened or saved projects, off the FX thread. */
+    private static void showRecentProjects(ProjectsView home, AsyncVideoRepository db) {
+        DateTimeFormatter date = DateTimeFormatter.ofPattern("MMM d, yyyy").withZone(ZoneId.systemDefault());
+        db.call(() -> db.blocking().recentProjects(RECENT_PROJECTS)).whenComplete((recent, ex) -> {
+            if (ex != null) {
+                LOG.warn("Could not list recent projects", ex);
+                return;
+            }
+            List<ProjectsView.ProjectCardModel> cards = new ArrayList<>();
+            for (RecentProject r : recent) {
+                long s = r.durationMs() / 1000;
+                cards.add(new ProjectsView.ProjectCardModel(
+                        r.title(),
+                        r.clipCount() == 0 ? "draft" : "editing",
+                        r.clipCount() + (r.clipCount() == 1 ? " clip" : " clips"),
+                        date.format(r.openedAt()),
+                        String.format("%d:%02d", s / 60, s % 60),
+                        r.file(),
+                        r.posterAssetId()));
+            }
+            home.setCards(cards);
+        });
+    }
+
+    @Override
+    public void stop() {
+        if (thumbs != null) thumbs.close();
+        if (db != null) db.close();
+        if (repo != null) {
+            long blocking = repo.uiThreadQueryCount();
+            if (blocking > 0) LOG.warn("{} database call(s) ran on the FX thread this session", blocking);
+            repo.close();
+        }
+    }
+
+    private static MainController openEditor(AppShell shell, ProjectsView home, AsyncVideoRepository db,
+                                             ThumbnailService thumbs, Project project, Path saveFile) {
         MainView editor = new MainView();
-        MainController controller = new MainController(editor, project, repo, new FfmpegService());
+        editor.library().setThumbnails(thumbs);
+        MainController controller = new MainController(editor, project, db, new FfmpegService());
         controller.init();
-        editor.toolbar().backBtn().setOnAction(ev -> shell.showProjects(home));
+        editor.toolbar().backBtn().setOnAction(ev -> {
+            shell.showProjects(home);
+            showRecentProjects(home, db);
+        });
         shell.showEditor(editor);
         return controller;
     }
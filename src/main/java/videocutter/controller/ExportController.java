@@ -6,18 +6,24 @@ import javafx.stage.Window;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import videocutter.app.Main;
+import videocutter.model.MediaLease;
 import videocutter.model.Project;
 import videocutter.model.Resolution;
 import videocutter.model.TimelineClip;
 import videocutter.model.VideoAsset;
 import videocutter.model.VideoRepository;
 import videocutter.service.FfmpegService;
+import videocutter.service.KeyframeIndex;
+import videocutter.service.MediaInfo;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class ExportController {
@@ -47,27 +53,39 @@ public class ExportController {
         Task<Void> t = new Task<>() {
             @Override
             protected Void call() throws Exception {
-                List<FfmpegService.Segment> segs = new ArrayList<>();
-                for (TimelineClip clip : clips) {
-                    VideoAsset asset = repo.findById(clip.assetId());
-                    if (asset == null) {
-                        LOG.warn("Skipping missing asset ID: {}", clip.assetId());
-                        continue;
+                // Resolve every distinct asset up front in one batch instead of per clip.
+                Set<Long> ids = new LinkedHashSet<>();
+                for (TimelineClip clip : clips) ids.add(clip.assetId());
+                Map<Long, VideoAsset> assets = repo.findByIds(ids);
+                // Stored at import, so the render doesn't run ffprobe once per clip.
+                Map<Long, MediaInfo> infos = repo.mediaInfo(assets.keySet());
+                Map<Long, KeyframeIndex> keyframes = repo.keyframes(assets.keySet());
+                // Leases keep database-backed media materialized until ffmpeg is done with it.
+                Map<Long, MediaLease> inputs = repo.openMedia(assets.keySet());
+                try {
+                    List<FfmpegService.Segment> segs = new ArrayList<>();
+                    for (TimelineClip clip : clips) {
+                        MediaLease input = inputs.get(clip.assetId());
+                        if (input == null) {
+                            LOG.warn("Skipping missing asset ID: {}", clip.assetId());
+                            continue;
+                        }
+                        segs.add(new FfmpegService.Segment(input.path(), clip.startMs(), clip.endMs(),
+                                infos.get(clip.assetId()), keyframes.get(clip.assetId())));
                     }
 
-                    Path input = repo.materializeToTemp(asset.id()).toPath();
-                    segs.add(new FfmpegService.Segment(input, clip.startMs(), clip.endMs()));
-                }
-
-                if (segs.isEmpty()) {
-                    throw new IllegalStateException("Nothing to export: timeline has no valid clips.");
-                }
+                    if (segs.isEmpty()) {
+                        throw new IllegalStateException("Nothing to export: timeline has no valid clips.");
+                    }
 
-                // Use a hardcoded resolution for now
-                Resolution resolution = new Resolution(1920, 1080);
+                    // Use a hardcoded resolution for now
+                    Resolution resolution = new Resolution(1920, 1080);
 
-                updateProgress(0, 1);
-                ff.exportTimeline(segs, resolution, save.toPath(), p -> updateProgress(p, 1.0));
+                    updateProgress(0, 1);
+                    ff.exportTimeline(segs, resolution, save.toPath(), p -> updateProgress(p, 1.0));
+                } finally {
+                    inputs.values().forEach(MediaLease::close);
+                }
                 return null;
             }
         };
@@ -0,0 +1,189 @@
+package videocutter.controller;
+
+import javafx.concurrent.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import videocutter.model.ImportPlan;
+import videocutter.model.ImportStrategy;
+import videocutter.model.VideoRepository;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk import: probes files on a small pool, copies them with a tighter I/O limit, and commits
+ * rows in batches so the library is refreshed once per batch rather than once per file.
+ */
+public class ImportController {
+    private static final Logger LOG = LoggerFactory.getLogger(ImportController.class);
+
+    // ffprobe is mostly process startup; a few at once keeps the CPU busy without thrashing.
+    private static final int PROBE_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    // Parallel copies to one disk fight over the head; two keeps SSDs busy and HDDs sane.
+    private static final int COPY_PERMITS = 2;
+    private static final int BATCH_SIZE = 32;
+    private static final long BATCH_WAIT_MS = 500;
+
+    private final VideoRepository repo;
+
+    public ImportController(VideoRepository repo) {
+        this.repo = repo;
+    }
+
+    /**
+     * Task result: what got in and which files failed. {@code duplicates} counts files whose
+     * content was already in the library, whether spotted up front or only once hashed on commit.
+     */
+    public record Result(int imported, int duplicates, List<String> failures) {}
+
+    /**
+     * Imports {@code files} on a background thread. {@code onBatch} runs on the task's thread after
+     * each committed batch (hop to the FX thread yourself); the task message carries throughput.
+     */
+    public Task<Result> importAsync(List<Path> files, ImportStrategy strategy, Runnable onBatch) {
+        Task<Result> t = new Task<>() {
+            @Override
+            protected Result call() throws Exception {
+                ExecutorService pool = Executors.newFixedThreadPool(PROBE_THREADS, r -> {
+                    Thread th = new Thread(r, "import-worker");
+                    th.setDaemon(true);
+                    return th;
+                });
+                Semaphore copies = new Semaphore(COPY_PERMITS);
+                CompletionService<Prepared> done = new ExecutorCompletionService<>(pool);
+
+                for (Path f : files) {
+                    done.submit(() -> {
+                        long t0 = System.nanoTime();
+                        try {
+                            ImportPlan plan = repo.planImport(f, strategy);
+                            if (!plan.isDuplicate() && !plan.isPlaced()) {
+                                copies.acquire();
+                                try {
+                                    plan = repo.placeImport(plan);
+                                } finally {
+                                    copies.release();
+                                }
+                            }
+                            return new Prepared(f, plan, System.nanoTime() - t0, null);
+                        } catch (Exception e) {
+                            return new Prepared(f, null, System.nanoTime() - t0, e);
+                        }
+                    });
+                }
+
+                long started = System.nanoTime();
+                long bytes = 0;
+                int imported = 0;
+                List<String> failures = new ArrayList<>();
+                List<ImportPlan> batch = new ArrayList<>(BATCH_SIZE);
+                int received = 0;
+
+                try {
+                    while (received < files.size() && !isCancelled()) {
+                        // Block for the first result, then sweep whatever else is ready into the batch.
+                        Future<Prepared> next = batch.isEmpty()
+                                ? done.take()
+                                : done.poll(BATCH_WAIT_MS, TimeUnit.MILLISECONDS);
+                        if (next == null) {
+                            imported += commit(batch, onBatch);
+                            continue;
+                        }
+
+                        Prepared p = result(next);
+                        int n = ++received;
+                        if (p.error() != null) {
+                            LOG.warn("Import failed for {}", p.file(), p.error());
+                            failures.add(p.file().getFileName() + ": " + rootMessage(p.error()));
+                        } else {
+                            ImportPlan plan = p.plan();
+                            if (plan.isDuplicate()) {
+                                LOG.info("{} is already in the library as asset {}", p.file().getFileName(), plan.existingId());
+                            } else {
+                                bytes += plan.sizeBytes();
+                                batch.add(plan);
+                            }
+                            LOG.info("Prepared {} ({}) in {} ms, {}", p.file().getFileName(), mb(plan.sizeBytes()),
+                                    p.nanos() / 1_000_000, rate(plan.sizeBytes(), p.nanos()));
+                            updateMessage(String.format("Importing %d/%d · %s %s · avg %s",
+                                    n, files.size(), p.file().getFileName(), rate(plan.sizeBytes(), p.nanos()),
+                                    rate(bytes, System.nanoTime() - started)));
+                        }
+                        updateProgress(n, files.size());
+
+                        if (batch.size() >= BATCH_SIZE) imported += commit(batch, onBatch);
+                    }
+                    imported += commit(batch, onBatch);
+                } finally {
+                    pool.shutdownNow();
+                }
+
+                // Everything prepared that didn't become a new row is a duplicate, found up front or on commit.
+                int duplicates = received - failures.size() - imported;
+                long total = System.nanoTime() - started;
+                LOG.info("Imported {} file(s), {} duplicate(s), {} failure(s): {} in {} ms, {}",
+                        imported, duplicates, failures.size(), mb(bytes), total / 1_000_000, rate(bytes, total));
+                updateMessage(duplicates == 0
+                        ? String.format("Imported %d file(s) · %s · %s", imported, mb(bytes), rate(bytes, total))
+                        : String.format("Imported %d file(s), %d already in library · %s · %s",
+                                imported, duplicates, mb(bytes), rate(bytes, total)));
+                return new Result(imported, duplicates, failures);
+            }
+        };
+
+        new Thread(t, "import-thread").start();
+        return t;
+    }
+
+    private record Prepared(Path file, ImportPlan plan, long nanos, Exception error) {}
+
+    /** Commits {@code batch} and empties it. Returns how many new assets it added. */
+    private int commit(List<ImportPlan> batch, Runnable onBatch) {
+        if (batch.isEmpty()) return 0;
+        long t0 = System.nanoTime();
+        List<VideoRepository.Committed> done = repo.commitImports(batch);
+        int created = 0;
+        for (int i = 0; i < done.size(); i++) {
+            if (done.get(i).created()) {
+                created++;
+            } else {
+                LOG.info("{} is already in the library as asset {}", batch.get(i).source().getFileName(), done.get(i).id());
+            }
+        }
+        LOG.info("Committed {} import(s) in {} ms, {} new", batch.size(), (System.nanoTime() - t0) / 1_000_000, created);
+        batch.clear();
+        if (onBatch != null) onBatch.run();
+        return created;
+    }
+
+    private static Prepared result(Future<Prepared> f) throws InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // workers catch everything themselves
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) e = e.getCause();
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private static String mb(long bytes) {
+        return String.format("%.1f MB", bytes / 1048576.0);
+    }
+
+    private static String rate(long bytes, long nanos) {
+        if (nanos <= 0) return "-";
+        return String.format("%.1f MB/s", bytes / 1048576.0 / (nanos / 1e9));
+    }
+}
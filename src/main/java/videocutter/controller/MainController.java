@@ -1,62 +1,87 @@
 package videocutter.controller;
 
 import javafx.application.Platform;
-import javafx.collections.FXCollections;
 import javafx.concurrent.Task;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 import javafx.stage.FileChooser;
 import videocutter.app.Main;
+import videocutter.model.AsyncVideoRepository;
+import videocutter.model.DuplicateCluster;
+import videocutter.model.Filmstrip;
 import videocutter.model.Project;
 import videocutter.model.ProjectSerializer;
 import videocutter.model.TimelineClip;
 import videocutter.model.VideoAsset;
 import videocutter.model.VideoRepository;
+import videocutter.model.WaveformPeaks;
 import videocutter.service.FfmpegService;
+import videocutter.service.KeyframeIndex;
 import videocutter.view.MainView;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
 
 public class MainController {
+    private static final int LIBRARY_PAGE = 200;
+
     private final MainView view;
     private final Project project;
-    private final VideoRepository repo;
+    private final VideoRepository repo;     // blocking; background tasks only
+    private final AsyncVideoRepository db;  // everything started from the FX thread
     private final FfmpegService ff;
     private long previewAssetId = -1;
     private Path currentSaveFile = null; // null = not yet saved
     private TimelineClip selected;
     private long lastSourceMs = 0;
     private long selectedTimelineStartMs = 0;
+    private final AtomicLong libraryGeneration = new AtomicLong();
+    // Bumped on every preview request so an older, slower lookup can't win.
+    private long previewGeneration = 0;
 
-    public MainController(MainView view, Project project, VideoRepository repo, FfmpegService ff) {
+    public MainController(MainView view, Project project, AsyncVideoRepository db, FfmpegService ff) {
         this.view = view;
         this.project = project;
-        this.repo = repo;
+        this.db = db;
+        this.repo = db.blocking();
         this.ff = ff;
     }
 
     public void init() {
         // Import stays background so UI doesn't hang on large file copies.
         view.library().setOnImport(files -> {
-            Task<Void> t = new Task<>() {
-                @Override
-                protected Void call() {
-                    for (File f : files) {
-                        repo.importMp4(f.toPath());
-                        Platform.runLater(MainController.this::refreshLibrary);
-                    }
-                    return null;
-                }
-            };
+            List<Path> paths = new ArrayList<>();
+            for (File f : files) paths.add(f.toPath());
+
+            Task<ImportController.Result> t = new ImportController(repo).importAsync(
+                    paths, view.library().importStrategy(),
+                    () -> Platform.runLater(this::refreshLibrary));   // once per committed batch
+
+            t.messageProperty().addListener((obs, old, msg) -> view.library().setStatus(msg));
+
+            t.setOnSucceeded(e -> {
+                ImportController.Result r = t.getValue();
+                if (r.imported() > 0) analyzeInBackground();
+                if (r.failures().isEmpty()) return;
+                Alert a = new Alert(Alert.AlertType.WARNING);
+                a.setTitle("Import");
+                a.setHeaderText(r.failures().size() + " file(s) could not be imported");
+                a.setContentText(String.join("\n", r.failures()));
+                a.initOwner(view.getRoot().getScene().getWindow());
+                a.show();
+            });
 
             t.setOnFailed(e -> {
                 Throwable ex = t.getException();
                 ex.printStackTrace();
+                view.library().setStatus(null);
                 Alert a = new Alert(Alert.AlertType.ERROR);
                 a.setTitle("Import failed");
                 a.setHeaderText("Import failed");
@@ -64,10 +89,10 @@ public class MainController {
                 a.initOwner(view.getRoot().getScene().getWindow());
                 a.show();
             });
-
-            new Thread(t, "import-thread").start();
         });
 
+        view.library().setOnLoadMore(this::loadMoreLibrary);
+        view.library().setOnSearch(text -> refreshLibrary());
         refreshLibrary();
         view.toolbar().refreshBtn().setOnAction(e -> refreshLibrary());
 
@@ -78,21 +103,30 @@ public class MainController {
             lastSourceMs = sourceMs;
             selectedTimelineStartMs = timelineMs - (sourceMs - clip.startMs());
 
-            VideoAsset a = repo.findById(clip.assetId());
-            if (a == null) return;
-
-            long assetId = a.id();
-            if (previewAssetId != assetId) {
-                previewAssetId = assetId;
-                File media = repo.materializeToTemp(assetId);
-                // Pass sourceMs so VLC parks at the right frame on first load,
-                // not always at 0. seekWhenReady below handles same-asset seeks.
-                view.preview().loadVideo(media, sourceMs);
-            }
-
-            view.preview().setInfo(a.title() + " [" + a.prettyDuration() + "]");
-            view.preview().seekWhenReady(sourceMs);
             view.timeline().setPlayheadTimelineMs(timelineMs);
+
+            long gen = ++previewGeneration;
+            long assetId = clip.assetId();
+            boolean switching = previewAssetId != assetId;
+            if (switching) previewAssetId = assetId;
+
+            db.locate(assetId).whenComplete((located, ex) -> {
+                if (gen != previewGeneration) return;
+                if (ex != null || located == null) {
+                    if (ex != null) ex.printStackTrace();
+                    if (switching) previewAssetId = -1;
+                    return;
+                }
+                VideoAsset a = located.asset();
+                if (switching) {
+                    // Pass sourceMs so VLC parks at the right frame on first load,
+                    // not always at 0. seekWhenReady below handles same-asset seeks.
+                    view.preview().setKeyframeLookup(keyframeLookup(located));
+                    view.preview().loadVideo(located.uri(), sourceMs);
+                }
+                view.preview().setInfo(a.title() + " [" + a.prettyDuration() + "]");
+                view.preview().seekWhenReady(sourceMs);
+            });
         });
 
         view.preview().setOnUserSeek(ms -> {
@@ -148,13 +182,42 @@ public class MainController {
             view.timeline().setClips(project.clips());
         });
 
+        view.timeline().scenesBtn().setOnAction(e -> {
+            if (selected == null) return;
+            TimelineClip clip = selected;
+            db.call(() -> repo.sceneCuts(clip.assetId(), clip.startMs(), clip.endMs())).whenComplete((cuts, ex) -> {
+                if (ex != null) {
+                    ex.printStackTrace();
+                    return;
+                }
+                int pieces = project.splitClipAtAll(clip, cuts);
+                if (pieces <= 1) {
+                    view.library().setStatus("No scene changes found in the selected clip");
+                    return;
+                }
+                view.library().setStatus("Split into " + pieces + " clips");
+                if (selected == clip) selected = null;
+                view.timeline().selectClip(null);
+                view.timeline().setClips(project.clips());
+            });
+        });
+
+        view.timeline().setOnSceneCutsNeeded(ids -> db.call(() -> repo.sceneCuts(ids)).whenComplete((cuts, ex) -> {
+            if (ex != null) ex.printStackTrace();
+            else view.timeline().setSceneCuts(cuts);
+        }));
+        view.timeline().setOnWaveformNeeded(this::loadWaveformsInBackground);
+        view.timeline().setOnFilmstripNeeded(this::loadFilmstripsInBackground);
+        // Catch up on assets imported before the analysis pass existed, or whose files changed.
+        analyzeInBackground();
+
         // Double-click library row to add
         view.library().setOnAddRequested(assetId -> {
-            VideoAsset asset = repo.findById(assetId);
-            if (asset != null) {
+            db.findById(assetId).thenAccept(asset -> {
+                if (asset == null) return;
                 project.addClip(new TimelineClip(asset.id(), 0, asset.durationMs()));
                 view.timeline().setClips(project.clips());
-            }
+            });
         });
 
         view.toolbar().removeBtn().setOnAction(e -> {
@@ -171,7 +234,7 @@ public class MainController {
             Task<Void> task = ec.exportAsync(
                     view.getRoot().getScene().getWindow(),
                     () -> {
-                        try { repo.deleteAllTempVideos(); } catch (SQLException ignore) {}
+                        db.deleteAllTempVideos().thenAccept(this::reclaimInBackground);
                         project.clear();
                         selected = null;
                         view.timeline().selectClip(null);
@@ -199,8 +262,7 @@ public class MainController {
             var res = confirm.showAndWait();
             if (res.isEmpty() || res.get() != ButtonType.OK) return;
 
-            repo.deleteByIds(ids);
-
+            // Drop the assets from the editor right away; the rows and files go in the background.
             Set<Long> deleted = new HashSet<>(ids);
             project.removeClipsByAssetIds(deleted);
 
@@ -208,11 +270,172 @@ public class MainController {
                 selected = null;
                 view.timeline().selectClip(null);
                 view.preview().clear();
+                previewAssetId = -1;
             }
-
             view.timeline().setClips(project.clips());
+            view.library().forgetThumbnails(ids);
+
+            deleteInBackground(ids);
+        });
+
+        view.library().setOnFindDuplicates(this::findDuplicates);
+    }
+
+    private record Duplicates(List<DuplicateCluster> clusters, Map<Long, VideoAsset> assets) {}
+
+    /**
+     * Shows near-duplicate groups in the library with the extra copies selected, so one press of
+     * Delete sends them through the normal delete flow. Uses hashes from the analysis pass; assets
+     * not analysed yet are simply not considered.
+     */
+    private void findDuplicates() {
+        long gen = libraryGeneration.incrementAndGet();   // a later refresh or search wins
+        view.library().setStatus("Looking for duplicates…");
+        db.call(() -> {
+            List<DuplicateCluster> clusters = repo.duplicateClusters();
+            List<Long> ids = clusters.stream().flatMap(c -> c.ids().stream()).toList();
+            return new Duplicates(clusters, repo.findByIds(ids));
+        }).whenComplete((found, ex) -> {
+            if (gen != libraryGeneration.get()) return;
+            if (ex != null) {
+                ex.printStackTrace();
+                view.library().setStatus(null);
+                return;
+            }
+            if (found.clusters().isEmpty()) {
+                view.library().setStatus("No duplicates found");
+                return;
+            }
+            List<VideoAsset> rows = new ArrayList<>();
+            Set<Long> redundant = new HashSet<>();
+            long reclaimable = 0;
+            for (DuplicateCluster c : found.clusters()) {
+                for (Long id : c.ids()) {
+                    VideoAsset a = found.assets().get(id);
+                    if (a != null) rows.add(a);
+                }
+                redundant.addAll(c.redundant());
+                reclaimable += c.reclaimableBytes();
+            }
+            view.library().showDuplicates(rows, redundant, String.format(
+                    "%d group(s) of duplicates; the %d extra copies are selected (%.1f MB). Press Delete to remove them.",
+                    found.clusters().size(), redundant.size(), reclaimable / 1048576.0));
+        });
+    }
+
+    /**
+     * Commits the row deletes first (one transaction), refreshes the library as soon as they are
+     * gone, then hands the unused vault files to {@link #reclaimInBackground}.
+     */
+    private void deleteInBackground(List<Long> ids) {
+        db.deleteByIds(ids).whenComplete((files, ex) -> {
             refreshLibrary();
+            if (ex == null) {
+                reclaimInBackground(files);
+            } else {
+                ex.printStackTrace();
+                Main.showAlert("Delete Failed", ex.getMessage(), view.getRoot().getScene().getWindow());
+            }
+        });
+    }
+
+    /**
+     * Runs the single-decode analysis (keyframes, scene cuts, peaks, filmstrip, posters) for assets
+     * that haven't had it, then transcodes missing preview proxies. The repository keeps it to one
+     * pass for the whole app: if another editor's pass is running this joins it instead of
+     * decoding the same assets again. Once anything was analysed the timeline fetches scene cuts again.
+     */
+    private void analyzeInBackground() {
+        Task<Integer> t = new Task<>() {
+            @Override
+            protected Integer call() {
+                int analysed = repo.analyzeMissing(p -> updateProgress(p, 1.0));
+                if (analysed > 0) Platform.runLater(() -> view.timeline().invalidateSceneCuts());
+                // Proxies last: they only speed up the preview, which works from the original meanwhile.
+                repo.buildMissingProxies(null);
+                return analysed;
+            }
+        };
+        t.setOnFailed(e -> t.getException().printStackTrace());
+
+        Thread th = new Thread(t, "media-analysis");
+        th.setDaemon(true);
+        th.start();
+    }
+
+    /**
+     * Loads (building on first use) the audio peaks of the given assets and hands each to the
+     * timeline as soon as it is ready. A build decodes the asset's audio once; later opens map
+     * the stored sidecar.
+     */
+    private void loadWaveformsInBackground(Set<Long> ids) {
+        List<Long> todo = new ArrayList<>(ids);
+        Task<Void> t = new Task<>() {
+            @Override
+            protected Void call() {
+                for (Long id : todo) {
+                    if (isCancelled()) break;
+                    WaveformPeaks peaks = repo.buildWaveform(id);
+                    if (peaks != null) Platform.runLater(() -> view.timeline().setWaveform(id, peaks));
+                }
+                return null;
+            }
+        };
+        t.setOnFailed(e -> t.getException().printStackTrace());
+
+        Thread th = new Thread(t, "waveforms");
+        th.setDaemon(true);
+        th.start();
+    }
+
+    /**
+     * Loads (cutting on first use) filmstrips at one density for the given assets. Each cut is
+     * one ffmpeg pass per asset and density; scrolling and zooming afterwards only read sheets.
+     */
+    private void loadFilmstripsInBackground(long intervalMs, Set<Long> ids) {
+        List<Long> todo = new ArrayList<>(ids);
+        Task<Void> t = new Task<>() {
+            @Override
+            protected Void call() {
+                for (Long id : todo) {
+                    if (isCancelled()) break;
+                    Filmstrip strip = repo.buildFilmstrip(id, intervalMs);
+                    if (strip != null) Platform.runLater(() -> view.timeline().setFilmstrip(id, strip));
+                }
+                return null;
+            }
+        };
+        t.setOnFailed(e -> t.getException().printStackTrace());
+
+        Thread th = new Thread(t, "filmstrips");
+        th.setDaemon(true);
+        th.start();
+    }
+
+    /** Deletes no-longer-referenced vault files off the FX thread, with progress in the library status line. */
+    private void reclaimInBackground(List<Path> files) {
+        if (files == null || files.isEmpty()) return;
+        Task<Long> t = new Task<>() {
+            @Override
+            protected Long call() {
+                updateMessage("Removing " + files.size() + " file(s)…");
+                return repo.reclaimFiles(files, p -> {
+                    updateProgress(p, 1.0);
+                    updateMessage(String.format("Removing files… %d%%", Math.round(p * 100)));
+                });
+            }
+        };
+        t.messageProperty().addListener((obs, old, msg) -> view.library().setStatus(msg));
+        t.setOnSucceeded(e -> view.library().setStatus(
+                String.format("Freed %.1f MB", t.getValue() / 1048576.0)));
+        t.setOnFailed(e -> {
+            t.getException().printStackTrace();
+            view.library().setStatus(null);
         });
+
+        Thread th = new Thread(t, "file-reclaimer");
+        th.setDaemon(true);
+        th.start();
     }
 
     /** Returns the clip immediately after the given one on the timeline, or null if it's the last. */
@@ -240,29 +463,51 @@ public class MainController {
      * Handles both same-asset and different-asset transitions seamlessly.
      */
     private void advanceToClip(TimelineClip clip) {
-        VideoAsset asset = repo.findById(clip.assetId());
-        if (asset == null) return;
-
+        // Take the new clip synchronously so the next time tick doesn't re-trigger the boundary.
         selected = clip;
         lastSourceMs = clip.startMs();
         selectedTimelineStartMs = timelineStartOf(clip);
 
         view.timeline().selectClip(clip);
         view.timeline().setPlayheadTimelineMs(selectedTimelineStartMs);
-        view.preview().setInfo(asset.title() + " [" + asset.prettyDuration() + "]");
 
-        long assetId = asset.id();
-        if (previewAssetId != assetId) {
-            // Different source file — load and play from the clip's in-point atomically
-            // so the pauseOnFirstPlaying logic doesn't fight us.
-            previewAssetId = assetId;
-            File media = repo.materializeToTemp(assetId);
-            view.preview().loadVideoAndPlay(media, clip.startMs());
-        } else {
+        long assetId = clip.assetId();
+        if (previewAssetId == assetId) {
             // Same source file — seek to the clip's in-point and resume.
             view.preview().seekWhenReady(clip.startMs());
             view.preview().play();
         }
+
+        long gen = ++previewGeneration;
+        boolean switching = previewAssetId != assetId;
+        if (switching) {
+            previewAssetId = assetId;
+            view.preview().pause();
+        }
+
+        db.locate(assetId).whenComplete((located, ex) -> {
+            if (gen != previewGeneration) return;
+            if (ex != null || located == null) {
+                if (ex != null) ex.printStackTrace();
+                if (switching) previewAssetId = -1;
+                return;
+            }
+            VideoAsset asset = located.asset();
+            view.preview().setInfo(asset.title() + " [" + asset.prettyDuration() + "]");
+            if (switching) {
+                // Different source file — load and play from the clip's in-point atomically
+                // so the pauseOnFirstPlaying logic doesn't fight us.
+                view.preview().setKeyframeLookup(keyframeLookup(located));
+                view.preview().loadVideoAndPlay(located.uri(), clip.startMs());
+            }
+        });
+    }
+
+    private static LongUnaryOperator keyframeLookup(AsyncVideoRepository.Located located) {
+        // Proxies are keyed every few frames: ffmpeg's own seek to the target is already exact and cheap.
+        if (located.proxy()) return ms -> ms;
+        KeyframeIndex kf = located.keyframes();
+        return kf != null && kf.size() > 0 ? kf::floor : null;
     }
 
     private long selectedSourceToTimelineMs(long sourceMs) {
@@ -288,6 +533,7 @@ public class MainController {
             ProjectSerializer.save(project, currentSaveFile);
             view.toolbar().setProjectTitle(currentSaveFile.getFileName().toString()
                     .replace(".framecut", ""));
+            rememberProject(currentSaveFile);
         } catch (Exception ex) {
             ex.printStackTrace();
             Main.showAlert("Save Failed", ex.getMessage(),
@@ -302,30 +548,83 @@ public class MainController {
 
     /** Loads clips from a .framecut file into the project and refreshes the timeline. */
     public void loadFromFile(Path path) {
-        try {
-            var clips = ProjectSerializer.load(path);
-            project.clear();
-            for (var cd : clips) {
-                // Verify the asset still exists in the DB before adding
-                if (repo.findById(cd.assetId()) != null) {
-                    project.addClip(new videocutter.model.TimelineClip(
-                            cd.assetId(), cd.startMs(), cd.endMs()));
+        db.call(() -> {
+            try {
+                var clips = ProjectSerializer.load(path);
+                // Verify the assets still exist in the DB before adding — one batched lookup.
+                Set<Long> ids = new HashSet<>();
+                for (var cd : clips) ids.add(cd.assetId());
+                Set<Long> known = repo.findByIds(ids).keySet();
+
+                List<TimelineClip> found = new ArrayList<>();
+                for (var cd : clips) {
+                    if (known.contains(cd.assetId())) found.add(new TimelineClip(cd.assetId(), cd.startMs(), cd.endMs()));
                 }
+                return found;
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }).whenComplete((found, ex) -> {
+            if (ex != null) {
+                ex.printStackTrace();
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                Main.showAlert("Open Failed", cause.getMessage(),
+                        view.getRoot().getScene().getWindow());
+                return;
             }
+            project.clear();
+            for (TimelineClip c : found) project.addClip(c);
             currentSaveFile = path;
             view.toolbar().setProjectTitle(
                     path.getFileName().toString().replace(".framecut", ""));
             view.timeline().setClips(project.clips());
             refreshLibrary();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            Main.showAlert("Open Failed", ex.getMessage(),
-                    view.getRoot().getScene().getWindow());
-        }
+            rememberProject(path);
+        });
+    }
+
+    /** Puts the project on the projects screen's recent list (in the background). */
+    private void rememberProject(Path file) {
+        List<TimelineClip> clips = List.copyOf(project.clips());
+        db.call(() -> {
+            repo.rememberProject(file, clips);
+            return null;
+        }).whenComplete((v, ex) -> {
+            if (ex != null) ex.printStackTrace();
+        });
     }
 
     private void refreshLibrary() {
-        List<VideoAsset> items = repo.listAll();
-        view.library().list().setItems(FXCollections.observableArrayList(items));
+        loadLibrary(false);
+    }
+
+    private void loadMoreLibrary() {
+        loadLibrary(true);
+    }
+
+    /**
+     * Loads the first (or next) page of the library, or of the current search, off the FX thread.
+     * Each fresh load bumps {@link #libraryGeneration}, so a slow, superseded query can't
+     * overwrite newer results when it finally returns.
+     */
+    private void loadLibrary(boolean append) {
+        String query = view.library().searchText();
+        long gen = append ? libraryGeneration.get() : libraryGeneration.incrementAndGet();
+        long beforeId = append ? view.library().lastLoadedId() : Long.MAX_VALUE;
+
+        var pending = query.isEmpty()
+                ? db.listPage(beforeId, LIBRARY_PAGE)
+                : db.search(query, beforeId, LIBRARY_PAGE);
+        pending.whenComplete((page, ex) -> {
+            if (gen != libraryGeneration.get()) return;
+            if (ex != null) {
+                ex.printStackTrace();
+                if (append) view.library().appendItems(List.of(), false);
+                return;
+            }
+            boolean more = page.size() == LIBRARY_PAGE;
+            if (append) view.library().appendItems(page, more);
+            else view.library().setItems(page, more);
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package videocutter.model;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of asset metadata and resolved media paths, keyed by asset id.
+ *
+ * Sits in front of VideoRepository so playback and scrubbing resolve the handful of assets
+ * on the timeline without a SQL round trip. The repository invalidates entries whenever it
+ * writes the rows they came from.
+ *
+ * A read that misses races with those invalidations: a row read just before a delete could be
+ * put back just after it. Every invalidation bumps an epoch, so callers take {@link #epoch()}
+ * before reading and pass it to the put, which drops the entry if anything was invalidated since.
+ */
+final class AssetCache {
+    private final int capacity;
+    private final Map<Long, VideoAsset> assets;
+    private final Map<Long, Path> paths;
+    private long epoch;
+
+    AssetCache(int capacity) {
+        this.capacity = capacity;
+        this.assets = lru();
+        this.paths = lru();
+    }
+
+    private <V> Map<Long, V> lru() {
+        return new LinkedHashMap<>(64, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Long, V> e) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Take before reading rows to cache; see the class comment. */
+    synchronized long epoch()                        { return epoch; }
+
+    synchronized VideoAsset asset(long id)           { return assets.get(id); }
+    synchronized void putAsset(VideoAsset a, long readAt) {
+        if (a != null && readAt == epoch) assets.put(a.id(), a);
+    }
+
+    synchronized Path path(long id)                  { return paths.get(id); }
+    synchronized void putPath(long id, Path p, long readAt) {
+        if (p != null && readAt == epoch) paths.put(id, p);
+    }
+    synchronized void invalidatePath(long id) {
+        epoch++;
+        paths.remove(id);
+    }
+
+    synchronized void invalidate(long id) {
+        epoch++;
+        assets.remove(id);
+        paths.remove(id);
+    }
+
+    synchronized void invalidate(Collection<Long> ids) {
+        for (Long id : ids) invalidate(id);
+    }
+
+    synchronized void clear() {
+        epoch++;
+        assets.clear();
+        paths.clear();
+    }
+}
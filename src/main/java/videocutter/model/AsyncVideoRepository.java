@@ -0,0 +1,119 @@
+package videocutter.model;
+
+import videocutter.service.KeyframeIndex;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking front for {@link VideoRepository}, for code running on the UI thread.
+ *
+ * Every call runs on a small dedicated pool and completes its future on {@code callbacks}
+ * (the app passes {@code Platform::runLater}), so {@code thenAccept} handlers can touch
+ * controls directly. Futures complete exceptionally with whatever the repository threw.
+ */
+public class AsyncVideoRepository implements AutoCloseable {
+    private final VideoRepository repo;
+    private final ExecutorService dbExecutor;
+    private final Executor callbacks;
+
+    public AsyncVideoRepository(VideoRepository repo, Executor callbacks) {
+        this.repo = repo;
+        this.callbacks = callbacks;
+
+        // Matches the reader pool: more threads would only queue for a connection.
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger n = new AtomicInteger();
+        this.dbExecutor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "db-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** The blocking repository, for code that is already on a background thread. */
+    public VideoRepository blocking() { return repo; }
+
+    public CompletableFuture<VideoAsset> findById(long id) {
+        return call(() -> repo.findById(id));
+    }
+
+    public CompletableFuture<Map<Long, VideoAsset>> findByIds(Collection<Long> ids) {
+        return call(() -> repo.findByIds(ids));
+    }
+
+    /**
+     * Asset metadata plus where the preview should read its media: the asset's proxy once one is
+     * built ({@link VideoRepository#proxy}), otherwise {@link VideoRepository#mediaUri}; and the
+     * stored keyframe index of the original, if any.
+     */
+    public CompletableFuture<Located> locate(long id) {
+        return call(() -> {
+            VideoAsset asset = repo.findById(id);
+            if (asset == null) return null;
+            Path proxy = repo.proxy(id);
+            if (proxy != null) return new Located(asset, proxy.toString(), null, true);
+            return new Located(asset, repo.mediaUri(id), repo.keyframes(id), false);
+        });
+    }
+
+    /**
+     * @param keyframes null if the asset hasn't been indexed yet, and always for proxies
+     * @param proxy {@code uri} is a preview proxy, keyed every {@value videocutter.service.FfmpegService#PROXY_GOP} frames
+     */
+    public record Located(VideoAsset asset, String uri, KeyframeIndex keyframes, boolean proxy) {}
+
+    public CompletableFuture<List<VideoAsset>> listPage(long beforeId, int limit) {
+        return call(() -> repo.listPage(beforeId, limit));
+    }
+
+    public CompletableFuture<List<VideoAsset>> search(String text, long beforeId, int limit) {
+        return call(() -> repo.search(text, beforeId, limit));
+    }
+
+    public CompletableFuture<List<Path>> deleteByIds(List<Long> ids) {
+        return call(() -> repo.deleteByIds(ids));
+    }
+
+    public CompletableFuture<List<Path>> deleteAllTempVideos() {
+        return call(() -> {
+            try {
+                return repo.deleteAllTempVideos();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /** Runs arbitrary repository work (or file I/O) on the DB pool. */
+    public <T> CompletableFuture<T> call(Supplier<T> work) {
+        CompletableFuture<T> out = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(work, dbExecutor).whenComplete((v, ex) -> callbacks.execute(() -> {
+            if (ex == null) out.complete(v);
+            else out.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+        }));
+        return out;
+    }
+
+    @Override
+    public void close() {
+        dbExecutor.shutdown();
+        try {
+            if (!dbExecutor.awaitTermination(5, TimeUnit.SECONDS)) dbExecutor.shutdownNow();
+        } catch (InterruptedException e) {
+            dbExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
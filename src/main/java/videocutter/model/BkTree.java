@@ -0,0 +1,76 @@
+package videocutter.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.LongConsumer;
+
+/**
+ * Burkhard-Keller tree over 64-bit hashes under Hamming distance. Each node's children are
+ * keyed by their distance to it, so by the triangle inequality a search within radius r only
+ * descends into children keyed d - r .. d + r. Every hash carries an owner id; equal hashes
+ * share a node.
+ */
+final class BkTree {
+
+    private static final class Node {
+        final long hash;
+        long[] owners = new long[1];
+        int ownerCount;
+        // Indexed by distance to this node, 0..64; created on first use.
+        Node[] children;
+
+        Node(long hash, long owner) {
+            this.hash = hash;
+            owners[ownerCount++] = owner;
+        }
+
+        void addOwner(long owner) {
+            if (ownerCount == owners.length) owners = Arrays.copyOf(owners, ownerCount * 2);
+            owners[ownerCount++] = owner;
+        }
+    }
+
+    private Node root;
+
+    void add(long hash, long owner) {
+        if (root == null) {
+            root = new Node(hash, owner);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int d = PerceptualHash.distance(hash, node.hash);
+            if (d == 0) {
+                node.addOwner(owner);
+                return;
+            }
+            if (node.children == null) node.children = new Node[Long.SIZE + 1];
+            Node next = node.children[d];
+            if (next == null) {
+                node.children[d] = new Node(hash, owner);
+                return;
+            }
+            node = next;
+        }
+    }
+
+    /** Calls {@code owners} once per stored hash within {@code radius} of {@code hash}. */
+    void search(long hash, int radius, LongConsumer owners) {
+        if (root == null) return;
+        Deque<Node> todo = new ArrayDeque<>();
+        todo.push(root);
+        while (!todo.isEmpty()) {
+            Node node = todo.pop();
+            int d = PerceptualHash.distance(hash, node.hash);
+            if (d <= radius) {
+                for (int i = 0; i < node.ownerCount; i++) owners.accept(node.owners[i]);
+            }
+            if (node.children == null) continue;
+            for (int k = Math.max(1, d - radius), hi = Math.min(Long.SIZE, d + radius); k <= hi; k++) {
+                Node child = node.children[k];
+                if (child != null) todo.push(child);
+            }
+        }
+    }
+}
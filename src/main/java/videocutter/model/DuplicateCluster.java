@@ -0,0 +1,19 @@
+package videocutter.model;
+
+import java.util.List;
+
+/**
+ * Library assets that show the same footage (re-encodes, rescales, trimmed copies), as found by
+ * {@link VideoRepository#duplicateClusters()}.
+ *
+ * @param ids every asset in the cluster, {@code keepId} first
+ * @param keepId the copy worth keeping: highest resolution, then highest bit rate, then largest
+ * @param reclaimableBytes vault space freed by deleting all the other copies
+ */
+public record DuplicateCluster(List<Long> ids, long keepId, long reclaimableBytes) {
+
+    /** Every asset except the one to keep. */
+    public List<Long> redundant() {
+        return ids.subList(1, ids.size());
+    }
+}
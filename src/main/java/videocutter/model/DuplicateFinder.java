@@ -0,0 +1,156 @@
+package videocutter.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups assets whose sampled frames show the same footage. Frames are sampled at a fixed
+ * interval from the start, so a copy of B (re-encoded, rescaled, or trimmed out of it) has its
+ * frames at one constant offset into B's. Asset A is linked to B when most of A's distinctive
+ * frames have a near match (within {@link #RADIUS} bits) in B at the same offset, give or take
+ * one sample, and A's whole length fits inside B at that offset. Judging from each side on its
+ * own catches trimmed copies: nearly every frame of the short copy is in the original, though
+ * not the other way round. Links are then merged transitively (union-find) into clusters.
+ *
+ * Only distinctive frames count as evidence: a frame that looks like another one of the same
+ * asset {@link #ANCHOR_GAP} or more samples away says nothing about where it is. Separate takes
+ * of one static setup (a talking head, a screen recording) are all such frames; they match each
+ * other at every offset and must not be offered up for deletion.
+ */
+final class DuplicateFinder {
+
+    // Hamming distance at which two frame hashes count as the same picture.
+    static final int RADIUS = 8;
+    // Share of an asset's distinctive frames that must appear, in order, in the other asset.
+    static final double MIN_SHARE = 0.6;
+    // Assets with fewer distinctive frames than this are too short (or too flat) to judge.
+    static final int MIN_FRAMES = 3;
+    // Samples apart beyond which a look-alike frame of the same asset makes a frame ambiguous.
+    static final int ANCHOR_GAP = 3;
+    // Samples two copies may drift by: sampling phase differs by up to one interval between a
+    // trimmed copy and its original, and a re-encode may gain or lose a frame at either end.
+    static final int SLACK = 1;
+
+    private DuplicateFinder() {}
+
+    /**
+     * Clusters of two or more asset ids, each ascending, ordered by their first id.
+     *
+     * @param hashesByAsset each asset's frame hashes in time order, one per sampling interval
+     */
+    static List<List<Long>> clusters(Map<Long, long[]> hashesByAsset) {
+        List<Long> ids = new ArrayList<>();
+        List<long[]> frames = new ArrayList<>();
+        BkTree tree = new BkTree();
+        for (Map.Entry<Long, long[]> e : hashesByAsset.entrySet()) {
+            if (e.getValue().length < MIN_FRAMES) continue;
+            int a = ids.size();
+            ids.add(e.getKey());
+            frames.add(e.getValue());
+            long[] hs = e.getValue();
+            for (int i = 0; i < hs.length; i++) tree.add(hs[i], key(a, i));
+        }
+
+        int[] parent = new int[ids.size()];
+        int[] rank = new int[ids.size()];
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+
+        for (int a = 0; a < ids.size(); a++) {
+            long[] own = frames.get(a);
+            // Per other asset: for each of our frames, the sample indexes it matches there.
+            Map<Integer, Map<Integer, List<Integer>>> hits = new HashMap<>();
+            int anchors = 0;
+            for (int i = 0; i < own.length; i++) {
+                List<Long> near = new ArrayList<>();
+                tree.search(own[i], RADIUS, near::add);
+                if (!distinctive(near, a, i)) continue;
+                anchors++;
+                for (long k : near) {
+                    int b = asset(k);
+                    if (b != a) hits.computeIfAbsent(b, x -> new HashMap<>()).computeIfAbsent(i, x -> new ArrayList<>()).add(frame(k));
+                }
+            }
+            if (anchors < MIN_FRAMES) continue;
+            for (Map.Entry<Integer, Map<Integer, List<Integer>>> e : hits.entrySet()) {
+                if (e.getValue().size() < MIN_SHARE * anchors) continue;   // can't pass even unaligned
+                int b = e.getKey();
+                if (aligned(e.getValue(), own.length, frames.get(b).length) >= MIN_SHARE * anchors) {
+                    union(parent, rank, a, b);
+                }
+            }
+        }
+
+        Map<Integer, List<Long>> byRoot = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) byRoot.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(ids.get(i));
+        List<List<Long>> out = new ArrayList<>();
+        for (List<Long> c : byRoot.values()) {
+            if (c.size() < 2) continue;
+            c.sort(null);
+            out.add(c);
+        }
+        out.sort(Comparator.comparing(c -> c.get(0)));
+        return out;
+    }
+
+    /** False if frame {@code i} of asset {@code a} looks like one of its own frames far away in time. */
+    private static boolean distinctive(List<Long> near, int a, int i) {
+        for (long k : near) {
+            if (asset(k) == a && Math.abs(frame(k) - i) >= ANCHOR_GAP) return false;
+        }
+        return true;
+    }
+
+    /**
+     * How many of A's frames match B at the best single offset (within {@link #SLACK}), counting
+     * only offsets at which A's {@code lenA} samples fit inside B's {@code lenB}.
+     *
+     * @param matches for each distinctive frame of A that has any, the B samples it matches
+     */
+    static int aligned(Map<Integer, List<Integer>> matches, int lenA, int lenB) {
+        Set<Integer> offsets = new HashSet<>();
+        for (Map.Entry<Integer, List<Integer>> e : matches.entrySet()) {
+            for (int j : e.getValue()) offsets.add(j - e.getKey());
+        }
+        int best = 0;
+        for (int d : offsets) {
+            if (d < -SLACK || d + lenA > lenB + SLACK) continue;   // A would run past B's start or end
+            int n = 0;
+            for (Map.Entry<Integer, List<Integer>> e : matches.entrySet()) {
+                for (int j : e.getValue()) {
+                    if (Math.abs(j - e.getKey() - d) <= SLACK) {
+                        n++;
+                        break;
+                    }
+                }
+            }
+            best = Math.max(best, n);
+        }
+        return best;
+    }
+
+    // Tree owners pack (asset index, sample index) into one long.
+    private static long key(int asset, int frame) { return (long) asset << 32 | frame; }
+    private static int asset(long key)            { return (int) (key >>> 32); }
+    private static int frame(long key)            { return (int) key; }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];   // path halving
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int[] rank, int a, int b) {
+        int ra = find(parent, a), rb = find(parent, b);
+        if (ra == rb) return;
+        if (rank[ra] < rank[rb]) { int t = ra; ra = rb; rb = t; }
+        parent[rb] = ra;
+        if (rank[ra] == rank[rb]) rank[ra]++;
+    }
+}
@@ -0,0 +1,45 @@
+package videocutter.model;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Sprite sheets holding one frame of an asset every {@code intervalMs}, in reading order:
+ * frame {@code i} shows source time {@code i * intervalMs} and sits on sheet
+ * {@code i / (cols * rows)}. Each asset can have one strip per density in {@link #INTERVALS_MS}.
+ */
+public record Filmstrip(long intervalMs, int tileW, int tileH, int cols, int rows, int frames, List<Path> sheets) {
+
+    public static final int TILE_W = 96;
+    public static final int TILE_H = 54;
+    public static final int COLS = 10;
+    public static final int ROWS = 10;
+
+    /** Density cut during import analysis: the one the timeline opens at (60 px frames at 20 px/s). */
+    public static final long IMPORT_INTERVAL_MS = 2000;
+
+    /** Densities strips are made at; zooming picks between them instead of generating new ones. */
+    public static final long[] INTERVALS_MS = {500, 1000, 2000, 4000, 8000, 16000, 32000, 64000};
+
+    /** The densest interval that still gives each frame of {@code msPerFrame} its own picture. */
+    public static long intervalFor(double msPerFrame) {
+        long best = INTERVALS_MS[0];
+        for (long i : INTERVALS_MS) if (i <= msPerFrame) best = i;
+        return best;
+    }
+
+    /** Frame showing {@code sourceMs}, clamped to the strip. */
+    public int frameAt(long sourceMs) {
+        return (int) Math.max(0, Math.min(frames - 1, sourceMs / intervalMs));
+    }
+
+    public Path sheetOf(int frame) {
+        return sheets.get(Math.min(sheets.size() - 1, frame / (cols * rows)));
+    }
+
+    /** Pixel x of {@code frame} on its sheet. */
+    public int tileX(int frame) { return (frame % (cols * rows)) % cols * tileW; }
+
+    /** Pixel y of {@code frame} on its sheet. */
+    public int tileY(int frame) { return (frame % (cols * rows)) / cols * tileH; }
+}
@@ -0,0 +1,170 @@
+package videocutter.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import videocutter.service.FfmpegService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Filmstrip sprite sheets under {@code media/.cache/filmstrips/<id>/<intervalMs>/}. A strip is
+ * complete once its {@code strip.properties} exists; that file also records the size and mtime
+ * of the source it was cut from, and a strip whose source has changed since is ignored.
+ *
+ * Each writer cuts its sheets into a directory of its own and swaps it in whole, so the analysis
+ * pass and a lazy build of the same strip can run at once: the last one to finish wins.
+ */
+final class FilmstripStore {
+    private static final Logger LOG = LoggerFactory.getLogger(FilmstripStore.class);
+
+    private static final String MANIFEST = "strip.properties";
+
+    private final Path dir;
+    private final FfmpegService ff;
+
+    FilmstripStore(Path dir, FfmpegService ff) {
+        this.dir = dir;
+        this.ff = ff;
+    }
+
+    /** The stored strip at {@code intervalMs}, or null if there is none or it is out of date. */
+    Filmstrip get(long id, Path source, long intervalMs) {
+        BasicFileAttributes a = attrs(source);
+        Path stripDir = dir(id, intervalMs);
+        Path manifest = stripDir.resolve(MANIFEST);
+        if (a == null || !Files.isRegularFile(manifest)) return null;
+
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(manifest)) {
+            p.load(in);
+            if (Long.parseLong(p.getProperty("source.size")) != a.size()
+                    || Long.parseLong(p.getProperty("source.mtime")) != a.lastModifiedTime().toMillis()) return null;
+            int sheets = Integer.parseInt(p.getProperty("sheets"));
+            List<Path> files = new ArrayList<>(sheets);
+            for (int i = 1; i <= sheets; i++) files.add(stripDir.resolve(String.format("sheet-%04d.jpg", i)));
+            return new Filmstrip(intervalMs,
+                    Integer.parseInt(p.getProperty("tile.width")), Integer.parseInt(p.getProperty("tile.height")),
+                    Integer.parseInt(p.getProperty("cols")), Integer.parseInt(p.getProperty("rows")),
+                    Integer.parseInt(p.getProperty("frames")), List.copyOf(files));
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Ignoring unreadable filmstrip {}: {}", stripDir, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Cuts the strip in one ffmpeg pass over {@code source} and records it. Null if ffmpeg fails. */
+    Filmstrip build(long id, Path source, long intervalMs, long durationMs, boolean keyframesOnly) throws IOException {
+        Path sheetsDir = prepare(id, intervalMs);
+        long t0 = System.nanoTime();
+        int sheets = ff.filmstrip(source, intervalMs, Filmstrip.TILE_W, Filmstrip.TILE_H,
+                Filmstrip.COLS, Filmstrip.ROWS, keyframesOnly, sheetsDir);
+        Filmstrip strip = record(id, source, intervalMs, durationMs, sheets, sheetsDir);
+        if (strip != null) {
+            LOG.info("Built {} ms filmstrip for asset {} ({} sheets) in {} ms",
+                    intervalMs, id, sheets, (System.nanoTime() - t0) / 1_000_000);
+        }
+        return strip;
+    }
+
+    /**
+     * A new, empty directory for the sheets of a strip about to be cut, next to where the strip
+     * will live. Pass it to {@link #record}; until then the stored strip, if any, is untouched.
+     */
+    Path prepare(long id, long intervalMs) throws IOException {
+        Path parent = dir.resolve(Long.toString(id));
+        Files.createDirectories(parent);
+        return Files.createTempDirectory(parent, intervalMs + "-");
+    }
+
+    /**
+     * Completes a strip whose sheets were written into {@code sheetsDir} (from {@link #prepare})
+     * by writing its manifest there and moving the directory into place, replacing any older
+     * strip. With no sheets (ffmpeg failed) {@code sheetsDir} is removed and null returned.
+     */
+    Filmstrip record(long id, Path source, long intervalMs, long durationMs, int sheets, Path sheetsDir) throws IOException {
+        BasicFileAttributes a = attrs(source);
+        if (a == null || sheets <= 0) {
+            deleteTree(sheetsDir);
+            return null;
+        }
+        int perSheet = Filmstrip.COLS * Filmstrip.ROWS;
+        int frames = (int) Math.min((long) sheets * perSheet, Math.max(1, (durationMs + intervalMs - 1) / intervalMs));
+
+        Properties p = new Properties();
+        p.setProperty("source.size", Long.toString(a.size()));
+        p.setProperty("source.mtime", Long.toString(a.lastModifiedTime().toMillis()));
+        p.setProperty("tile.width", Integer.toString(Filmstrip.TILE_W));
+        p.setProperty("tile.height", Integer.toString(Filmstrip.TILE_H));
+        p.setProperty("cols", Integer.toString(Filmstrip.COLS));
+        p.setProperty("rows", Integer.toString(Filmstrip.ROWS));
+        p.setProperty("frames", Integer.toString(frames));
+        p.setProperty("sheets", Integer.toString(sheets));
+        try (OutputStream out = Files.newOutputStream(sheetsDir.resolve(MANIFEST))) {
+            p.store(out, null);
+        }
+        publish(dir(id, intervalMs), sheetsDir);
+        return get(id, source, intervalMs);
+    }
+
+    /** Drops a {@link #prepare}d directory that won't be recorded (the writer failed). */
+    void discard(Path sheetsDir) {
+        deleteTree(sheetsDir);
+    }
+
+    /**
+     * A directory can't be renamed over a non-empty one, so the old strip is moved aside first
+     * and deleted after. Serialized, so two writers finishing together can't interleave the two
+     * renames; readers may briefly find no strip and fall back to building one.
+     */
+    private void publish(Path stripDir, Path sheetsDir) throws IOException {
+        Path old = null;
+        try {
+            synchronized (this) {
+                if (Files.exists(stripDir)) {
+                    old = Files.createTempDirectory(stripDir.getParent(), "old-");
+                    Files.move(stripDir, old.resolve("strip"), StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.move(sheetsDir, stripDir, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            if (old != null) deleteTree(old);
+            deleteTree(sheetsDir);
+        }
+    }
+
+    void delete(long id) {
+        deleteTree(dir.resolve(Long.toString(id)));
+    }
+
+    private Path dir(long id, long intervalMs) {
+        return dir.resolve(Long.toString(id)).resolve(Long.toString(intervalMs));
+    }
+
+    private static void deleteTree(Path root) {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> all = Files.walk(root)) {
+            for (Path p : all.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        } catch (IOException e) {
+            LOG.debug("Could not delete {}: {}", root, e.getMessage());
+        }
+    }
+
+    private static BasicFileAttributes attrs(Path source) {
+        try {
+            return Files.readAttributes(source, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package videocutter.model;
+
+import videocutter.service.MediaInfo;
+
+import java.nio.file.Path;
+
+/**
+ * One file on its way into the library, between {@link VideoRepository#planImport},
+ * {@link VideoRepository#placeImport} and {@link VideoRepository#commitImports}.
+ *
+ * @param info probe result for {@code source}; null for duplicates, which are never probed
+ * @param existingId id of a library asset with the same content, or -1
+ * @param path where the media lives once placed; null until then
+ * @param storage how it was placed; null until then
+ */
+public record ImportPlan(Path source, ImportStrategy requested, long sizeBytes, String hash, MediaInfo info,
+                         long existingId, Path path, ImportStrategy storage) {
+
+    public boolean isDuplicate() { return existingId >= 0; }
+
+    public boolean isPlaced() { return path != null; }
+
+    ImportPlan placed(Path path, ImportStrategy storage, String hash) {
+        return new ImportPlan(source, requested, sizeBytes, hash, info, existingId, path, storage);
+    }
+}
@@ -0,0 +1,39 @@
+package videocutter.model;
+
+/**
+ * How an imported file gets into the library. Stored per row in videos.storage.
+ *
+ * Only {@link #REFERENCE} leaves the media outside the vault; the app never deletes those files.
+ */
+public enum ImportStrategy {
+    /** Point the row at the original file; nothing is copied. */
+    REFERENCE("Reference in place"),
+    /** Hard-link the original into the vault; same filesystem only. */
+    HARDLINK("Hard link"),
+    /** Copy-on-write clone into the vault (btrfs, XFS, APFS); shares blocks until either side changes. */
+    REFLINK("Reflink (CoW clone)"),
+    /** Full byte copy into the vault. Always works. */
+    COPY("Copy into vault");
+
+    private final String label;
+
+    ImportStrategy(String label) { this.label = label; }
+
+    /** Rows written before strategies existed were always copies. */
+    public static ImportStrategy fromColumn(String value) {
+        if (value == null) return COPY;
+        try {
+            return valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return COPY;
+        }
+    }
+
+    /** True if the vault owns the file and may delete it with the row. */
+    public boolean ownsFile() {
+        return this != REFERENCE;
+    }
+
+    @Override
+    public String toString() { return label; }
+}
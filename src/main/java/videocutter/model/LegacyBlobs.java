@@ -0,0 +1,367 @@
+package videocutter.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Media stored inside the database by early versions (the videos.data column).
+ *
+ * A whole MP4 in a row lives on overflow pages, and because SQLite stores a row's columns in
+ * declaration order, reading is_temp / is_hidden / parent_id (declared after data) walks that
+ * overflow chain on every scan. {@link #migrate} moves each BLOB out of the hot table — into a
+ * vault file where possible, otherwise into the video_blobs cold table — then drops the column
+ * and hands the freed pages back with an incremental vacuum.
+ */
+final class LegacyBlobs {
+    private static final Logger LOG = LoggerFactory.getLogger(LegacyBlobs.class);
+
+    private static final long CHUNK_BYTES        = 8L << 20;
+    private static final long HEAP_MARGIN_BYTES  = 64L << 20;
+    private static final int  VACUUM_STEP_PAGES  = 2048;
+
+    private enum Source {
+        INLINE("videos", "id"),
+        COLD("video_blobs", "video_id");
+
+        final String length;
+        final String select;
+        final String slice;
+
+        Source(String table, String key) {
+            this.length = "SELECT length(data) FROM " + table + " WHERE " + key + "=? AND data IS NOT NULL";
+            this.select = "SELECT data FROM " + table + " WHERE " + key + "=?";
+            this.slice = "SELECT substr(data, ?, ?) FROM " + table + " WHERE " + key + "=?";
+        }
+    }
+
+    private record Item(long id, String title, String path, long bytes, Source source) {}
+
+    private final SqlitePool db;
+    private final Path vaultDir;
+
+    // True until the legacy videos.data column has been dropped.
+    private volatile boolean inlineColumn;
+
+    LegacyBlobs(SqlitePool db, Path vaultDir) {
+        this.db = db;
+        this.vaultDir = vaultDir;
+    }
+
+    /** Notes whether the legacy inline column is still there. */
+    void detect(SqlitePool.Handle h) throws SQLException {
+        inlineColumn = SchemaMigrations.hasColumn(h, "videos", "data");
+    }
+
+    boolean inlineColumn() { return inlineColumn; }
+
+    /** Cheap check (no BLOB pages are read) for whether {@link #migrate} has anything to do. */
+    boolean pending() throws SQLException {
+        return db.read(h -> {
+            String sql = inlineColumn
+                    ? "SELECT EXISTS(SELECT 1 FROM video_blobs) OR EXISTS(SELECT 1 FROM videos WHERE data IS NOT NULL)"
+                    : "SELECT EXISTS(SELECT 1 FROM video_blobs)";
+            try (ResultSet rs = h.prepare(sql).executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        });
+    }
+
+    /**
+     * Streams every stored BLOB into the vault, one row and one short transaction at a time,
+     * so it can run on a background thread while the editor is in use.
+     * Progress is reported as the fraction of BLOB bytes processed.
+     */
+    void migrate(AssetCache cache, Consumer<Double> onProgress) throws SQLException {
+        List<Item> work = db.read(h -> {
+            List<Item> out = new ArrayList<>();
+            // length() on a BLOB reads the record header only, never the overflow pages.
+            if (inlineColumn) {
+                try (ResultSet rs = h.prepare(
+                        "SELECT id, title, path, length(data) FROM videos WHERE data IS NOT NULL").executeQuery()) {
+                    while (rs.next()) out.add(new Item(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4), Source.INLINE));
+                }
+            }
+            try (ResultSet rs = h.prepare(
+                    "SELECT b.video_id, v.title, v.path, length(b.data), v.id IS NULL " +
+                            "FROM video_blobs b LEFT JOIN videos v ON v.id = b.video_id").executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getBoolean(5)) {
+                        out.add(new Item(rs.getLong(1), null, null, -1, Source.COLD)); // orphan
+                    } else {
+                        out.add(new Item(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4), Source.COLD));
+                    }
+                }
+            }
+            return out;
+        });
+
+        long total = 0;
+        for (Item it : work) total += Math.max(0, it.bytes());
+        if (work.isEmpty()) {
+            dropInlineColumnIfEmpty();
+            return;
+        }
+
+        LOG.info("Migrating {} legacy BLOB(s), {} MB", work.size(), total >> 20);
+        long done = 0;
+
+        for (Item it : work) {
+            if (it.bytes() < 0) {
+                discard(it);                                   // cold row whose asset was deleted
+            } else if (existing(it.path()) != null) {
+                discard(it);                                   // already has a live file; BLOB is redundant
+            } else {
+                try {
+                    attach(it, streamToVault(it));
+                } catch (IOException | UncheckedIOException e) {
+                    LOG.warn("Could not write legacy BLOB for asset {} to the vault: {}", it.id(), e.getMessage());
+                    if (it.source() == Source.INLINE) moveToCold(it);
+                }
+            }
+            cache.invalidate(it.id());
+            done += Math.max(0, it.bytes());
+            if (onProgress != null) onProgress.accept(total == 0 ? 1.0 : (double) done / total);
+        }
+
+        dropInlineColumnIfEmpty();
+        reclaimSpace();
+    }
+
+    private Path streamToVault(Item it) throws IOException, SQLException {
+        String safe = (it.title() == null ? "untitled" : it.title()).replaceAll("[\\\\/:*?\"<>|]", "_");
+        if (!safe.toLowerCase().endsWith(".mp4")) safe += ".mp4";
+        Path dest = vaultDir.resolve(it.id() + "-" + safe);
+        Path part = dest.resolveSibling(dest.getFileName() + ".part");
+
+        if (!stream(it.source(), it.id(), part)) throw new SQLException("BLOB for asset " + it.id() + " disappeared");
+        Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return dest;
+    }
+
+    /** Whether {@code id} has stored bytes, checked without reading any BLOB pages. */
+    boolean has(long id) throws SQLException {
+        return db.read(h -> {
+            String sql = inlineColumn
+                    ? "SELECT EXISTS(SELECT 1 FROM video_blobs WHERE video_id=?1) OR EXISTS(SELECT 1 FROM videos WHERE id=?1 AND data IS NOT NULL)"
+                    : "SELECT EXISTS(SELECT 1 FROM video_blobs WHERE video_id=?1)";
+            PreparedStatement ps = h.prepare(sql);
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        });
+    }
+
+    /**
+     * Writes an asset's stored bytes to {@code dest} (cold table first, then the inline column).
+     * Returns false if the asset has no stored bytes.
+     */
+    boolean copyTo(long id, Path dest) throws IOException, SQLException {
+        if (stream(Source.COLD, id, dest)) return true;
+        return inlineColumn && stream(Source.INLINE, id, dest);
+    }
+
+    /**
+     * sqlite-jdbc has no incremental BLOB I/O: getBinaryStream() wraps one byte[] holding the
+     * whole value. That is fine while the BLOB fits in free heap with room to spare; larger ones
+     * are read as {@code substr(data, ?, ?)} slices inside the same read transaction, so the heap
+     * only ever holds one slice. SQLite still loads the full value natively for every slice, so
+     * slices are made as large as the heap allows to keep the number of passes down.
+     */
+    private boolean stream(Source source, long id, Path dest) throws IOException, SQLException {
+        try {
+            return db.read(h -> {
+                PreparedStatement len = h.prepare(source.length);
+                len.setLong(1, id);
+                long bytes;
+                try (ResultSet rs = len.executeQuery()) {
+                    if (!rs.next()) return false;
+                    bytes = rs.getLong(1);
+                }
+                long headroom = heapHeadroom() - HEAP_MARGIN_BYTES;
+                try (FileChannel out = FileChannel.open(dest, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    if (bytes <= headroom) {
+                        whole(h, source, id, out);
+                    } else {
+                        long slice = Math.max(CHUNK_BYTES, Math.min(headroom / 2, Integer.MAX_VALUE - 8));
+                        LOG.info("Legacy BLOB for asset {} ({} MB) exceeds free heap; reading it in {} MB slices",
+                                id, bytes >> 20, slice >> 20);
+                        sliced(h, source, id, bytes, (int) slice, out);
+                    }
+                    out.force(true);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void whole(SqlitePool.Handle h, Source source, long id, FileChannel out)
+            throws SQLException, IOException {
+        PreparedStatement ps = h.prepare(source.select);
+        ps.setLong(1, id);
+        try (ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) throw new SQLException("BLOB for asset " + id + " disappeared");
+            try (InputStream in = rs.getBinaryStream(1);
+                 ReadableByteChannel src = Channels.newChannel(in)) {
+                long pos = 0;
+                long n;
+                while ((n = out.transferFrom(src, pos, CHUNK_BYTES)) > 0) pos += n;
+            }
+        }
+    }
+
+    private static void sliced(SqlitePool.Handle h, Source source, long id, long bytes, int slice, FileChannel out)
+            throws SQLException, IOException {
+        PreparedStatement ps = h.prepare(source.slice);
+        ps.setInt(2, slice);
+        ps.setLong(3, id);
+        for (long pos = 0; pos < bytes; ) {
+            ps.setLong(1, pos + 1);                             // substr() counts from 1
+            byte[] chunk;
+            try (ResultSet rs = ps.executeQuery()) {
+                chunk = rs.next() ? rs.getBytes(1) : null;
+            }
+            if (chunk == null || chunk.length == 0) throw new SQLException("BLOB for asset " + id + " ended early");
+            ByteBuffer buf = ByteBuffer.wrap(chunk);
+            while (buf.hasRemaining()) out.write(buf);
+            pos += chunk.length;
+        }
+    }
+
+    private void attach(Item it, Path dest) throws SQLException {
+        db.write(h -> {
+            PreparedStatement upd = h.prepare(it.source() == Source.INLINE
+                    ? "UPDATE videos SET path=?, data=NULL WHERE id=?"
+                    : "UPDATE videos SET path=? WHERE id=?");
+            upd.setString(1, dest.toAbsolutePath().toString());
+            upd.setLong(2, it.id());
+            upd.executeUpdate();
+            deleteCold(h, it.id());
+            return null;
+        });
+    }
+
+    private void discard(Item it) throws SQLException {
+        db.write(h -> {
+            if (it.source() == Source.INLINE) {
+                PreparedStatement upd = h.prepare("UPDATE videos SET data=NULL WHERE id=?");
+                upd.setLong(1, it.id());
+                upd.executeUpdate();
+            } else {
+                deleteCold(h, it.id());
+            }
+            return null;
+        });
+    }
+
+    /** Copies the BLOB page-for-page inside SQLite; never passes through the Java heap. */
+    private void moveToCold(Item it) throws SQLException {
+        db.write(h -> {
+            PreparedStatement ins = h.prepare(
+                    "INSERT OR REPLACE INTO video_blobs(video_id, data) SELECT id, data FROM videos WHERE id=?");
+            ins.setLong(1, it.id());
+            ins.executeUpdate();
+            PreparedStatement upd = h.prepare("UPDATE videos SET data=NULL WHERE id=?");
+            upd.setLong(1, it.id());
+            upd.executeUpdate();
+            return null;
+        });
+    }
+
+    private static void deleteCold(SqlitePool.Handle h, long id) throws SQLException {
+        PreparedStatement del = h.prepare("DELETE FROM video_blobs WHERE video_id=?");
+        del.setLong(1, id);
+        del.executeUpdate();
+    }
+
+    private void dropInlineColumnIfEmpty() throws SQLException {
+        if (!inlineColumn) return;
+        db.write(h -> {
+            try (ResultSet rs = h.prepare("SELECT EXISTS(SELECT 1 FROM videos WHERE data IS NOT NULL)").executeQuery()) {
+                if (rs.next() && rs.getBoolean(1)) return null;
+            }
+            try (Statement st = h.connection().createStatement()) {
+                st.executeUpdate("ALTER TABLE videos DROP COLUMN data");
+            }
+            inlineColumn = false;
+            LOG.info("Dropped legacy videos.data column");
+            return null;
+        });
+    }
+
+    /** Returns freed pages to the OS in small steps so other writers can interleave. */
+    private void reclaimSpace() {
+        try {
+            if (pragma("auto_vacuum") != 2) {
+                // Switching an existing file to incremental mode needs one full VACUUM.
+                LOG.info("Converting database to incremental auto-vacuum");
+                db.writeAutoCommit(h -> {
+                    try (Statement st = h.connection().createStatement()) {
+                        st.execute("PRAGMA auto_vacuum=INCREMENTAL");
+                        st.execute("VACUUM");
+                    }
+                    return null;
+                });
+                return;
+            }
+
+            long free = pragma("freelist_count");
+            for (long step = 0; step * VACUUM_STEP_PAGES < free; step++) {
+                db.writeAutoCommit(h -> {
+                    try (Statement st = h.connection().createStatement();
+                         ResultSet rs = st.executeQuery("PRAGMA incremental_vacuum(" + VACUUM_STEP_PAGES + ")")) {
+                        while (rs.next()) { /* drain: the pragma frees pages as it is stepped */ }
+                    }
+                    return null;
+                });
+            }
+            LOG.info("Incremental vacuum released {} page(s)", free);
+        } catch (SQLException e) {
+            LOG.warn("Vacuum after BLOB migration failed: {}", e.getMessage());
+        }
+    }
+
+    private long pragma(String name) throws SQLException {
+        return db.writeAutoCommit(h -> {
+            try (Statement st = h.connection().createStatement();
+                 ResultSet rs = st.executeQuery("PRAGMA " + name)) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+    }
+
+    private static Path existing(String path) {
+        if (path == null || path.isBlank()) return null;
+        Path p = Path.of(path);
+        return Files.exists(p) ? p : null;
+    }
+
+    private static long heapHeadroom() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+    }
+}
@@ -0,0 +1,170 @@
+package videocutter.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * On-disk copies of assets whose bytes live in the database, one file per asset, shared by
+ * every caller that needs a path (preview, scrub, export).
+ *
+ * Entries are reference counted through {@link MediaLease}s; only unleased entries are evicted,
+ * least recently used first, once the directory grows past its byte cap. The directory is
+ * emptied on startup (leftovers from a crash) and again on {@link #close()}.
+ */
+final class MaterializationCache implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(MaterializationCache.class);
+
+    /** Writes an asset's bytes to the given file; returns false if it has none. */
+    interface Source {
+        boolean writeTo(long id, Path dest) throws Exception;
+    }
+
+    private static final class Entry {
+        final CompletableFuture<Path> ready = new CompletableFuture<>();
+        long bytes;
+        int refs;
+    }
+
+    private final Path dir;
+    private final long capBytes;
+    private final Source source;
+
+    // Access-ordered: iteration starts at the least recently used entry.
+    private final Map<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    MaterializationCache(Path dir, long capBytes, Source source) {
+        this.dir = dir;
+        this.capBytes = capBytes;
+        this.source = source;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        deleteContents();
+    }
+
+    /**
+     * Returns a lease on the materialized copy of {@code id}, writing it first if needed.
+     * Concurrent callers for the same asset share one write. Returns null if the asset has no stored bytes.
+     */
+    MediaLease acquire(long id) throws Exception {
+        Entry e;
+        boolean mine = false;
+        synchronized (this) {
+            e = entries.get(id);
+            if (e == null) {
+                e = new Entry();
+                entries.put(id, e);
+                mine = true;
+            }
+            e.refs++;
+        }
+
+        if (mine) fill(id, e);
+
+        Path p;
+        try {
+            p = e.ready.get();
+        } catch (ExecutionException ex) {
+            release(id, e);
+            throw ex.getCause() instanceof Exception c ? c : ex;
+        }
+        if (p == null) {
+            release(id, e);
+            return null;
+        }
+        Entry held = e;
+        return new MediaLease(id, p, () -> release(id, held));
+    }
+
+    private void fill(long id, Entry e) {
+        Path dest = dir.resolve("asset-" + id + ".mp4");
+        Path part = dir.resolve("asset-" + id + ".mp4.part");
+        try {
+            if (!source.writeTo(id, part)) {
+                synchronized (this) { entries.remove(id, e); }
+                e.ready.complete(null);
+                return;
+            }
+            Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long size = Files.size(dest);
+            synchronized (this) {
+                e.bytes = size;
+                totalBytes += size;
+                evict();
+            }
+            LOG.info("Materialized asset {} ({} MB)", id, size >> 20);
+            e.ready.complete(dest);
+        } catch (Exception ex) {
+            try { Files.deleteIfExists(part); } catch (IOException ignored) {}
+            synchronized (this) { entries.remove(id, e); }
+            e.ready.completeExceptionally(ex);
+        }
+    }
+
+    private synchronized void release(long id, Entry e) {
+        e.refs--;
+        if (e.refs == 0) evict();
+    }
+
+    /** Drops unleased entries, oldest first, until the cache fits its cap. */
+    private void evict() {
+        Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > capBytes && it.hasNext()) {
+            Map.Entry<Long, Entry> me = it.next();
+            Entry e = me.getValue();
+            if (e.refs > 0 || !e.ready.isDone()) continue;
+            it.remove();
+            totalBytes -= e.bytes;
+            Path p = e.ready.getNow(null);
+            if (p != null) {
+                try { Files.deleteIfExists(p); } catch (IOException ex) { LOG.debug("Could not evict {}: {}", p, ex.getMessage()); }
+            }
+        }
+        if (totalBytes > capBytes) {
+            LOG.debug("Materialized copies use {} MB, over the {} MB cap, all in use", totalBytes >> 20, capBytes >> 20);
+        }
+    }
+
+    /** Forgets (and deletes) the copy of an asset that was deleted; open leases keep their file until closed. */
+    synchronized void invalidate(long id) {
+        Entry e = entries.get(id);
+        if (e == null || e.refs > 0 || !e.ready.isDone()) return;
+        entries.remove(id);
+        totalBytes -= e.bytes;
+        Path p = e.ready.getNow(null);
+        if (p != null) {
+            try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        entries.clear();
+        totalBytes = 0;
+        deleteContents();
+    }
+
+    private void deleteContents() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) {
+                try { Files.deleteIfExists(f); } catch (IOException ignored) {}
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not clear {}: {}", dir, e.getMessage());
+        }
+    }
+}
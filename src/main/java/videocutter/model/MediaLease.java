@@ -0,0 +1,38 @@
+package videocutter.model;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A readable media file for one asset, valid until {@link #close()}.
+ *
+ * For assets with a file on disk this is just that path. For assets whose bytes live in the
+ * database it pins a materialized copy, which the cache won't evict while any lease is open.
+ * Closing twice is harmless.
+ */
+public final class MediaLease implements AutoCloseable {
+    private final long assetId;
+    private final Path path;
+    private final Runnable release;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    MediaLease(long assetId, Path path, Runnable release) {
+        this.assetId = assetId;
+        this.path = path;
+        this.release = release;
+    }
+
+    static MediaLease unpinned(long assetId, Path path) {
+        return new MediaLease(assetId, path, null);
+    }
+
+    public long assetId() { return assetId; }
+    public Path path()    { return path; }
+    public File file()    { return path.toFile(); }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true) && release != null) release.run();
+    }
+}
@@ -0,0 +1,169 @@
+package videocutter.model;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loopback HTTP endpoint that serves any asset by id, with byte-range support, so VLC and
+ * ffmpeg can open and seek database-backed media without the caller holding a lease.
+ *
+ * Only 127.0.0.1 is bound and every URL carries a per-run random token. Each request opens its
+ * own {@link MediaLease} for as long as it streams, so a copy stays pinned only while a player
+ * is actually reading it.
+ */
+public final class MediaServer implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(MediaServer.class);
+
+    private static final Pattern PATH = Pattern.compile("^/media/([0-9a-f]+)/(\\d+)\\.mp4$");
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    private final VideoRepository repo;
+    private final HttpServer http;
+    private final ExecutorService pool;
+    private final byte[] token;
+    private final String base;
+
+    MediaServer(VideoRepository repo) throws IOException {
+        this.repo = repo;
+        byte[] raw = new byte[16];
+        new SecureRandom().nextBytes(raw);
+        String hex = HexFormat.of().formatHex(raw);
+        this.token = hex.getBytes(StandardCharsets.US_ASCII);
+
+        this.http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Players open a connection per seek and drop the old one; a cached pool follows that churn.
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "media-http-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        http.setExecutor(pool);
+        http.createContext("/media/", this::handle);
+        http.start();
+
+        this.base = "http://127.0.0.1:" + http.getAddress().getPort() + "/media/" + hex + "/";
+        LOG.info("Media server listening on 127.0.0.1:{}", http.getAddress().getPort());
+    }
+
+    /** URL that serves {@code id}'s media until this server is closed. */
+    String url(long id) {
+        return base + id + ".mp4";
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            String method = ex.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                ex.getResponseHeaders().set("Allow", "GET, HEAD");
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            Matcher m = PATH.matcher(ex.getRequestURI().getPath());
+            if (!m.matches() || !MessageDigest.isEqual(token, m.group(1).getBytes(StandardCharsets.US_ASCII))) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            long id = Long.parseLong(m.group(2));
+
+            MediaLease lease;
+            try {
+                lease = repo.openMedia(id);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            try (lease; FileChannel ch = FileChannel.open(lease.path(), StandardOpenOption.READ)) {
+                serve(ex, ch, head);
+            }
+        } catch (IOException e) {
+            // Players abandon connections whenever they seek; that is not an error.
+            LOG.debug("Media request {} ended early: {}", ex.getRequestURI(), e.getMessage());
+        } catch (RuntimeException e) {
+            LOG.warn("Media request {} failed", ex.getRequestURI(), e);
+            try { ex.sendResponseHeaders(500, -1); } catch (IOException ignored) {}
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static void serve(HttpExchange ex, FileChannel ch, boolean head) throws IOException {
+        long size = ch.size();
+        Headers h = ex.getResponseHeaders();
+        h.set("Content-Type", "video/mp4");
+        h.set("Accept-Ranges", "bytes");
+
+        long start = 0;
+        long end = size - 1;
+        int status = 200;
+        String range = ex.getRequestHeaders().getFirst("Range");
+        if (range != null) {
+            Matcher r = RANGE.matcher(range.trim());
+            // Multi-range requests are answered with the whole file, which RFC 9110 allows.
+            if (r.matches() && !(r.group(1).isEmpty() && r.group(2).isEmpty())) {
+                if (r.group(1).isEmpty()) {
+                    // "bytes=-N": the last N bytes
+                    start = Math.max(0, size - Long.parseLong(r.group(2)));
+                } else {
+                    start = Long.parseLong(r.group(1));
+                    if (!r.group(2).isEmpty()) end = Math.min(end, Long.parseLong(r.group(2)));
+                }
+                if (start >= size || start > end) {
+                    h.set("Content-Range", "bytes */" + size);
+                    ex.sendResponseHeaders(416, -1);
+                    return;
+                }
+                status = 206;
+                h.set("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long length = end - start + 1;
+        if (head || length <= 0) {
+            h.set("Content-Length", Long.toString(Math.max(0, length)));
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        ex.sendResponseHeaders(status, length);
+        try (OutputStream body = ex.getResponseBody()) {
+            WritableByteChannel out = Channels.newChannel(body);
+            long pos = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long n = ch.transferTo(pos, remaining, out);
+                if (n <= 0) break;
+                pos += n;
+                remaining -= n;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,80 @@
+package videocutter.model;
+
+import java.util.Arrays;
+
+/**
+ * 64-bit DCT perceptual hashes (pHash) of small grayscale frames: each bit says whether one of
+ * the 8x8 lowest frequencies of the frame's 32x32 DCT lies above their median. Re-encoding,
+ * rescaling and mild colour changes flip a few bits; unrelated pictures differ in about half.
+ */
+final class PerceptualHash {
+
+    /** Frames are hashed at SIZE x SIZE, one byte of luma per pixel. */
+    static final int SIZE = 32;
+
+    private static final int LOW = 8;
+
+    // Frames flatter than this (luma standard deviation) are fades and black leaders. They all
+    // hash alike, so they would tie unrelated assets together.
+    private static final double MIN_STDDEV = 6.0;
+
+    // COS[u][x] = cos((2x + 1) u pi / 2N), the DCT-II basis for the frequencies we keep.
+    private static final double[][] COS = new double[LOW][SIZE];
+    static {
+        for (int u = 0; u < LOW; u++) {
+            for (int x = 0; x < SIZE; x++) COS[u][x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * SIZE));
+        }
+    }
+
+    private PerceptualHash() {}
+
+    /**
+     * Hash of the SIZE x SIZE frame starting at {@code gray[offset]}, or {@code null} if the
+     * frame is too flat to tell apart from others.
+     */
+    static Long of(byte[] gray, int offset) {
+        int n = SIZE * SIZE;
+        double sum = 0, sq = 0;
+        for (int i = 0; i < n; i++) {
+            int v = gray[offset + i] & 0xFF;
+            sum += v;
+            sq += (double) v * v;
+        }
+        double mean = sum / n;
+        if (Math.sqrt(Math.max(0, sq / n - mean * mean)) < MIN_STDDEV) return null;
+
+        // Separable DCT, low frequencies only: rows first, then columns.
+        double[][] rows = new double[SIZE][LOW];
+        for (int y = 0; y < SIZE; y++) {
+            int row = offset + y * SIZE;
+            for (int u = 0; u < LOW; u++) {
+                double s = 0;
+                for (int x = 0; x < SIZE; x++) s += (gray[row + x] & 0xFF) * COS[u][x];
+                rows[y][u] = s;
+            }
+        }
+        double[] coef = new double[LOW * LOW];
+        for (int v = 0; v < LOW; v++) {
+            for (int u = 0; u < LOW; u++) {
+                double s = 0;
+                for (int y = 0; y < SIZE; y++) s += rows[y][u] * COS[v][y];
+                coef[v * LOW + u] = s;
+            }
+        }
+
+        // Median of the AC terms; the DC term is the frame's brightness and would dominate.
+        double[] ac = Arrays.copyOfRange(coef, 1, coef.length);
+        Arrays.sort(ac);
+        double median = (ac[ac.length / 2 - 1] + ac[ac.length / 2]) / 2;
+
+        long hash = 0;
+        for (int i = 0; i < coef.length; i++) {
+            if (coef[i] > median) hash |= 1L << i;
+        }
+        return hash;
+    }
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -1,6 +1,7 @@
 package videocutter.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -30,6 +31,31 @@ public class Project {
         clips.add(idx + 1, right);
     }
 
+    /**
+     * Splits {@code clip} at every cut inside it (e.g. scene changes), in one step. Cuts within
+     * 100 ms of a piece's edges are skipped, as in {@link #splitClipAt}. Returns the number of pieces.
+     */
+    public int splitClipAtAll(TimelineClip clip, long[] cutsMs) {
+        int idx = clips.indexOf(clip);
+        if (idx < 0) return 0;
+
+        List<TimelineClip> pieces = new ArrayList<>();
+        long s = clip.startMs();
+        long[] sorted = cutsMs.clone();
+        Arrays.sort(sorted);
+        for (long cut : sorted) {
+            if (cut <= s + 100 || cut >= clip.endMs() - 100) continue;
+            pieces.add(new TimelineClip(clip.assetId(), s, cut));
+            s = cut;
+        }
+        if (pieces.isEmpty()) return 1;
+        pieces.add(new TimelineClip(clip.assetId(), s, clip.endMs()));
+
+        clips.remove(idx);
+        clips.addAll(idx, pieces);
+        return pieces.size();
+    }
+
     public void clear() { clips.clear(); }
 
     public void replaceClipWithSplit(TimelineClip oldClip, TimelineClip left, TimelineClip right) {
@@ -0,0 +1,11 @@
+package videocutter.model;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * A project file opened or saved recently, as shown on the projects screen.
+ *
+ * @param posterAssetId asset whose thumbnail stands for the project (its first clip), or 0 if empty
+ */
+public record RecentProject(Path file, String title, Instant openedAt, int clipCount, long durationMs, long posterAssetId) {}
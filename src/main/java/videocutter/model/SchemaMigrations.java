@@ -0,0 +1,292 @@
+package videocutter.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Ordered schema steps keyed on {@code PRAGMA user_version}.
+ *
+ * Each step runs once, in its own transaction, and bumps user_version when it commits. Once the
+ * file is current, startup costs a single pragma read. Steps must stay idempotent, because files
+ * written before versioning existed start at version 0 with some of the schema already in place.
+ */
+final class SchemaMigrations {
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    private interface Step {
+        void apply(SqlitePool.Handle h) throws SQLException;
+    }
+
+    private record Migration(int version, String name, Step step) {}
+
+    // Append only — never reorder or edit a step that has shipped.
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "videos table", SchemaMigrations::videosTable),
+            new Migration(2, "library index", h -> exec(h,
+                    // Covers the library listing (filter on flags, walk id descending) and temp cleanup.
+                    "CREATE INDEX IF NOT EXISTS idx_videos_library ON videos(is_temp, is_hidden, id)")),
+            new Migration(3, "video_blobs cold table", h -> exec(h, """
+                    CREATE TABLE IF NOT EXISTS video_blobs (
+                        video_id INTEGER PRIMARY KEY,
+                        data BLOB NOT NULL
+                    )
+                    """)),
+            // How the file got into the library; REFERENCE rows point outside the vault.
+            new Migration(4, "import storage mode", h ->
+                    addColumnIfMissing(h, "videos", "storage", "TEXT NOT NULL DEFAULT 'COPY'")),
+            new Migration(5, "content hashes", SchemaMigrations::contentHashes),
+            new Migration(6, "library search index", SchemaMigrations::searchIndex),
+            // Set by the vault scanner for rows whose media file has disappeared.
+            new Migration(7, "missing-media flag", h ->
+                    addColumnIfMissing(h, "videos", "is_missing", "INTEGER NOT NULL DEFAULT 0")),
+            new Migration(8, "stored probe results", SchemaMigrations::mediaInfo),
+            new Migration(9, "keyframe index", SchemaMigrations::keyframes),
+            new Migration(10, "scene cuts", SchemaMigrations::sceneCuts),
+            // Project files opened or saved lately, for the projects screen.
+            new Migration(11, "recent projects", h -> exec(h, """
+                    CREATE TABLE IF NOT EXISTS recent_projects (
+                        path TEXT PRIMARY KEY,
+                        title TEXT NOT NULL,
+                        opened_at TEXT NOT NULL,
+                        clip_count INTEGER NOT NULL,
+                        duration_ms INTEGER NOT NULL,
+                        poster_id INTEGER
+                    )
+                    """)),
+            // Set once the single-decode analysis pass has built every derived index of a row.
+            new Migration(12, "analysis pass", h ->
+                    addColumnIfMissing(h, "videos", "analyzed", "INTEGER NOT NULL DEFAULT 0")),
+            // Preview proxies are hidden rows pointing at their original through parent_id.
+            new Migration(13, "proxy lookup", h -> exec(h,
+                    "CREATE INDEX IF NOT EXISTS idx_videos_parent ON videos(parent_id) WHERE parent_id IS NOT NULL")),
+            new Migration(14, "frame hashes", SchemaMigrations::frameHashes),
+            new Migration(15, "exact keyframe timestamps", SchemaMigrations::keyframeTimeBase)
+    );
+
+    private SchemaMigrations() {}
+
+    static int latest() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    /** Brings the file up to {@link #latest()}, logging how long each step took. */
+    static void run(SqlitePool db) throws SQLException {
+        long t0 = System.nanoTime();
+        // Use the already-open writer so startup doesn't open a reader connection just for this.
+        int current = db.writeAutoCommit(h -> (int) pragma(h, "user_version"));
+        if (current >= latest()) {
+            LOG.info("Schema v{} is current (checked in {} ms)", current, ms(t0));
+            return;
+        }
+
+        for (Migration m : MIGRATIONS) {
+            if (m.version() <= current) continue;
+            long t = System.nanoTime();
+            db.write(h -> {
+                m.step().apply(h);
+                exec(h, "PRAGMA user_version=" + m.version());
+                return null;
+            });
+            LOG.info("Schema v{} ({}) applied in {} ms", m.version(), m.name(), ms(t));
+        }
+        LOG.info("Schema migrated v{} -> v{} in {} ms", current, latest(), ms(t0));
+    }
+
+    // ---- steps ----
+
+    private static void videosTable(SqlitePool.Handle h) throws SQLException {
+        exec(h, """
+                CREATE TABLE IF NOT EXISTS videos (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    title TEXT,
+                    duration_ms INTEGER,
+                    width INTEGER,
+                    height INTEGER,
+                    created_at TEXT,
+                    path TEXT,
+                    edit_path TEXT,
+                    is_temp INTEGER DEFAULT 0,
+                    is_hidden INTEGER DEFAULT 0,
+                    parent_id INTEGER
+                )
+                """);
+
+        // Files from before these columns existed.
+        addColumnIfMissing(h, "videos", "is_temp", "INTEGER DEFAULT 0");
+        addColumnIfMissing(h, "videos", "parent_id", "INTEGER");
+        addColumnIfMissing(h, "videos", "path", "TEXT");
+        addColumnIfMissing(h, "videos", "edit_path", "TEXT");
+        addColumnIfMissing(h, "videos", "is_hidden", "INTEGER DEFAULT 0");
+    }
+
+    private static void contentHashes(SqlitePool.Handle h) throws SQLException {
+        addColumnIfMissing(h, "videos", "content_hash", "TEXT");
+        addColumnIfMissing(h, "videos", "size_bytes", "INTEGER");
+        // Dedup lookups; most legacy rows have no hash, so keep them out of the index.
+        exec(h, "CREATE INDEX IF NOT EXISTS idx_videos_hash ON videos(content_hash) WHERE content_hash IS NOT NULL");
+        // Cheap "could this be a duplicate?" check before paying for a full read.
+        exec(h, "CREATE INDEX IF NOT EXISTS idx_videos_size ON videos(size_bytes) WHERE size_bytes IS NOT NULL");
+        // Reference counting: is any other row still pointing at this file?
+        exec(h, "CREATE INDEX IF NOT EXISTS idx_videos_path ON videos(path)");
+    }
+
+    /**
+     * Full-text index over asset titles, keyed by videos.id, kept in step by triggers so every
+     * write path (imports, deletes, migrations) maintains it inside its own transaction.
+     * tags and notes are indexed now so adding them later doesn't mean rebuilding the table.
+     */
+    private static void searchIndex(SqlitePool.Handle h) throws SQLException {
+        exec(h, """
+                CREATE VIRTUAL TABLE IF NOT EXISTS videos_fts USING fts5(
+                    title, tags, notes,
+                    tokenize = 'unicode61 remove_diacritics 2',
+                    prefix = '2 3'
+                )
+                """);
+        exec(h, """
+                CREATE TRIGGER IF NOT EXISTS videos_fts_ai AFTER INSERT ON videos BEGIN
+                    INSERT INTO videos_fts(rowid, title) VALUES (new.id, new.title);
+                END
+                """);
+        exec(h, """
+                CREATE TRIGGER IF NOT EXISTS videos_fts_ad AFTER DELETE ON videos BEGIN
+                    DELETE FROM videos_fts WHERE rowid = old.id;
+                END
+                """);
+        exec(h, """
+                CREATE TRIGGER IF NOT EXISTS videos_fts_au AFTER UPDATE OF title ON videos BEGIN
+                    UPDATE videos_fts SET title = new.title WHERE rowid = old.id;
+                END
+                """);
+        exec(h, "DELETE FROM videos_fts");
+        exec(h, "INSERT INTO videos_fts(rowid, title) SELECT id, title FROM videos");
+    }
+
+    /**
+     * ffprobe results beyond duration and size, filled at import. probe_size and probe_mtime
+     * identify the file they were read from; a mismatch (or NULL) means probe again.
+     */
+    private static void mediaInfo(SqlitePool.Handle h) throws SQLException {
+        addColumnIfMissing(h, "videos", "fps", "REAL");
+        addColumnIfMissing(h, "videos", "video_codec", "TEXT");
+        addColumnIfMissing(h, "videos", "pix_fmt", "TEXT");
+        addColumnIfMissing(h, "videos", "audio_codec", "TEXT");
+        addColumnIfMissing(h, "videos", "sample_rate", "INTEGER");
+        addColumnIfMissing(h, "videos", "channels", "INTEGER");
+        addColumnIfMissing(h, "videos", "channel_layout", "TEXT");
+        addColumnIfMissing(h, "videos", "bit_rate", "INTEGER");
+        addColumnIfMissing(h, "videos", "stream_count", "INTEGER");
+        addColumnIfMissing(h, "videos", "probe_size", "INTEGER");
+        addColumnIfMissing(h, "videos", "probe_mtime", "INTEGER");
+    }
+
+    /**
+     * One delta-encoded keyframe list per asset (see KeyframeIndex). Its own table so listing
+     * and search never read it; removed with its row by trigger, like the search index.
+     */
+    private static void keyframes(SqlitePool.Handle h) throws SQLException {
+        exec(h, """
+                CREATE TABLE IF NOT EXISTS keyframes (
+                    video_id INTEGER PRIMARY KEY,
+                    count INTEGER NOT NULL,
+                    data BLOB NOT NULL
+                )
+                """);
+        exec(h, """
+                CREATE TRIGGER IF NOT EXISTS keyframes_ad AFTER DELETE ON videos BEGIN
+                    DELETE FROM keyframes WHERE video_id = old.id;
+                END
+                """);
+    }
+
+    /**
+     * Scene-change times per asset. Keyed (video_id, ms) without a rowid, so "cuts of this asset
+     * between a and b" is a single range scan. videos.scenes_scanned tells "no cuts found" apart
+     * from "not analysed yet".
+     */
+    private static void sceneCuts(SqlitePool.Handle h) throws SQLException {
+        exec(h, """
+                CREATE TABLE IF NOT EXISTS scene_cuts (
+                    video_id INTEGER NOT NULL,
+                    ms INTEGER NOT NULL,
+                    score REAL NOT NULL,
+                    PRIMARY KEY (video_id, ms)
+                ) WITHOUT ROWID
+                """);
+        exec(h, """
+                CREATE TRIGGER IF NOT EXISTS scene_cuts_ad AFTER DELETE ON videos BEGIN
+                    DELETE FROM scene_cuts WHERE video_id = old.id;
+                END
+                """);
+        addColumnIfMissing(h, "videos", "scenes_scanned", "INTEGER NOT NULL DEFAULT 0");
+    }
+
+    /**
+     * Perceptual hashes of frames sampled through each asset, for near-duplicate detection.
+     * Keyed (video_id, ms) without a rowid like scene_cuts. The analysis pass writes them, so
+     * library rows analysed before this step are queued for another pass.
+     */
+    private static void frameHashes(SqlitePool.Handle h) throws SQLException {
+        exec(h, """
+                CREATE TABLE IF NOT EXISTS frame_hashes (
+                    video_id INTEGER NOT NULL,
+                    ms INTEGER NOT NULL,
+                    hash INTEGER NOT NULL,
+                    PRIMARY KEY (video_id, ms)
+                ) WITHOUT ROWID
+                """);
+        exec(h, """
+                CREATE TRIGGER IF NOT EXISTS frame_hashes_ad AFTER DELETE ON videos BEGIN
+                    DELETE FROM frame_hashes WHERE video_id = old.id;
+                END
+                """);
+        exec(h, "UPDATE videos SET analyzed = 0 WHERE is_temp = 0 AND is_hidden = 0 AND video_codec IS NOT NULL");
+    }
+
+    /**
+     * Keyframe indexes hold stream ticks in this time base from now on. Older ones hold rounded
+     * milliseconds, too coarse to cut on, so their rows are queued for another analysis pass.
+     */
+    private static void keyframeTimeBase(SqlitePool.Handle h) throws SQLException {
+        addColumnIfMissing(h, "keyframes", "time_base", "TEXT");
+        exec(h, "UPDATE videos SET analyzed = 0 WHERE id IN (SELECT video_id FROM keyframes WHERE time_base IS NULL)");
+    }
+
+    // ---- helpers ----
+
+    static boolean hasColumn(SqlitePool.Handle h, String table, String column) throws SQLException {
+        try (Statement st = h.connection().createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addColumnIfMissing(SqlitePool.Handle h, String table, String column, String type) throws SQLException {
+        if (!hasColumn(h, table, column)) exec(h, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+    }
+
+    private static void exec(SqlitePool.Handle h, String sql) throws SQLException {
+        try (Statement st = h.connection().createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private static long pragma(SqlitePool.Handle h, String name) throws SQLException {
+        try (Statement st = h.connection().createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA " + name)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static long ms(long t0) {
+        return (System.nanoTime() - t0) / 1_000_000;
+    }
+}
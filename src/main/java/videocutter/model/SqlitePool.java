@@ -0,0 +1,243 @@
+package videocutter.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tiny SQLite connection pool: one writer connection and a few read-only connections,
+ * all in WAL mode so readers never wait on an in-flight import.
+ *
+ * Connections stay open for the life of the repository, so the page cache stays warm and
+ * each connection keeps its own prepared statements. Statements handed out by
+ * {@link Handle#prepare} are owned by the pool — close the ResultSet, never the statement.
+ */
+final class SqlitePool implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SqlitePool.class);
+
+    /** Unit of work run against a pooled connection. */
+    interface SqlWork<T> {
+        T run(Handle h) throws SQLException;
+    }
+
+    private static final int  BUSY_TIMEOUT_MS   = 5_000;
+    private static final int  STATEMENT_CACHE   = 64;
+    private static final long ACQUIRE_TIMEOUT_S = 30;
+
+    private final String url;
+    private final Handle writer;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final BlockingQueue<Handle> readers;
+    private final int maxReaders;
+    private final List<Handle> all = new ArrayList<>();
+
+    // Nested read() calls on the same thread reuse the connection they already hold.
+    private final ThreadLocal<Handle> held = new ThreadLocal<>();
+
+    // Watchdog for calls from a thread that must never block (the UI thread).
+    private volatile BooleanSupplier forbiddenThread;
+    private final AtomicLong forbiddenCalls = new AtomicLong();
+    private final Set<String> reportedCallers = ConcurrentHashMap.newKeySet();
+
+    SqlitePool(String url, int readerCount) throws SQLException {
+        this.url = url;
+        this.writer = open(url, false);
+        all.add(writer);
+
+        // Readers are opened on first demand so startup only pays for the writer.
+        this.maxReaders = Math.max(1, readerCount);
+        this.readers = new ArrayBlockingQueue<>(maxReaders);
+    }
+
+    private static Handle open(String url, boolean readOnly) throws SQLException {
+        Connection c = DriverManager.getConnection(url);
+        try (Statement s = c.createStatement()) {
+            // Only takes effect on a brand-new file, and only before WAL writes the header page;
+            // existing files are converted by a VACUUM after the legacy BLOB migration.
+            if (!readOnly) s.execute("PRAGMA auto_vacuum=INCREMENTAL");
+            // journal_mode is persistent in the file; setting it on every open is a cheap no-op.
+            s.execute("PRAGMA journal_mode=WAL");
+            s.execute("PRAGMA synchronous=NORMAL");
+            s.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MS);
+            s.execute("PRAGMA temp_store=MEMORY");
+            s.execute("PRAGMA cache_size=-8000"); // ~8 MB page cache per connection
+            if (readOnly) s.execute("PRAGMA query_only=1");
+        }
+        return new Handle(c);
+    }
+
+    /**
+     * Counts every top-level call made on a thread for which {@code check} returns true, and logs
+     * each distinct calling site once. Pass {@code Platform::isFxApplicationThread} to catch SQL on the UI thread.
+     */
+    void watchThread(BooleanSupplier check) {
+        this.forbiddenThread = check;
+    }
+
+    long forbiddenCalls() {
+        return forbiddenCalls.get();
+    }
+
+    private void checkThread() {
+        BooleanSupplier check = forbiddenThread;
+        if (check == null || !check.getAsBoolean()) return;
+        forbiddenCalls.incrementAndGet();
+        // Blame the first frame outside the model package: that's the code that should have gone async.
+        String caller = StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> !f.getClassName().startsWith("videocutter.model."))
+                .map(f -> f.getClassName() + "." + f.getMethodName() + ":" + f.getLineNumber())
+                .findFirst().orElse("?"));
+        if (reportedCallers.add(caller)) LOG.warn("Blocking database call on {} from {}", Thread.currentThread().getName(), caller);
+    }
+
+    /** Runs {@code work} on a reader connection (or the writer, if this thread already holds it). */
+    <T> T read(SqlWork<T> work) throws SQLException {
+        if (writeLock.isHeldByCurrentThread()) return work.run(writer);
+
+        Handle mine = held.get();
+        if (mine != null) return work.run(mine);
+
+        checkThread();
+
+        Handle h = readers.poll();
+        if (h == null) h = openReaderIfBelowMax();
+        try {
+            if (h == null) h = readers.poll(ACQUIRE_TIMEOUT_S, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        if (h == null) throw new SQLException("Timed out waiting for a database connection");
+
+        held.set(h);
+        try {
+            return work.run(h);
+        } finally {
+            held.remove();
+            readers.add(h);
+        }
+    }
+
+    private Handle openReaderIfBelowMax() throws SQLException {
+        synchronized (all) {
+            if (all.size() - 1 >= maxReaders) return null;
+            Handle h = open(url, true);
+            all.add(h);
+            return h;
+        }
+    }
+
+    /**
+     * Runs {@code work} inside a transaction on the single writer connection.
+     * Nested calls on the same thread join the outer transaction.
+     */
+    <T> T write(SqlWork<T> work) throws SQLException {
+        if (writeLock.isHeldByCurrentThread()) return work.run(writer);
+
+        checkThread();
+        writeLock.lock();
+        try {
+            Connection c = writer.connection();
+            c.setAutoCommit(false);
+            try {
+                T out = work.run(writer);
+                c.commit();
+                return out;
+            } catch (SQLException | RuntimeException e) {
+                try { c.rollback(); } catch (SQLException ignored) {}
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Runs {@code work} on the writer connection in autocommit mode, for statements that
+     * refuse to run inside a transaction (VACUUM, some PRAGMAs).
+     */
+    <T> T writeAutoCommit(SqlWork<T> work) throws SQLException {
+        if (writeLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("writeAutoCommit cannot be nested in a transaction");
+        }
+        checkThread();
+        writeLock.lock();
+        try {
+            return work.run(writer);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (all) {
+            for (Handle h : all) h.close();
+        }
+    }
+
+    /** A pooled connection plus its prepared-statement cache. */
+    static final class Handle {
+        private final Connection conn;
+        private final Map<String, PreparedStatement> statements =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> e) {
+                        if (size() <= STATEMENT_CACHE) return false;
+                        try { e.getValue().close(); } catch (SQLException ignored) {}
+                        return true;
+                    }
+                };
+
+        private Handle(Connection conn) { this.conn = conn; }
+
+        Connection connection() { return conn; }
+
+        /** Returns a cached statement for {@code sql}. Do not close it. */
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = conn.prepareStatement(sql);
+                statements.put(sql, ps);
+            } else {
+                ps.clearParameters();
+            }
+            return ps;
+        }
+
+        /** Rowid of the last INSERT on this connection. */
+        long lastInsertId() throws SQLException {
+            try (ResultSet rs = prepare("SELECT last_insert_rowid()").executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+
+        private void close() {
+            for (PreparedStatement ps : statements.values()) {
+                try { ps.close(); } catch (SQLException ignored) {}
+            }
+            statements.clear();
+            try { conn.close(); } catch (SQLException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package videocutter.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import videocutter.service.FfmpegService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Poster JPEGs under {@code media/.cache/thumbs/<id>/<w>x<h>.jpg}, the disk tier behind the
+ * in-memory thumbnail cache. A poster older than its source file is cut again.
+ */
+public final class ThumbnailStore {
+    private static final Logger LOG = LoggerFactory.getLogger(ThumbnailStore.class);
+
+    /** Library row poster size. */
+    public static final int LIST_W = 64;
+    public static final int LIST_H = 36;
+    /** Project card poster size. */
+    public static final int CARD_W = 320;
+    public static final int CARD_H = 180;
+
+    private final Path dir;
+    private final FfmpegService ff;
+
+    ThumbnailStore(Path dir, FfmpegService ff) {
+        this.dir = dir;
+        this.ff = ff;
+    }
+
+    /** The poster for {@code source} at this size, cutting it first if needed; null if ffmpeg can't. */
+    Path get(long id, Path source, long durationMs, int width, int height) throws IOException {
+        Path file = file(id, width, height);
+        FileTime src = Files.getLastModifiedTime(source);
+        if (Files.isRegularFile(file) && Files.getLastModifiedTime(file).compareTo(src) >= 0) return file;
+
+        Path part = pending(id, width, height);
+        long at = posterAt(durationMs);
+        if (!ff.thumbnail(source, at, width, height, part) && (at == 0 || !ff.thumbnail(source, 0, width, height, part))) {
+            Files.deleteIfExists(part);
+            return null;
+        }
+        return commit(id, width, height, part);
+    }
+
+    /** Where in a file of {@code durationMs} posters are taken from. */
+    static long posterAt(long durationMs) {
+        // A tenth of the way in skips black leaders and title cards, without seeking far.
+        return Math.min(durationMs / 10, 10_000);
+    }
+
+    /**
+     * A fresh temp file to write a poster of this size to before {@link #commit}. Every call gets
+     * its own, so the analysis pass and the thumbnail workers can cut the same poster at once
+     * without either publishing the other's half-written JPEG.
+     */
+    Path pending(long id, int width, int height) throws IOException {
+        Path file = file(id, width, height);
+        Files.createDirectories(file.getParent());
+        return Files.createTempFile(file.getParent(), width + "x" + height + "-", ".part.jpg");
+    }
+
+    /** Publishes a poster written to {@code part} (from {@link #pending}); null if nothing was written there. */
+    Path commit(long id, int width, int height, Path part) throws IOException {
+        if (!Files.isRegularFile(part) || Files.size(part) == 0) {
+            Files.deleteIfExists(part);
+            return null;
+        }
+        Path file = file(id, width, height);
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    void delete(long id) {
+        Path root = dir.resolve(Long.toString(id));
+        if (!Files.exists(root)) return;
+        try (Stream<Path> all = Files.walk(root)) {
+            for (Path p : all.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        } catch (IOException e) {
+            LOG.debug("Could not delete thumbnails for {}: {}", id, e.getMessage());
+        }
+    }
+
+    private Path file(long id, int width, int height) {
+        return dir.resolve(Long.toString(id)).resolve(width + "x" + height + ".jpg");
+    }
+}
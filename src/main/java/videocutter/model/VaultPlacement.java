@@ -0,0 +1,178 @@
+package videocutter.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Puts an imported file into the vault using the cheapest strategy that works here.
+ *
+ * Each strategy falls back to the next one in its chain (hard link → reflink → copy, reflink →
+ * copy), so a request for a hard link across filesystems still imports, just more slowly.
+ * The returned {@link Placed#strategy()} is what actually happened and is what gets recorded.
+ *
+ * Copies are content-addressed: the file is hashed while it streams into the vault and lands at
+ * {@code media/ab/<sha256>.mp4}, so a second copy of the same bytes reuses the first file.
+ */
+final class VaultPlacement {
+    private static final Logger LOG = LoggerFactory.getLogger(VaultPlacement.class);
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    /** Where the media ended up; {@code hash} is null if it was never read. */
+    record Placed(Path path, ImportStrategy strategy, String hash) {}
+
+    private VaultPlacement() {}
+
+    /**
+     * @param linkName vault file name to use for hard links and reflinks
+     * @param knownHash SHA-256 of {@code source} if the caller already computed it, else null
+     * @param claim told each vault path before a file is linked, cloned or moved there or an
+     *              existing one is reused, so the vault scanner can leave it alone until a row
+     *              points at it; hard links and reused files keep an old mtime
+     */
+    static Placed place(Path source, Path vaultDir, String linkName, ImportStrategy preferred,
+                        String knownHash, Consumer<Path> claim) throws IOException {
+        Path src = source.toAbsolutePath().normalize();
+        if (!Files.isRegularFile(src)) throw new IOException("Not a file: " + src);
+        Path dest = vaultDir.resolve(linkName);
+
+        switch (preferred) {
+            case REFERENCE:
+                return new Placed(src, ImportStrategy.REFERENCE, knownHash);
+            case HARDLINK:
+                claim.accept(dest);
+                if (tryHardLink(src, dest)) return new Placed(dest, ImportStrategy.HARDLINK, knownHash);
+                // fall through
+            case REFLINK:
+                claim.accept(dest);
+                if (tryReflink(src, dest)) return new Placed(dest, ImportStrategy.REFLINK, knownHash);
+                // fall through
+            case COPY:
+            default:
+                return copyHashed(src, vaultDir, claim);
+        }
+    }
+
+    /** Content-addressed location of a vault copy. */
+    static Path contentPath(Path vaultDir, String hash) {
+        return vaultDir.resolve(hash.substring(0, 2)).resolve(hash + ".mp4");
+    }
+
+    /** Streams {@code src} into the vault, hashing on the way, and files it under its hash. */
+    private static Placed copyHashed(Path src, Path vaultDir, Consumer<Path> claim) throws IOException {
+        Path part = Files.createTempFile(vaultDir, "import-", ".part");
+        try {
+            MessageDigest md = sha256();
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(part, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (in.read(buf) >= 0) {
+                    buf.flip();
+                    md.update(buf.duplicate());
+                    while (buf.hasRemaining()) out.write(buf);
+                    buf.clear();
+                }
+                out.force(true);
+            }
+            String hash = HexFormat.of().formatHex(md.digest());
+
+            Path dest = contentPath(vaultDir, hash);
+            claim.accept(dest);
+            Files.createDirectories(dest.getParent());
+            if (Files.exists(dest)) {
+                // Same bytes are already in the vault; the new row shares that file.
+                Files.delete(part);
+            } else {
+                Files.move(part, dest, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return new Placed(dest, ImportStrategy.COPY, hash);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    /** SHA-256 of a file as lowercase hex. Reads the whole file. */
+    static String sha256(Path file) throws IOException {
+        return sha256(file, n -> {});
+    }
+
+    /** As {@link #sha256(Path)}, reporting each chunk read to {@code onRead} (for throttling). */
+    static String sha256(Path file, LongConsumer onRead) throws IOException {
+        MessageDigest md = sha256();
+        byte[] buf = new byte[BUFFER_BYTES];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+                onRead.accept(n);
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE ships SHA-256
+        }
+    }
+
+    private static boolean tryHardLink(Path src, Path dest) {
+        try {
+            // Links can't cross filesystems; checking first avoids a noisy failure.
+            if (!Files.getFileStore(src).equals(Files.getFileStore(dest.getParent()))) return false;
+            Files.createLink(dest, src);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.debug("Hard link failed for {}: {}", src, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * The JDK has no FICLONE binding, so this goes through cp: GNU cp with --reflink=always
+     * issues the ioctl and fails instead of silently copying; macOS cp -c uses clonefile(2).
+     */
+    private static boolean tryReflink(Path src, Path dest) {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        List<String> cmd;
+        if (os.contains("linux")) {
+            cmd = List.of("cp", "--reflink=always", "--", src.toString(), dest.toString());
+        } else if (os.contains("mac")) {
+            cmd = List.of("cp", "-c", src.toString(), dest.toString());
+        } else {
+            return false;
+        }
+
+        try {
+            Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (p.waitFor() == 0) return true;
+            LOG.debug("Reflink not available for {}: {}", src, out.trim());
+        } catch (IOException e) {
+            LOG.debug("Reflink failed for {}: {}", src, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try { Files.deleteIfExists(dest); } catch (IOException ignored) {}
+        return false;
+    }
+}
@@ -0,0 +1,364 @@
+package videocutter.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Background garbage collector and integrity check for the media vault.
+ *
+ * Walks the vault (one task per shard directory), reads every row once, and from the two sets:
+ * reclaims vault files no row points at, flags rows whose media is gone (videos.is_missing) and,
+ * if asked, re-hashes vault files to catch silent corruption.
+ */
+public final class VaultScanner {
+    private static final Logger LOG = LoggerFactory.getLogger(VaultScanner.class);
+
+    private static final int WALK_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * @param minOrphanAge files modified more recently than this are left alone (they may still be being written)
+     * @param verifyHashes re-read vault files and compare them against videos.content_hash, or
+     *                     fill it in for rows imported before hashes were kept
+     * @param maxBytesPerSecond read budget for hash verification; 0 means unlimited
+     */
+    public record Options(Duration minOrphanAge, boolean verifyHashes, long maxBytesPerSecond) {
+        public static final Options DEFAULT = new Options(Duration.ofHours(1), false, 0);
+    }
+
+    public record Report(int filesScanned, long bytesScanned, int orphansReclaimed, long bytesReclaimed,
+                         int danglingRows, int hashesVerified, int hashMismatches) {}
+
+    record FileInfo(long size, Instant modified) {}
+
+    private record RowInfo(long id, String path, String editPath, boolean hasBlob, String hash, boolean owned, Long size) {}
+
+    private final SqlitePool db;
+    private final Path vaultDir;
+    private final VideoRepository repo;
+
+    VaultScanner(SqlitePool db, Path vaultDir, VideoRepository repo) {
+        this.db = db;
+        this.vaultDir = vaultDir;
+        this.repo = repo;
+    }
+
+    Report scan(Options opts, Consumer<Double> onProgress) throws SQLException {
+        long t0 = System.nanoTime();
+        Consumer<Double> progress = onProgress != null ? onProgress : p -> {};
+
+        Map<Path, FileInfo> files = walk();
+        long bytesScanned = files.values().stream().mapToLong(FileInfo::size).sum();
+        progress.accept(0.3);
+
+        List<RowInfo> rows = rows();
+        Set<Path> referenced = new HashSet<>(rows.size() * 2);
+        Map<Long, Boolean> missing = new HashMap<>();
+        for (RowInfo r : rows) {
+            Path p = abs(r.path());
+            Path ep = abs(r.editPath());
+            if (p != null) referenced.add(p);
+            if (ep != null) referenced.add(ep);
+            // Vault files are answered from the walk; referenced originals need a stat.
+            boolean present = r.hasBlob() || present(p, files) || present(ep, files);
+            missing.put(r.id(), !present);
+        }
+        int dangling = flagMissing(missing);
+        int sized = fillSizes(rows, files);
+        progress.accept(0.4);
+
+        Instant cutoff = Instant.now().minus(opts.minOrphanAge());
+        List<Path> orphans = orphans(files, referenced, cutoff, repo::isImporting);
+        long orphanBytes = 0;
+        for (Path p : orphans) orphanBytes += files.get(p).size();
+        // The walk and row read are a snapshot; reclaimOrphans checks each file again before deleting it.
+        long reclaimed = orphans.isEmpty() ? 0 : repo.reclaimOrphans(orphans, cutoff, p -> progress.accept(0.4 + 0.1 * p));
+        removeEmptyShards();
+        progress.accept(0.5);
+
+        int verified = 0;
+        int mismatches = 0;
+        int hashed = 0;
+        if (opts.verifyHashes()) {
+            List<RowInfo> toVerify = new ArrayList<>();
+            long verifyBytes = 0;
+            for (RowInfo r : rows) {
+                Path p = abs(r.path());
+                if (r.owned() && p != null && files.containsKey(p)) {
+                    toVerify.add(r);
+                    verifyBytes += files.get(p).size();
+                }
+            }
+            Throttle throttle = new Throttle(opts.maxBytesPerSecond());
+            long done = 0;
+            for (RowInfo r : toVerify) {
+                Path p = abs(r.path());
+                try {
+                    String actual = VaultPlacement.sha256(p, throttle::consumed);
+                    if (r.hash() == null) {
+                        // Imported before hashes were kept: without one, re-imports can't find it.
+                        hashed += storeHash(r.id(), actual);
+                    } else {
+                        verified++;
+                        if (!actual.equals(r.hash())) {
+                            mismatches++;
+                            LOG.warn("Vault file for asset {} does not match its hash: {}", r.id(), p);
+                            clearHash(r.id());
+                        }
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Could not verify {}: {}", p, e.getMessage());
+                }
+                done += files.get(p).size();
+                progress.accept(0.5 + 0.5 * (verifyBytes == 0 ? 1 : (double) done / verifyBytes));
+            }
+        }
+        progress.accept(1.0);
+
+        Report report = new Report(files.size(), bytesScanned, orphans.size(), reclaimed, dangling, verified, mismatches);
+        LOG.info("Vault scan in {} ms: {} file(s), {} MB; reclaimed {} orphan(s) ({} MB of {} MB); {} missing row(s); {} hash(es) verified, {} mismatch(es); filled in {} size(s), {} hash(es)",
+                (System.nanoTime() - t0) / 1_000_000, report.filesScanned(), bytesScanned >> 20,
+                report.orphansReclaimed(), reclaimed >> 20, orphanBytes >> 20, dangling, verified, mismatches, sized, hashed);
+        return report;
+    }
+
+    /**
+     * Files from the walk that look like garbage: no row points at them, no import has claimed
+     * them, and they weren't modified after {@code cutoff}. The age alone is not enough: hard
+     * links and reused content-addressed copies keep an old mtime while their import is running.
+     */
+    static List<Path> orphans(Map<Path, FileInfo> files, Set<Path> referenced, Instant cutoff, Predicate<Path> importing) {
+        List<Path> out = new ArrayList<>();
+        for (Map.Entry<Path, FileInfo> e : files.entrySet()) {
+            Path p = e.getKey();
+            if (referenced.contains(p) || e.getValue().modified().isAfter(cutoff) || importing.test(p)) continue;
+            out.add(p);
+        }
+        return out;
+    }
+
+    // ---- walk ----
+
+    /** Every regular file in the vault, walked one top-level directory per task. Skips dot-directories (caches). */
+    private Map<Path, FileInfo> walk() {
+        Map<Path, FileInfo> out = new ConcurrentHashMap<>();
+        List<Path> dirs = new ArrayList<>();
+        try (DirectoryStream<Path> top = Files.newDirectoryStream(vaultDir)) {
+            for (Path p : top) {
+                BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+                if (a.isDirectory()) {
+                    if (!hidden(p)) dirs.add(p);
+                } else if (a.isRegularFile()) {
+                    out.put(p.toAbsolutePath().normalize(), new FileInfo(a.size(), a.lastModifiedTime().toInstant()));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(WALK_THREADS, r -> {
+            Thread t = new Thread(r, "vault-walk");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> jobs = new ArrayList<>();
+            for (Path dir : dirs) jobs.add(pool.submit(() -> walkTree(dir, out)));
+            for (Future<?> f : jobs) f.get();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return out;
+    }
+
+    private static void walkTree(Path dir, Map<Path, FileInfo> out) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes a) {
+                    return hidden(d) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+                @Override public FileVisitResult visitFile(Path f, BasicFileAttributes a) {
+                    if (a.isRegularFile()) out.put(f.toAbsolutePath().normalize(), new FileInfo(a.size(), a.lastModifiedTime().toInstant()));
+                    return FileVisitResult.CONTINUE;
+                }
+                @Override public FileVisitResult visitFileFailed(Path f, IOException e) {
+                    LOG.debug("Skipping unreadable {}: {}", f, e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean hidden(Path p) {
+        Path name = p.getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    private void removeEmptyShards() {
+        try (DirectoryStream<Path> top = Files.newDirectoryStream(vaultDir, Files::isDirectory)) {
+            for (Path dir : top) {
+                if (hidden(dir)) continue;
+                try (DirectoryStream<Path> inside = Files.newDirectoryStream(dir)) {
+                    if (inside.iterator().hasNext()) continue;
+                }
+                Files.deleteIfExists(dir);
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not tidy vault directories: {}", e.getMessage());
+        }
+    }
+
+    // ---- rows ----
+
+    /** Every row, once: the "index" side of the cross-check. */
+    private List<RowInfo> rows() throws SQLException {
+        return db.read(h -> {
+            List<RowInfo> out = new ArrayList<>();
+            try (ResultSet rs = h.prepare(
+                    "SELECT v.id, v.path, v.edit_path, b.video_id IS NOT NULL, v.content_hash, v.storage, v.size_bytes " +
+                            "FROM videos v LEFT JOIN video_blobs b ON b.video_id = v.id").executeQuery()) {
+                while (rs.next()) {
+                    out.add(new RowInfo(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBoolean(4),
+                            rs.getString(5), ImportStrategy.fromColumn(rs.getString(6)).ownsFile(),
+                            rs.getObject(7) == null ? null : rs.getLong(7)));
+                }
+            }
+            return out;
+        });
+    }
+
+    private boolean present(Path p, Map<Path, FileInfo> files) {
+        if (p == null) return false;
+        if (p.startsWith(vaultDir)) return files.containsKey(p);
+        return Files.exists(p);
+    }
+
+    /** Writes is_missing for rows whose state changed; returns how many rows are missing now. */
+    private int flagMissing(Map<Long, Boolean> missing) throws SQLException {
+        int count = 0;
+        for (boolean m : missing.values()) if (m) count++;
+        db.write(h -> {
+            PreparedStatement ps = h.prepare("UPDATE videos SET is_missing = ? WHERE id = ? AND is_missing <> ?");
+            for (Map.Entry<Long, Boolean> e : missing.entrySet()) {
+                int flag = e.getValue() ? 1 : 0;
+                ps.setInt(1, flag);
+                ps.setLong(2, e.getKey());
+                ps.setInt(3, flag);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            return null;
+        });
+        return count;
+    }
+
+    /**
+     * Fills in size_bytes for rows from before it was kept, so imports of the same size know to
+     * hash and compare. Vault files are answered from the walk; referenced originals need a stat.
+     */
+    private int fillSizes(List<RowInfo> rows, Map<Path, FileInfo> files) throws SQLException {
+        Map<Long, Long> sizes = new HashMap<>();
+        for (RowInfo r : rows) {
+            Path p = abs(r.path());
+            if (r.size() != null || p == null) continue;
+            FileInfo f = files.get(p);
+            if (f != null) {
+                sizes.put(r.id(), f.size());
+            } else if (!p.startsWith(vaultDir)) {
+                try {
+                    sizes.put(r.id(), Files.size(p));
+                } catch (IOException ignored) {
+                    // Missing; flagMissing has it.
+                }
+            }
+        }
+        if (sizes.isEmpty()) return 0;
+        db.write(h -> {
+            PreparedStatement ps = h.prepare("UPDATE videos SET size_bytes = ? WHERE id = ? AND size_bytes IS NULL");
+            for (Map.Entry<Long, Long> e : sizes.entrySet()) {
+                ps.setLong(1, e.getValue());
+                ps.setLong(2, e.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            return null;
+        });
+        return sizes.size();
+    }
+
+    private int storeHash(long id, String hash) throws SQLException {
+        return db.write(h -> {
+            PreparedStatement ps = h.prepare("UPDATE videos SET content_hash = ? WHERE id = ? AND content_hash IS NULL");
+            ps.setString(1, hash);
+            ps.setLong(2, id);
+            return ps.executeUpdate();
+        });
+    }
+
+    /** A corrupt file must not be offered as the target of future dedup matches. */
+    private void clearHash(long id) throws SQLException {
+        db.write(h -> {
+            PreparedStatement ps = h.prepare("UPDATE videos SET content_hash = NULL WHERE id = ?");
+            ps.setLong(1, id);
+            return ps.executeUpdate();
+        });
+    }
+
+    private static Path abs(String path) {
+        if (path == null || path.isBlank()) return null;
+        return Path.of(path).toAbsolutePath().normalize();
+    }
+
+    // ---- hashing ----
+
+    /** Sleeps just enough to keep the average read rate under the budget. */
+    private static final class Throttle {
+        private final long bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long total;
+
+        Throttle(long bytesPerSecond) { this.bytesPerSecond = bytesPerSecond; }
+
+        void consumed(long bytes) {
+            if (bytesPerSecond <= 0) return;
+            total += bytes;
+            long dueNanos = (long) (total * 1e9 / bytesPerSecond);
+            long ahead = dueNanos - (System.nanoTime() - start);
+            if (ahead > 1_000_000) {
+                try {
+                    Thread.sleep(ahead / 1_000_000, (int) (ahead % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
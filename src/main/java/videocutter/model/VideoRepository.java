@@ -1,29 +1,102 @@
 package videocutter.model;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import videocutter.service.FfmpegService;
-import videocutter.service.Meta;
+import videocutter.service.KeyframeIndex;
+import videocutter.service.MediaInfo;
 import videocutter.service.TempFiles;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.sql.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-public class VideoRepository {
-    private final String url;
+public class VideoRepository implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(VideoRepository.class);
+
+    private static final int DELETE_CHUNK = 500;
+    private static final long MATERIALIZED_CAP_BYTES = 2L << 30;
+
+    // ffmpeg scene score (0–1) above which a frame starts a new shot; 0.3 is the common default.
+    private static final double SCENE_THRESHOLD = 0.3;
+
+    // The analysis pass samples one frame this often for near-duplicate detection.
+    private static final long HASH_INTERVAL_MS = 1000;
+
+    // Preview proxies are at most this tall; smaller H.264 sources are previewed as they are.
+    private static final int PROXY_HEIGHT = 540;
+
+    // Probe result columns, in the order bindInfo() writes them and info() reads them.
+    private static final String INFO_COLUMNS =
+            "duration_ms,width,height,fps,video_codec,pix_fmt,audio_codec,sample_rate,channels,channel_layout,bit_rate,stream_count,probe_size,probe_mtime";
+
+    private final SqlitePool db;
     private final FfmpegService ff = new FfmpegService();
 
+    // Read-through cache for findById / materializeToTemp; invalidated on every write.
+    private final AssetCache cache = new AssetCache(1024);
+
     // local “media vault” for imported/derived files
     private final Path vaultDir;
 
+    // Media that early versions stored inside the database.
+    private final LegacyBlobs legacy;
+
+    // Shared on-disk copies of database-stored media, handed out as leases.
+    private final MaterializationCache materialized;
+
+    // Audio peak sidecars for the timeline's audio lane.
+    private final WaveformStore waveforms;
+
+    // Sprite-sheet filmstrips for the timeline's video lane.
+    private final FilmstripStore filmstrips;
+
+    // Poster JPEGs, the disk tier of the UI's thumbnail cache.
+    private final ThumbnailStore thumbnails;
+
+    // Loopback endpoint for players; null until startMediaServer().
+    private volatile MediaServer mediaServer;
+
+    // One analysis pass for the whole app, however many editors ask (see analyzeMissing).
+    private final Object analysisLock = new Object();
+    private boolean analysisRunning;
+    private boolean analysisAgain;
+    private long analysisRoundsStarted;
+    private long analysisRoundsDone;
+    private long analysedTotal;
+
+    // Assets whose preview proxy is being transcoded right now.
+    private final Set<Long> proxying = ConcurrentHashMap.newKeySet();
+
+    // Vault paths claimed by imports that haven't committed their row yet, with a count per
+    // path (plans with the same content share one). The vault scanner never reclaims these.
+    private final Map<Path, Integer> importing = new HashMap<>();
+
     /** Create a unique, safe MP4 path inside the vault. Does not create the file. */
     public Path allocateVaultMp4(String suggestedName) {
         String safe = (suggestedName == null ? "clip.mp4" : suggestedName)
@@ -34,252 +107,1546 @@ public class VideoRepository {
     }
 
     public VideoRepository(String dbFile) throws SQLException {
-        this.url = "jdbc:sqlite:" + dbFile;
+        long t0 = System.nanoTime();
+        // One writer + a few readers; background workers can read while an import writes.
+        int readers = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.db = new SqlitePool("jdbc:sqlite:" + dbFile, readers);
         this.vaultDir = Paths.get("media").toAbsolutePath().normalize();
         try { Files.createDirectories(vaultDir); } catch (IOException e) { throw new RuntimeException(e); }
+        this.legacy = new LegacyBlobs(db, vaultDir);
+        this.materialized = new MaterializationCache(
+                vaultDir.resolve(".materialized"), MATERIALIZED_CAP_BYTES, legacy::copyTo);
+        this.waveforms = new WaveformStore(vaultDir.resolve(".cache").resolve("waveforms"), ff);
+        this.filmstrips = new FilmstripStore(vaultDir.resolve(".cache").resolve("filmstrips"), ff);
+        this.thumbnails = new ThumbnailStore(vaultDir.resolve(".cache").resolve("thumbs"), ff);
         init();
+        LOG.info("Repository ready in {} ms", (System.nanoTime() - t0) / 1_000_000);
     }
 
 
+    @Override
+    public void close() {
+        if (mediaServer != null) mediaServer.close();
+        materialized.close();
+        db.close();
+    }
+
+    /** Starts the loopback server behind {@link #mediaUri}. Calling it again is a no-op. */
+    public synchronized void startMediaServer() {
+        if (mediaServer != null) return;
+        try {
+            mediaServer = new MediaServer(this);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Flags (counts and logs) database calls made on threads for which {@code isUiThread} is true. */
+    public void watchUiThread(BooleanSupplier isUiThread) {
+        db.watchThread(isUiThread);
+    }
+
+    /** Database calls made on the watched thread so far; zero is the goal. */
+    public long uiThreadQueryCount() {
+        return db.forbiddenCalls();
+    }
+
     private void init() throws SQLException {
-        try (Connection c = DriverManager.getConnection(url);
-             Statement s = c.createStatement()) {
-
-            s.executeUpdate("""
-            CREATE TABLE IF NOT EXISTS videos (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                title TEXT,
-                duration_ms INTEGER,
-                width INTEGER,
-                height INTEGER,
-                created_at TEXT,
-                path TEXT,
-                edit_path TEXT,
-                data BLOB,
-                is_temp INTEGER DEFAULT 0,
-                is_hidden INTEGER DEFAULT 0,
-                parent_id INTEGER
-            )
-            """);
+        SchemaMigrations.run(db);
+        db.writeAutoCommit(h -> {
+            legacy.detect(h);
+            return null;
+        });
+    }
+
+    /** Deletes temp rows and returns their now-unused vault files for {@link #reclaimFiles}. */
+    public List<Path> deleteAllTempVideos() throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        List<Path> paths = db.write(h -> {
+            List<Path> out = new ArrayList<>();
+            try (ResultSet rs = h.prepare("SELECT id, path, storage FROM videos WHERE is_temp = 1").executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                    String p = rs.getString(2);
+                    boolean owned = ImportStrategy.fromColumn(rs.getString(3)).ownsFile();
+                    if (owned && p != null && !p.isBlank()) out.add(Paths.get(p));
+                }
+            }
+            h.prepare("DELETE FROM video_blobs WHERE video_id IN (SELECT id FROM videos WHERE is_temp = 1)").executeUpdate();
+            h.prepare("DELETE FROM videos WHERE is_temp = 1").executeUpdate();
+            out.removeIf(p -> referenced(h, p));
+            return out;
+        });
+        cache.invalidate(ids);
+        return paths;
+    }
+
+    public long importMp4(Path file) {
+        return importMp4(file, ImportStrategy.COPY);
+    }
+
+    /**
+     * Imports {@code file} using {@code strategy}, falling back to a cheaper-to-satisfy one when
+     * the filesystem can't do it. The strategy actually used is stored in videos.storage.
+     * Bulk imports should drive the three stages below directly and commit in batches.
+     */
+    public long importMp4(Path file, ImportStrategy strategy) {
+        ImportPlan plan = placeImport(planImport(file, strategy));
+        return commitImports(List.of(plan)).get(0).id();
+    }
+
+    /**
+     * Stage 1: probe the file and check for a duplicate. Touches the database read-only.
+     *
+     * Content already in the library resolves to the existing asset instead of a new row.
+     * The file is only hashed here when some asset already has exactly the same size, and
+     * so are same-size assets that have no hash yet; copies are otherwise hashed as they
+     * stream into the vault in {@link #placeImport}.
+     * A plan that reuses a vault file comes back placed, holding a claim on it like
+     * {@link #placeImport} would.
+     */
+    public ImportPlan planImport(Path file, ImportStrategy strategy) {
+        try {
+            long size = Files.size(file);
+            String hash = null;
+            if (sizeSeen(size)) {
+                hash = VaultPlacement.sha256(file);
+                hashUnhashed(size);
+            }
+
+            HashMatch match = hash == null ? null : findByHash(hash);
+            if (match != null && match.visible()) {
+                return new ImportPlan(file, strategy, size, hash, null, match.id(), match.path(), match.storage());
+            }
+
+            // Headers only; everything that needs a decode waits for the analysis pass (see analyze).
+            MediaInfo info = ff.probeInfo(file);
+            if (match != null && match.storage().ownsFile()) {
+                // Only hidden/temp rows have these bytes: point a new row at the same vault file.
+                // Claimed like a placed file, so deleting that row can't take the file with it;
+                // if it went before the claim, place the import as usual.
+                claimImport(match.path());
+                if (Files.isRegularFile(match.path())) {
+                    return new ImportPlan(file, strategy, size, hash, info, -1, match.path(), match.storage());
+                }
+                releaseImport(match.path());
+            }
+            return new ImportPlan(file, strategy, size, hash, info, -1, null, null);
+        } catch (IOException | SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stage 2: get the media into the vault. This is the I/O-heavy part; callers should bound it.
+     * The placed file stays claimed (see {@link #isImporting}) until {@link #commitImports}.
+     */
+    public ImportPlan placeImport(ImportPlan plan) {
+        if (plan.isDuplicate() || plan.isPlaced()) return plan;
+        List<Path> claimed = new ArrayList<>();
+        VaultPlacement.Placed placed = null;
+        try {
+            Path file = plan.source();
+            String safeName = file.getFileName().toString().replaceAll("[\\\\/:*?\"<>|]", "_");
+            placed = VaultPlacement.place(
+                    file, vaultDir, System.currentTimeMillis() + "-" + safeName, plan.requested(), plan.hash(),
+                    p -> {
+                        claimImport(p);
+                        claimed.add(p);
+                    });
+            if (placed.strategy() != plan.requested()) {
+                LOG.info("Imported {} as {} ({} not possible here)", file.getFileName(), placed.strategy().name(), plan.requested().name());
+            }
+            return plan.placed(placed.path(), placed.strategy(), placed.hash());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            // One claim on the placed file carries over to the commit; fallbacks that didn't work out are released.
+            boolean kept = false;
+            for (Path p : claimed) {
+                if (!kept && placed != null && p.equals(placed.path())) kept = true;
+                else releaseImport(p);
+            }
+        }
+    }
+
+    /** What {@link #commitImports} did with one plan: a new row, or an existing asset with the same content. */
+    public record Committed(long id, boolean created) {}
+
+    /**
+     * Stage 3: insert every placed plan in one transaction. Returns the outcome for each plan, in
+     * order. Duplicates resolve to the existing asset, including ones only recognised here: a
+     * streamed copy whose hash matches an earlier row or a plan earlier in the same batch.
+     */
+    public List<Committed> commitImports(List<ImportPlan> plans) {
+        List<Path> orphaned = new ArrayList<>();
+        try {
+            List<Committed> done = db.write(h -> {
+                List<Committed> out = new ArrayList<>(plans.size());
+                String now = Instant.now().toString();
+                for (ImportPlan plan : plans) {
+                    if (plan.isDuplicate()) {
+                        out.add(new Committed(plan.existingId(), false));
+                        continue;
+                    }
+                    if (!plan.isPlaced()) throw new IllegalStateException("Not placed: " + plan.source());
+
+                    // A streamed copy learns its hash only once placed; an earlier row may already match.
+                    if (plan.hash() != null) {
+                        HashMatch late = findByHash(plan.hash());
+                        if (late != null && late.visible()) {
+                            if (!late.path().equals(plan.path()) && plan.storage().ownsFile()) orphaned.add(plan.path());
+                            out.add(new Committed(late.id(), false));
+                            continue;
+                        }
+                    }
+
+                    PreparedStatement ps = h.prepare(
+                            "INSERT INTO videos(title,created_at,path,edit_path,is_temp,is_hidden,parent_id,storage,content_hash,size_bytes," + INFO_COLUMNS + ") " +
+                                    "VALUES(?,?,?,NULL,0,0,NULL,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)");
+                    ps.setString(1, plan.source().getFileName().toString());
+                    ps.setString(2, now);
+                    ps.setString(3, plan.path().toAbsolutePath().toString());
+                    ps.setString(4, plan.storage().name());
+                    ps.setString(5, plan.hash());
+                    ps.setLong(6, plan.sizeBytes());
+                    bindInfo(ps, 7, plan.info(), probeKey(plan.path()));
+                    ps.executeUpdate();
+                    out.add(new Committed(h.lastInsertId(), true));
+                }
+                orphaned.removeIf(p -> referenced(h, p));
+                return out;
+            });
+            cache.invalidate(done.stream().map(Committed::id).toList());
+
+            for (Path p : orphaned) {
+                try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+            }
+            return done;
         } catch (SQLException e) {
             throw new RuntimeException(e);
+        } finally {
+            // Committed rows now protect their files; failed ones leave them to the next scan.
+            for (ImportPlan plan : plans) {
+                if (!plan.isDuplicate() && plan.isPlaced() && plan.storage().ownsFile()) releaseImport(plan.path());
+            }
         }
+    }
 
-        ensureColumns();
-        migrateBlobsToVault();
+    private void claimImport(Path file) {
+        synchronized (importing) {
+            importing.merge(file.toAbsolutePath().normalize(), 1, Integer::sum);
+        }
     }
 
-    private void ensureColumns() throws SQLException {
-        try (Connection c = DriverManager.getConnection(url);
-             Statement st = c.createStatement()) {
-            try { st.executeUpdate("ALTER TABLE videos ADD COLUMN is_temp INTEGER DEFAULT 0"); } catch (SQLException ignored) {}
-            try { st.executeUpdate("ALTER TABLE videos ADD COLUMN parent_id INTEGER"); } catch (SQLException ignored) {}
-            try { st.executeUpdate("ALTER TABLE videos ADD COLUMN path TEXT"); } catch (SQLException ignored) {}
-            try { st.executeUpdate("ALTER TABLE videos ADD COLUMN edit_path TEXT"); } catch (SQLException ignored) {}
-            try { st.executeUpdate("ALTER TABLE videos ADD COLUMN is_hidden INTEGER DEFAULT 0"); } catch (SQLException ignored) {}
+    private void releaseImport(Path file) {
+        synchronized (importing) {
+            importing.computeIfPresent(file.toAbsolutePath().normalize(), (p, n) -> n > 1 ? n - 1 : null);
         }
     }
 
-    public void deleteAllTempVideos() throws SQLException {
-        List<Path> paths = new ArrayList<>();
+    /** True while an import has placed {@code file} in the vault but not yet committed a row for it. */
+    boolean isImporting(Path file) {
+        synchronized (importing) {
+            return importing.containsKey(file.toAbsolutePath().normalize());
+        }
+    }
 
-        try (Connection c = DriverManager.getConnection(url)) {
-            try (PreparedStatement ps = c.prepareStatement("SELECT path FROM videos WHERE is_temp = 1");
-                 ResultSet rs = ps.executeQuery()) {
+    private boolean sizeSeen(long size) throws SQLException {
+        return db.read(h -> {
+            PreparedStatement ps = h.prepare("SELECT EXISTS(SELECT 1 FROM videos WHERE size_bytes = ?)");
+            ps.setLong(1, size);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        });
+    }
+
+    /**
+     * Stores content_hash for rows of exactly {@code size} bytes that have none: imported before
+     * hashes were kept, or linked/referenced when no other asset had their size. Each is hashed
+     * once; afterwards {@link #findByHash} can match it.
+     */
+    private void hashUnhashed(long size) throws SQLException {
+        Map<Long, Path> todo = db.read(h -> {
+            Map<Long, Path> out = new LinkedHashMap<>();
+            PreparedStatement ps = h.prepare("SELECT id, path FROM videos WHERE size_bytes = ? AND content_hash IS NULL");
+            ps.setLong(1, size);
+            try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    String p = rs.getString(1);
-                    if (p != null && !p.isBlank()) paths.add(Paths.get(p));
+                    Path p = existing(rs.getString(2));
+                    if (p != null) out.put(rs.getLong(1), p);
                 }
             }
+            return out;
+        });
+        for (Map.Entry<Long, Path> e : todo.entrySet()) {
+            String hash;
+            try {
+                if (Files.size(e.getValue()) != size) continue;   // changed since; the vault scan will notice
+                hash = VaultPlacement.sha256(e.getValue());
+            } catch (IOException ex) {
+                LOG.warn("Could not hash {} for asset {}: {}", e.getValue(), e.getKey(), ex.getMessage());
+                continue;
+            }
+            db.write(h -> {
+                PreparedStatement ps = h.prepare("UPDATE videos SET content_hash = ? WHERE id = ? AND content_hash IS NULL");
+                ps.setString(1, hash);
+                ps.setLong(2, e.getKey());
+                return ps.executeUpdate();
+            });
+        }
+    }
 
-            try (PreparedStatement ps = c.prepareStatement("DELETE FROM videos WHERE is_temp = 1")) {
-                ps.executeUpdate();
+    private record HashMatch(long id, Path path, ImportStrategy storage, boolean visible) {}
+
+    /** Best row holding these bytes whose file is still on disk; visible library assets first. */
+    private HashMatch findByHash(String hash) throws SQLException {
+        return db.read(h -> {
+            PreparedStatement ps = h.prepare(
+                    "SELECT id, path, storage, is_temp = 0 AND is_hidden = 0 AS visible FROM videos " +
+                            "WHERE content_hash = ? ORDER BY visible DESC, id");
+            ps.setString(1, hash);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Path p = existing(rs.getString(2));
+                    if (p != null) return new HashMatch(rs.getLong(1), p, ImportStrategy.fromColumn(rs.getString(3)), rs.getBoolean(4));
+                }
+                return null;
             }
+        });
+    }
+
+    /**
+     * Keyset-paginated library listing, newest first. Pass {@link Long#MAX_VALUE} for the first
+     * page and the id of the last asset received for each following page.
+     */
+    public List<VideoAsset> listPage(long beforeId, int limit) {
+        try {
+            return db.read(h -> {
+                List<VideoAsset> out = new ArrayList<>(limit);
+                PreparedStatement ps = h.prepare(
+                        "SELECT id,title,duration_ms,width,height,created_at FROM videos " +
+                                "WHERE is_temp = 0 AND is_hidden = 0 AND id < ? ORDER BY id DESC LIMIT ?");
+                ps.setLong(1, beforeId);
+                ps.setInt(2, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) out.add(asset(rs));
+                }
+                return out;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Library search, newest first, paged the same way as {@link #listPage}. Every word in
+     * {@code text} must match the start of a word in the title, so "bea 20" finds "Beach 2021.mp4".
+     * Text with no searchable words falls back to the plain listing.
+     */
+    public List<VideoAsset> search(String text, long beforeId, int limit) {
+        String match = ftsQuery(text);
+        if (match == null) return listPage(beforeId, limit);
+        try {
+            return db.read(h -> {
+                List<VideoAsset> out = new ArrayList<>(limit);
+                PreparedStatement ps = h.prepare(
+                        "SELECT v.id,v.title,v.duration_ms,v.width,v.height,v.created_at " +
+                                "FROM videos_fts f JOIN videos v ON v.id = f.rowid " +
+                                "WHERE videos_fts MATCH ? AND f.rowid < ? AND v.is_temp = 0 AND v.is_hidden = 0 " +
+                                "ORDER BY f.rowid DESC LIMIT ?");
+                ps.setString(1, match);
+                ps.setLong(2, beforeId);
+                ps.setInt(3, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) out.add(asset(rs));
+                }
+                return out;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
         }
+    }
 
-        for (Path p : paths) {
-            try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+    /** Turns user input into an FTS5 prefix query; quoting each word keeps operators inert. */
+    private static String ftsQuery(String text) {
+        if (text == null) return null;
+        StringBuilder sb = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append('"').append(word).append("\"*");
         }
+        return sb.length() == 0 ? null : sb.toString();
     }
 
-    public long importMp4(Path file) {
+    public VideoAsset findById(long id) {
+        VideoAsset hit = cache.asset(id);
+        if (hit != null) return hit;
+
         try {
-            Meta meta = ff.probe(file);
+            long epoch = cache.epoch();
+            VideoAsset found = db.read(h -> {
+                PreparedStatement ps = h.prepare("SELECT id,title,duration_ms,width,height,created_at FROM videos WHERE id=?");
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? asset(rs) : null;
+                }
+            });
+            cache.putAsset(found, epoch);
+            return found;
+        } catch (SQLException e) { throw new RuntimeException(e); }
+    }
 
-            String safeName = file.getFileName().toString().replaceAll("[\\\\/:*?\"<>|]", "_");
-            Path dest = vaultDir.resolve(System.currentTimeMillis() + "-" + safeName);
-            Files.copy(file, dest, StandardCopyOption.REPLACE_EXISTING);
-
-            try (Connection c = DriverManager.getConnection(url);
-                 PreparedStatement ps = c.prepareStatement(
-                         "INSERT INTO videos(title,duration_ms,width,height,created_at,path,edit_path,data,is_temp,is_hidden,parent_id) " +
-                                 "VALUES(?,?,?,?,?,?,NULL,NULL,0,0,NULL)",
-                         Statement.RETURN_GENERATED_KEYS)) {
-
-                ps.setString(1, file.getFileName().toString());
-                ps.setLong(2, meta.durationMs());
-                ps.setInt(3, meta.width());
-                ps.setInt(4, meta.height());
-                ps.setString(5, Instant.now().toString());
-                ps.setString(6, dest.toAbsolutePath().toString());
-                ps.executeUpdate();
+    /**
+     * Batch form of {@link #findById}: one query for every id not already cached.
+     * Missing ids are simply absent from the result, which preserves the order of {@code ids}.
+     */
+    public Map<Long, VideoAsset> findByIds(Collection<Long> ids) {
+        Map<Long, VideoAsset> out = new LinkedHashMap<>();
+        if (ids == null || ids.isEmpty()) return out;
+
+        Set<Long> misses = new LinkedHashSet<>();
+        for (Long id : ids) {
+            VideoAsset hit = cache.asset(id);
+            if (hit != null) out.put(id, hit);
+            else misses.add(id);
+        }
+        if (misses.isEmpty()) return out;
 
-                try (ResultSet rs = ps.getGeneratedKeys()) {
-                    rs.next();
-                    return rs.getLong(1);
+        try {
+            long epoch = cache.epoch();
+            Map<Long, VideoAsset> found = db.read(h -> {
+                Map<Long, VideoAsset> rows = new HashMap<>();
+                PreparedStatement ps = h.prepare(
+                        "SELECT id,title,duration_ms,width,height,created_at FROM videos WHERE id IN (SELECT value FROM json_each(?))");
+                ps.setString(1, jsonArray(misses));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        VideoAsset a = asset(rs);
+                        rows.put(a.id(), a);
+                    }
                 }
+                return rows;
+            });
+            for (VideoAsset a : found.values()) cache.putAsset(a, epoch);
+
+            // Rebuild in caller order.
+            Map<Long, VideoAsset> ordered = new LinkedHashMap<>();
+            for (Long id : ids) {
+                VideoAsset a = out.containsKey(id) ? out.get(id) : found.get(id);
+                if (a != null) ordered.put(id, a);
             }
-        } catch (Exception e) {
+            return ordered;
+        } catch (SQLException e) { throw new RuntimeException(e); }
+    }
+
+    /**
+     * Batch form of {@link #materializeToTemp}: resolves every id to a readable file with a
+     * single query. Only assets with no usable file on disk fall back to per-id materialization.
+     */
+    public Map<Long, Path> resolvePaths(Collection<Long> ids) {
+        return resolvePaths(ids, true);
+    }
+
+    private Map<Long, Path> resolvePaths(Collection<Long> ids, boolean materialize) {
+        Map<Long, Path> out = new LinkedHashMap<>();
+        if (ids == null || ids.isEmpty()) return out;
+
+        Set<Long> misses = new LinkedHashSet<>();
+        for (Long id : ids) {
+            Path known = cache.path(id);
+            if (known != null && Files.exists(known)) out.put(id, known);
+            else misses.add(id);
+        }
+        if (misses.isEmpty()) return out;
+
+        try {
+            long epoch = cache.epoch();
+            Map<Long, Row> rows = db.read(h -> {
+                Map<Long, Row> found = new HashMap<>();
+                PreparedStatement ps = h.prepare(
+                        "SELECT id, path, edit_path, title FROM videos WHERE id IN (SELECT value FROM json_each(?))");
+                ps.setString(1, jsonArray(misses));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) found.put(rs.getLong(1), new Row(rs.getString(2), rs.getString(3), rs.getString(4)));
+                }
+                return found;
+            });
+
+            for (Long id : misses) {
+                Row row = rows.get(id);
+                if (row == null) continue;
+
+                Path p = existing(row.path());
+                if (p == null) p = existing(row.editPath());
+                if (p != null) {
+                    cache.putPath(id, p, epoch);
+                    out.put(id, p);
+                } else if (materialize) {
+                    // Stale edit_path cleanup and BLOB fallback live in the single-id path.
+                    out.put(id, materializeToTemp(id).toPath());
+                }
+            }
+
+            Map<Long, Path> ordered = new LinkedHashMap<>();
+            for (Long id : ids) {
+                Path p = out.get(id);
+                if (p != null) ordered.put(id, p);
+            }
+            return ordered;
+        } catch (SQLException e) { throw new RuntimeException(e); }
+    }
+
+    /** True if any row uses {@code file}, as its media or as its edit copy. */
+    private static boolean referenced(SqlitePool.Handle h, Path file) {
+        try {
+            PreparedStatement ps = h.prepare("SELECT EXISTS(SELECT 1 FROM videos WHERE path = ?1 OR edit_path = ?1)");
+            ps.setString(1, file.toAbsolutePath().toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Path existing(String path) {
+        if (path == null || path.isBlank()) return null;
+        Path p = Path.of(path);
+        return Files.exists(p) ? p : null;
+    }
+
+    private static String jsonArray(Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static VideoAsset asset(ResultSet rs) throws SQLException {
+        return new VideoAsset(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getLong(3),
+                rs.getInt(4),
+                rs.getInt(5),
+                Instant.parse(rs.getString(6))
+        );
+    }
+
+    /** Stored probe result for one asset; see {@link #mediaInfo(Collection)}. Null if the asset is unknown. */
+    public MediaInfo mediaInfo(long id) {
+        return mediaInfo(List.of(id)).get(id);
+    }
+
+    /**
+     * Probe results for {@code ids}, from the columns filled at import. A stored result is
+     * trusted while its file still has the size and mtime it was probed at; otherwise the file
+     * is probed again and the row updated. Database-backed assets get whatever was stored.
+     */
+    public Map<Long, MediaInfo> mediaInfo(Collection<Long> ids) {
+        Map<Long, MediaInfo> out = new LinkedHashMap<>();
+        if (ids == null || ids.isEmpty()) return out;
+        try {
+            Map<Long, Path> files = resolvePaths(ids, false);
+            Map<Long, StoredInfo> rows = db.read(h -> {
+                Map<Long, StoredInfo> found = new HashMap<>();
+                PreparedStatement ps = h.prepare(
+                        "SELECT id," + INFO_COLUMNS + " FROM videos WHERE id IN (SELECT value FROM json_each(?))");
+                ps.setString(1, jsonArray(ids));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long size = rs.getLong(14);
+                        ProbeKey key = rs.wasNull() ? null : new ProbeKey(size, rs.getLong(15));
+                        found.put(rs.getLong(1), new StoredInfo(info(rs, 2), key));
+                    }
+                }
+                return found;
+            });
+
+            Map<Long, Path> stale = new LinkedHashMap<>();
+            Set<Long> changed = new HashSet<>();
+            for (Long id : ids) {
+                StoredInfo row = rows.get(id);
+                if (row == null) continue;
+                Path file = files.get(id);
+                if (file == null) {
+                    if (row.info().isKnown()) out.put(id, row.info());
+                } else if (row.info().isKnown() && row.key() != null && row.key().equals(probeKey(file))) {
+                    out.put(id, row.info());
+                } else {
+                    stale.put(id, file);
+                    if (row.key() != null) changed.add(id);
+                }
+            }
+            if (stale.isEmpty()) return out;
+
+            // Probe outside the transaction; ffprobe takes far longer than the update.
+            Map<Long, MediaInfo> probed = new LinkedHashMap<>();
+            Map<Long, ProbeKey> keys = new HashMap<>();
+            for (Map.Entry<Long, Path> e : stale.entrySet()) {
+                keys.put(e.getKey(), probeKey(e.getValue()));
+                probed.put(e.getKey(), ff.probeInfo(e.getValue()));
+            }
+            db.write(h -> {
+                PreparedStatement ps = h.prepare("UPDATE videos SET (" + INFO_COLUMNS + ") = (?,?,?,?,?,?,?,?,?,?,?,?,?,?) WHERE id=?");
+                for (Map.Entry<Long, MediaInfo> e : probed.entrySet()) {
+                    bindInfo(ps, 1, e.getValue(), keys.get(e.getKey()));
+                    ps.setLong(15, e.getKey());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                if (!changed.isEmpty()) forgetAnalysis(h, changed);
+                return null;
+            });
+            cache.invalidate(probed.keySet());
+            LOG.info("Re-probed {} asset(s) whose files changed or were never probed", probed.size());
+
+            probed.forEach((id, info) -> { if (info.isKnown()) out.put(id, info); });
+            return out;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Drops what was derived from the old bytes of files that changed on disk; the background
+     * analysis pass rebuilds it ({@link #analyzeMissing}, {@link #buildMissingProxies}). Cached
+     * images check the file themselves; dropped proxy files are reclaimed by the vault scan.
+     */
+    private static void forgetAnalysis(SqlitePool.Handle h, Collection<Long> ids) throws SQLException {
+        String json = jsonArray(ids);
+        for (String sql : List.of(
+                "DELETE FROM keyframes WHERE video_id IN (SELECT value FROM json_each(?))",
+                "DELETE FROM frame_hashes WHERE video_id IN (SELECT value FROM json_each(?))",
+                "DELETE FROM scene_cuts WHERE video_id IN (SELECT value FROM json_each(?))",
+                "UPDATE videos SET scenes_scanned = 0, analyzed = 0 WHERE id IN (SELECT value FROM json_each(?))",
+                "DELETE FROM videos WHERE is_hidden = 1 AND parent_id IN (SELECT value FROM json_each(?))")) {
+            PreparedStatement ps = h.prepare(sql);
+            ps.setString(1, json);
+            ps.executeUpdate();
+        }
+    }
+
+    private record ProbeKey(long size, long mtimeMs) {}
+
+    private record StoredInfo(MediaInfo info, ProbeKey key) {}
+
+    /** Null if the file can't be read; such results are stored without a key and probed again. */
+    private static ProbeKey probeKey(Path file) {
+        try {
+            BasicFileAttributes a = Files.readAttributes(file, BasicFileAttributes.class);
+            return new ProbeKey(a.size(), a.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Binds {@link #INFO_COLUMNS} from {@code first}. A failed probe leaves no key, so it is retried next time. */
+    private static void bindInfo(PreparedStatement ps, int first, MediaInfo info, ProbeKey key) throws SQLException {
+        int i = first;
+        ps.setLong(i++, info.durationMs());
+        ps.setInt(i++, info.width());
+        ps.setInt(i++, info.height());
+        ps.setDouble(i++, info.fps());
+        ps.setString(i++, info.videoCodec());
+        ps.setString(i++, info.pixelFormat());
+        ps.setString(i++, info.audioCodec());
+        ps.setInt(i++, info.sampleRate());
+        ps.setInt(i++, info.channels());
+        ps.setString(i++, info.channelLayout());
+        ps.setLong(i++, info.bitRate());
+        ps.setInt(i++, info.streams());
+        if (info.isKnown() && key != null) {
+            ps.setLong(i++, key.size());
+            ps.setLong(i, key.mtimeMs());
+        } else {
+            ps.setNull(i++, Types.INTEGER);
+            ps.setNull(i, Types.INTEGER);
+        }
+    }
+
+    /** Reads {@link #INFO_COLUMNS} (minus the key) starting at column {@code first}. */
+    private static MediaInfo info(ResultSet rs, int first) throws SQLException {
+        int i = first;
+        return new MediaInfo(
+                rs.getLong(i++), rs.getInt(i++), rs.getInt(i++), rs.getDouble(i++),
+                rs.getString(i++), rs.getString(i++),
+                rs.getString(i++), rs.getInt(i++), rs.getInt(i++), rs.getString(i++),
+                rs.getLong(i++), rs.getInt(i));
+    }
+
+    /** Stored keyframe index for one asset, or null if it has none yet. Never scans the file. */
+    public KeyframeIndex keyframes(long id) {
+        return keyframes(List.of(id)).get(id);
+    }
+
+    /** Batch form of {@link #keyframes(long)}; assets without an index are left out. */
+    public Map<Long, KeyframeIndex> keyframes(Collection<Long> ids) {
+        Map<Long, KeyframeIndex> out = new LinkedHashMap<>();
+        if (ids == null || ids.isEmpty()) return out;
+        try {
+            return db.read(h -> {
+                PreparedStatement ps = h.prepare(
+                        "SELECT video_id, count, data, time_base FROM keyframes WHERE video_id IN (SELECT value FROM json_each(?))");
+                ps.setString(1, jsonArray(ids));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) out.put(rs.getLong(1), KeyframeIndex.decode(rs.getBytes(3), rs.getInt(2), rs.getString(4)));
+                }
+                return out;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Stored scene-cut times of one asset within [fromMs, toMs], ascending; empty if none or not analysed yet. */
+    public long[] sceneCuts(long id, long fromMs, long toMs) {
+        try {
+            return db.read(h -> {
+                PreparedStatement ps = h.prepare(
+                        "SELECT ms FROM scene_cuts WHERE video_id = ? AND ms BETWEEN ? AND ? ORDER BY ms");
+                ps.setLong(1, id);
+                ps.setLong(2, fromMs);
+                ps.setLong(3, toMs);
+                List<Long> out = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) out.add(rs.getLong(1));
+                }
+                return out.stream().mapToLong(Long::longValue).toArray();
+            });
+        } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public List<VideoAsset> listAll() {
-        List<VideoAsset> out = new ArrayList<>();
-        try (Connection c = DriverManager.getConnection(url);
-             PreparedStatement ps = c.prepareStatement(
-                     "SELECT id,title,duration_ms,width,height,created_at FROM videos WHERE is_temp = 0 AND is_hidden = 0 ORDER BY id DESC"
-             );
-             ResultSet rs = ps.executeQuery()) {
+    /** Every stored scene cut of each asset, for drawing and snapping. Assets not analysed yet are left out. */
+    public Map<Long, long[]> sceneCuts(Collection<Long> ids) {
+        Map<Long, long[]> out = new LinkedHashMap<>();
+        if (ids == null || ids.isEmpty()) return out;
+        try {
+            Map<Long, List<Long>> found = db.read(h -> {
+                Map<Long, List<Long>> rows = new LinkedHashMap<>();
+                PreparedStatement ps = h.prepare(
+                        "SELECT v.id, c.ms FROM videos v LEFT JOIN scene_cuts c ON c.video_id = v.id " +
+                                "WHERE v.id IN (SELECT value FROM json_each(?)) AND v.scenes_scanned = 1 ORDER BY v.id, c.ms");
+                ps.setString(1, jsonArray(ids));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        List<Long> cuts = rows.computeIfAbsent(rs.getLong(1), k -> new ArrayList<>());
+                        long ms = rs.getLong(2);
+                        if (!rs.wasNull()) cuts.add(ms);
+                    }
+                }
+                return rows;
+            });
+            found.forEach((id, cuts) -> out.put(id, cuts.stream().mapToLong(Long::longValue).toArray()));
+            return out;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            while (rs.next()) {
-                out.add(new VideoAsset(
-                        rs.getLong(1), rs.getString(2), rs.getLong(3),
-                        rs.getInt(4), rs.getInt(5), Instant.parse(rs.getString(6))
-                ));
+    /**
+     * Builds every decode-based index of one asset from a single ffmpeg pass over its file:
+     * keyframes, scene cuts, audio peaks, the filmstrip the timeline opens at, the library and
+     * card posters, and perceptual hashes of sampled frames. Blocks for that decode, so call it off the UI thread. False if the file is
+     * gone or ffmpeg fails; the asset then stays unanalysed and is retried next time.
+     */
+    public boolean analyze(long id) {
+        Path file = resolvePaths(List.of(id), false).get(id);
+        MediaInfo info = mediaInfo(id);
+        if (file == null || info == null || !info.isKnown()) return false;
+        long interval = Filmstrip.IMPORT_INTERVAL_MS;
+        int[][] posterSizes = {
+                {ThumbnailStore.LIST_W, ThumbnailStore.LIST_H},
+                {ThumbnailStore.CARD_W, ThumbnailStore.CARD_H}};
+        Path samples = info.hasVideo() ? TempFiles.tmp("frames-", ".gray") : null;
+        List<FfmpegService.Poster> posters = new ArrayList<>();
+        Path stripDir = null;
+        try {
+            if (info.hasVideo()) {
+                stripDir = filmstrips.prepare(id, interval);
+                for (int[] s : posterSizes) posters.add(new FfmpegService.Poster(s[0], s[1], thumbnails.pending(id, s[0], s[1])));
             }
+            FfmpegService.AnalysisPlan plan = new FfmpegService.AnalysisPlan(true, SCENE_THRESHOLD,
+                    interval, Filmstrip.TILE_W, Filmstrip.TILE_H, Filmstrip.COLS, Filmstrip.ROWS, stripDir,
+                    ThumbnailStore.posterAt(info.durationMs()), posters,
+                    HASH_INTERVAL_MS, PerceptualHash.SIZE, samples,
+                    WaveformPeaks.SAMPLE_RATE);
+
+            long t0 = System.nanoTime();
+            FfmpegService.Analysis a = ff.analyze(file, info, plan, pcm -> waveforms.write(id, file, pcm));
+            if (a == null) {
+                // Drop partial outputs; the lazy builders or the next pass make them properly.
+                waveforms.delete(id);
+                return false;
+            }
+            if (stripDir != null) filmstrips.record(id, file, interval, info.durationMs(), a.sheets(), stripDir);
+            for (FfmpegService.Poster p : posters) thumbnails.commit(id, p.width(), p.height(), p.out());
+            byte[] frames = samples != null ? Files.readAllBytes(samples) : null;
+
+            db.write(h -> {
+                if (a.keyframes() != null) putKeyframes(h, id, a.keyframes());
+                if (a.sceneCuts() != null) putSceneCuts(h, id, a.sceneCuts());
+                if (frames != null) putFrameHashes(h, id, frames);
+                PreparedStatement ps = h.prepare("UPDATE videos SET analyzed = 1 WHERE id = ?");
+                ps.setLong(1, id);
+                ps.executeUpdate();
+                return null;
+            });
+            LOG.info("Analysed asset {} in one pass in {} ms", id, (System.nanoTime() - t0) / 1_000_000);
+            return true;
+        } catch (IOException | SQLException e) {
+            LOG.warn("Could not analyse asset {}", id, e);
+            return false;
+        } finally {
+            if (samples != null) {
+                try { Files.deleteIfExists(samples); } catch (IOException ignored) {}
+            }
+            // Committed outputs have been moved away; this only drops unpublished temp files.
+            if (stripDir != null) filmstrips.discard(stripDir);
+            for (FfmpegService.Poster p : posters) {
+                try { Files.deleteIfExists(p.out()); } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Runs {@link #analyze} for every asset that hasn't had it, library assets newest first, then
+     * hidden and temp rows (they still need keyframes for seeking). Each asset is one full decode,
+     * so this belongs on a background thread; it stops between assets if interrupted.
+     *
+     * Single-flight across every caller of this repository: a call while a pass is running starts
+     * no second decode of the same assets. It asks the running pass for one more round, which
+     * picks up rows added since that pass listed its work, and waits for that round to end.
+     * Returns the number of assets analysed while the caller ran or waited.
+     */
+    public int analyzeMissing(Consumer<Double> onProgress) {
+        synchronized (analysisLock) {
+            if (analysisRunning) {
+                analysisAgain = true;
+                long target = analysisRoundsStarted + 1;
+                long before = analysedTotal;
+                try {
+                    while (analysisRunning && analysisRoundsDone < target) analysisLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return (int) (analysedTotal - before);
+            }
+            analysisRunning = true;
+            analysisRoundsStarted++;
+        }
+        int analysed = 0;
+        try {
+            while (true) {
+                int n = analyzeRound(onProgress);
+                analysed += n;
+                synchronized (analysisLock) {
+                    analysedTotal += n;
+                    analysisRoundsDone++;
+                    analysisLock.notifyAll();
+                    if (!analysisAgain || Thread.currentThread().isInterrupted()) {
+                        analysisRunning = false;
+                        analysisAgain = false;
+                        return analysed;
+                    }
+                    analysisAgain = false;
+                    analysisRoundsStarted++;
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (analysisLock) {
+                analysisRunning = false;
+                analysisAgain = false;
+                analysisLock.notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private int analyzeRound(Consumer<Double> onProgress) {
+        Consumer<Double> progress = onProgress != null ? onProgress : p -> {};
+        try {
+            List<Long> ids = db.read(h -> {
+                List<Long> found = new ArrayList<>();
+                try (ResultSet rs = h.prepare(
+                        "SELECT id FROM videos WHERE analyzed = 0 AND is_missing = 0 " +
+                                "ORDER BY (is_temp = 0 AND is_hidden = 0) DESC, id DESC").executeQuery()) {
+                    while (rs.next()) found.add(rs.getLong(1));
+                }
+                return found;
+            });
+
+            int done = 0;
+            int analysed = 0;
+            for (long id : ids) {
+                if (Thread.currentThread().isInterrupted()) break;
+                if (analyze(id)) analysed++;
+                progress.accept(++done / (double) ids.size());
+            }
+            if (analysed > 0) LOG.info("Analysed {} asset(s)", analysed);
+            return analysed;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+    }
+
+    private static void putSceneCuts(SqlitePool.Handle h, long id, List<FfmpegService.SceneCut> cuts) throws SQLException {
+        PreparedStatement del = h.prepare("DELETE FROM scene_cuts WHERE video_id = ?");
+        del.setLong(1, id);
+        del.executeUpdate();
+        PreparedStatement ins = h.prepare("INSERT OR REPLACE INTO scene_cuts(video_id, ms, score) VALUES(?,?,?)");
+        for (FfmpegService.SceneCut c : cuts) {
+            ins.setLong(1, id);
+            ins.setLong(2, c.ms());
+            ins.setDouble(3, c.score());
+            ins.addBatch();
+        }
+        ins.executeBatch();
+        PreparedStatement mark = h.prepare("UPDATE videos SET scenes_scanned = 1 WHERE id = ?");
+        mark.setLong(1, id);
+        mark.executeUpdate();
+    }
+
+    /** Hashes raw frame samples (see {@link PerceptualHash}) and replaces the asset's stored ones. */
+    private static void putFrameHashes(SqlitePool.Handle h, long id, byte[] frames) throws SQLException {
+        PreparedStatement del = h.prepare("DELETE FROM frame_hashes WHERE video_id = ?");
+        del.setLong(1, id);
+        del.executeUpdate();
+        PreparedStatement ins = h.prepare("INSERT INTO frame_hashes(video_id, ms, hash) VALUES(?,?,?)");
+        int frameBytes = PerceptualHash.SIZE * PerceptualHash.SIZE;
+        for (int i = 0; (i + 1) * frameBytes <= frames.length; i++) {
+            Long hash = PerceptualHash.of(frames, i * frameBytes);
+            if (hash == null) continue;
+            ins.setLong(1, id);
+            ins.setLong(2, i * HASH_INTERVAL_MS);
+            ins.setLong(3, hash);
+            ins.addBatch();
+        }
+        ins.executeBatch();
+    }
+
+    private static void putKeyframes(SqlitePool.Handle h, long id, KeyframeIndex kf) throws SQLException {
+        PreparedStatement ps = h.prepare("INSERT OR REPLACE INTO keyframes(video_id, count, data, time_base) VALUES(?,?,?,?)");
+        ps.setLong(1, id);
+        ps.setInt(2, kf.size());
+        ps.setBytes(3, kf.encode());
+        ps.setString(4, kf.timeBase());
+        ps.executeUpdate();
+    }
+
+    /**
+     * A readable file for the asset, valid until the lease is closed. Assets with a file on disk
+     * get that file; assets stored in the database get a shared, cached copy.
+     */
+    public MediaLease openMedia(long id) {
+        try {
+            Path p = onDisk(id);
+            if (p != null) return MediaLease.unpinned(id, p);
+
+            // Only pull the BLOB once we know there is no file to point at.
+            MediaLease lease = materialized.acquire(id);
+            if (lease == null) {
+                throw new IllegalStateException("Asset " + id + " has no file path and no data blob — it may be corrupt.");
+            }
+            return lease;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Batch form of {@link #openMedia(long)}; on-disk paths are resolved with one query. */
+    public Map<Long, MediaLease> openMedia(Collection<Long> ids) {
+        Map<Long, MediaLease> out = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Long, Path> e : resolvePaths(ids, false).entrySet()) {
+                out.put(e.getKey(), MediaLease.unpinned(e.getKey(), e.getValue()));
+            }
+            for (Long id : ids) {
+                if (!out.containsKey(id)) out.put(id, openMedia(id));
+            }
+        } catch (RuntimeException e) {
+            out.values().forEach(MediaLease::close);
+            throw e;
+        }
         return out;
     }
 
-    public VideoAsset findById(long id) {
-        try (Connection c = DriverManager.getConnection(url);
-             PreparedStatement ps = c.prepareStatement("SELECT id,title,duration_ms,width,height,created_at FROM videos WHERE id=?")) {
-            ps.setLong(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return new VideoAsset(
-                        rs.getLong(1),
-                        rs.getString(2),
-                        rs.getLong(3),
-                        rs.getInt(4),
-                        rs.getInt(5),
-                        Instant.parse(rs.getString(6))
-                );
+    /**
+     * Path-only form of {@link #openMedia(long)}. A database-backed asset's copy is not pinned
+     * and may be evicted later, so long-lived users should hold a lease instead.
+     */
+    public File materializeToTemp(long id) {
+        try (MediaLease lease = openMedia(id)) {
+            return lease.file();
+        }
+    }
+
+    /**
+     * Where a player (VLC, ffmpeg) should read the asset from: its file when it has one on disk,
+     * otherwise a loopback URL with Range support. Nothing is pinned on the caller's behalf, so
+     * this suits readers that keep media open indefinitely, like the preview. Falls back to
+     * {@link #materializeToTemp} if the media server was never started.
+     */
+    public String mediaUri(long id) {
+        try {
+            Path p = onDisk(id);
+            if (p != null) return p.toString();
+            MediaServer server = mediaServer;
+            if (server == null) return materializeToTemp(id).getAbsolutePath();
+            if (!legacy.has(id)) {
+                throw new IllegalStateException("Asset " + id + " has no file path and no data blob — it may be corrupt.");
             }
-            return null;
-        } catch (SQLException e) { throw new RuntimeException(e); }
+            return server.url(id);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     // Prefer ORIGINAL path (Option A). Only use edit_path as a fallback if it actually exists.
     // Also: if edit_path is set but missing, clear it so you don't keep hitting the same failure.
-    public File materializeToTemp(long id) {
-        try (Connection c = DriverManager.getConnection(url);
-             PreparedStatement ps = c.prepareStatement("SELECT path, edit_path, data, title FROM videos WHERE id=?")) {
+    private Path onDisk(long id) throws SQLException {
+        // Cached resolution is only trusted while the file is still there.
+        Path known = cache.path(id);
+        if (known != null) {
+            if (Files.exists(known)) return known;
+            cache.invalidatePath(id);
+        }
+
+        long epoch = cache.epoch();
+        Row row = db.read(h -> {
+            PreparedStatement ps = h.prepare("SELECT path, edit_path, title FROM videos WHERE id=?");
             ps.setLong(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (!rs.next()) throw new IllegalArgumentException("Asset not found: " + id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new IllegalArgumentException("Asset not found: " + id);
+                return new Row(rs.getString(1), rs.getString(2), rs.getString(3));
+            }
+        });
 
-            String path = rs.getString(1);
-            String editPath = rs.getString(2);
+        if (row.path() != null && !row.path().isBlank()) {
+            Path p = Path.of(row.path());
+            if (Files.exists(p)) {
+                cache.putPath(id, p, epoch);
+                return p;
+            }
+        }
 
-            if (path != null && !path.isBlank()) {
-                Path p = Path.of(path);
-                if (Files.exists(p)) return p.toFile();
+        if (row.editPath() != null && !row.editPath().isBlank()) {
+            Path ep = Path.of(row.editPath());
+            if (Files.exists(ep)) {
+                cache.putPath(id, ep, epoch);
+                return ep;
             }
 
-            if (editPath != null && !editPath.isBlank()) {
-                Path ep = Path.of(editPath);
-                if (Files.exists(ep)) return ep.toFile();
+            // stale edit_path -> clear it
+            db.write(h -> {
+                PreparedStatement upd = h.prepare("UPDATE videos SET edit_path=NULL WHERE id=?");
+                upd.setLong(1, id);
+                return upd.executeUpdate();
+            });
+        }
+        return null;
+    }
+
+    private record Row(String path, String editPath, String title) {}
 
-                // stale edit_path -> clear it
-                try (PreparedStatement upd = c.prepareStatement("UPDATE videos SET edit_path=NULL WHERE id=?")) {
-                    upd.setLong(1, id);
-                    upd.executeUpdate();
+    /**
+     * Library assets that show the same footage, found by comparing the perceptual hashes of
+     * their sampled frames (see {@link DuplicateFinder}). Byte-identical imports never get this far;
+     * this catches re-encodes, rescales and trimmed copies. Reads every stored hash, so call it
+     * off the UI thread. Clusters come largest saving first.
+     */
+    public List<DuplicateCluster> duplicateClusters() {
+        try {
+            long t0 = System.nanoTime();
+            Map<Long, long[]> hashes = db.read(h -> {
+                Map<Long, List<Long>> rows = new LinkedHashMap<>();
+                try (ResultSet rs = h.prepare(
+                        "SELECT f.video_id, f.hash FROM frame_hashes f JOIN videos v ON v.id = f.video_id " +
+                                "WHERE v.is_temp = 0 AND v.is_hidden = 0 AND v.is_missing = 0 " +
+                                // Time order within each asset: the finder aligns the sequences.
+                                "ORDER BY f.video_id, f.ms").executeQuery()) {
+                    while (rs.next()) rows.computeIfAbsent(rs.getLong(1), k -> new ArrayList<>()).add(rs.getLong(2));
                 }
-            }
+                Map<Long, long[]> out = new LinkedHashMap<>();
+                rows.forEach((id, list) -> out.put(id, list.stream().mapToLong(Long::longValue).toArray()));
+                return out;
+            });
+            List<List<Long>> groups = DuplicateFinder.clusters(hashes);
+            if (groups.isEmpty()) return List.of();
 
-            byte[] bytes = rs.getBytes(3);
-            if (bytes == null || bytes.length == 0) {
-                throw new IllegalStateException("Asset " + id + " has no file path and no data blob — it may be corrupt.");
+            record Copy(long id, long pixels, long bitRate, long size, boolean owned) {}
+            List<Long> all = groups.stream().flatMap(List::stream).toList();
+            Map<Long, Copy> copies = db.read(h -> {
+                Map<Long, Copy> out = new HashMap<>();
+                PreparedStatement ps = h.prepare(
+                        "SELECT id, width, height, bit_rate, size_bytes, storage FROM videos WHERE id IN (SELECT value FROM json_each(?))");
+                ps.setString(1, jsonArray(all));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        out.put(rs.getLong(1), new Copy(rs.getLong(1), rs.getLong(2) * rs.getLong(3), rs.getLong(4),
+                                rs.getLong(5), ImportStrategy.fromColumn(rs.getString(6)).ownsFile()));
+                    }
+                }
+                return out;
+            });
+
+            Comparator<Copy> better = Comparator.comparingLong(Copy::pixels)
+                    .thenComparingLong(Copy::bitRate)
+                    .thenComparingLong(Copy::size)
+                    .thenComparing(Comparator.comparingLong(Copy::id).reversed());
+            List<DuplicateCluster> out = new ArrayList<>();
+            for (List<Long> group : groups) {
+                List<Copy> members = group.stream().map(copies::get).filter(Objects::nonNull).collect(Collectors.toList());
+                if (members.size() < 2) continue;
+                Copy keep = members.stream().max(better).get();
+                List<Long> ids = new ArrayList<>();
+                ids.add(keep.id());
+                long reclaimable = 0;
+                for (Copy c : members) {
+                    if (c == keep) continue;
+                    ids.add(c.id());
+                    if (c.owned()) reclaimable += c.size();
+                }
+                out.add(new DuplicateCluster(List.copyOf(ids), keep.id(), reclaimable));
             }
-            String title = rs.getString(4);
-            File f = TempFiles.tmp("asset-" + id + "-" + (title == null ? "clip" : title), ".mp4").toFile();
-            try (FileOutputStream fos = new FileOutputStream(f)) { fos.write(bytes); }
-            return f;
+            out.sort(Comparator.comparingLong(DuplicateCluster::reclaimableBytes).reversed());
+            LOG.info("Found {} duplicate cluster(s) among {} asset(s) in {} ms",
+                    out.size(), hashes.size(), (System.nanoTime() - t0) / 1_000_000);
+            return out;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-        } catch (Exception e) {
+    /** File of the asset's preview proxy, or null if it has none (yet) or the file is gone. */
+    public Path proxy(long id) {
+        try {
+            String path = db.read(h -> {
+                PreparedStatement ps = h.prepare(
+                        "SELECT path FROM videos WHERE parent_id = ? AND is_hidden = 1 ORDER BY id DESC LIMIT 1");
+                ps.setLong(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            });
+            return existing(path);
+        } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void deleteByIds(List<Long> ids) {
-        if (ids == null || ids.isEmpty()) return;
+    private List<Long> proxiesOf(Collection<Long> ids) throws SQLException {
+        return db.read(h -> {
+            PreparedStatement ps = h.prepare(
+                    "SELECT id FROM videos WHERE is_hidden = 1 AND parent_id IN (SELECT value FROM json_each(?))");
+            ps.setString(1, jsonArray(ids));
+            List<Long> out = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(rs.getLong(1));
+            }
+            return out;
+        });
+    }
 
-        String placeholders = ids.stream().map(x -> "?").collect(Collectors.joining(","));
-        try (Connection c = DriverManager.getConnection(url)) {
-            List<Path> toDelete = new ArrayList<>();
+    /**
+     * Transcodes a preview proxy of one asset (see {@link FfmpegService#proxy}) and records it as
+     * a hidden row whose parent_id is the asset. Only the preview reads it; export and every
+     * other path keep using the original. Blocks for the transcode, so call it off the UI thread.
+     * False if the asset doesn't need one, already has one or is being given one by another
+     * thread, its file is gone, or ffmpeg fails. An asset never gets more than one proxy row.
+     */
+    public boolean buildProxy(long id) {
+        if (!proxying.add(id)) return false;
+        try {
+            return transcodeProxy(id);
+        } finally {
+            proxying.remove(id);
+        }
+    }
 
-            try (PreparedStatement sel = c.prepareStatement("SELECT path, edit_path FROM videos WHERE id IN (" + placeholders + ")")) {
-                for (int i = 0; i < ids.size(); i++) sel.setLong(i + 1, ids.get(i));
-                ResultSet rs = sel.executeQuery();
-                while (rs.next()) {
-                    String p1 = rs.getString(1);
-                    String p2 = rs.getString(2);
-                    if (p1 != null && !p1.isBlank()) toDelete.add(Path.of(p1));
-                    if (p2 != null && !p2.isBlank()) toDelete.add(Path.of(p2));
+    private boolean transcodeProxy(long id) {
+        Path file = resolvePaths(List.of(id), false).get(id);
+        MediaInfo info = mediaInfo(id);
+        if (file == null || info == null || !info.hasVideo()) return false;
+        if (info.height() <= PROXY_HEIGHT && "h264".equals(info.videoCodec())) return false;
+        if (proxy(id) != null) return false;
+
+        Path out = vaultDir.resolve("proxies").resolve(id + "-" + System.currentTimeMillis() + ".mp4");
+        Path part = out.resolveSibling(out.getFileName() + ".part");
+        try {
+            Files.createDirectories(out.getParent());
+            long t0 = System.nanoTime();
+            ff.proxy(file, PROXY_HEIGHT, part);
+            Files.move(part, out, StandardCopyOption.ATOMIC_MOVE);
+            MediaInfo proxyInfo = ff.probeInfo(out);
+            long size = Files.size(out);
+
+            boolean recorded = db.write(h -> {
+                PreparedStatement title = h.prepare(
+                        "SELECT title, EXISTS(SELECT 1 FROM videos p WHERE p.parent_id = v.id AND p.is_hidden = 1) " +
+                                "FROM videos v WHERE v.id = ?");
+                title.setLong(1, id);
+                String name;
+                try (ResultSet rs = title.executeQuery()) {
+                    // Deleted while we were transcoding.
+                    if (!rs.next()) return false;
+                    // Another writer recorded one first; keep theirs.
+                    if (rs.getBoolean(2)) return false;
+                    name = rs.getString(1);
                 }
+                // analyzed = 1: proxies never go through the analysis pass.
+                PreparedStatement ps = h.prepare(
+                        "INSERT INTO videos(title,created_at,path,edit_path,is_temp,is_hidden,parent_id,storage,size_bytes,analyzed," + INFO_COLUMNS + ") " +
+                                "VALUES(?,?,?,NULL,0,1,?,?,?,1,?,?,?,?,?,?,?,?,?,?,?,?,?,?)");
+                ps.setString(1, name + " (proxy)");
+                ps.setString(2, Instant.now().toString());
+                ps.setString(3, out.toAbsolutePath().toString());
+                ps.setLong(4, id);
+                ps.setString(5, ImportStrategy.COPY.name());
+                ps.setLong(6, size);
+                bindInfo(ps, 7, proxyInfo, probeKey(out));
+                ps.executeUpdate();
+                return true;
+            });
+            if (!recorded) {
+                Files.deleteIfExists(out);
+                return false;
             }
+            LOG.info("Built {}p preview proxy for asset {} in {} ms",
+                    proxyInfo.height(), id, (System.nanoTime() - t0) / 1_000_000);
+            return true;
+        } catch (IOException | SQLException e) {
+            LOG.warn("Could not build preview proxy for asset {}", id, e);
+            try { Files.deleteIfExists(part); } catch (IOException ignored) {}
+            return false;
+        }
+    }
 
-            try (PreparedStatement del = c.prepareStatement("DELETE FROM videos WHERE id IN (" + placeholders + ")")) {
-                for (int i = 0; i < ids.size(); i++) del.setLong(i + 1, ids.get(i));
-                del.executeUpdate();
+    /**
+     * Runs {@link #buildProxy} for library assets taller than {@value #PROXY_HEIGHT} lines or not
+     * H.264 that have no proxy yet, newest first. One transcode per asset; run it in the
+     * background. Stops between assets if interrupted.
+     */
+    public int buildMissingProxies(Consumer<Double> onProgress) {
+        Consumer<Double> progress = onProgress != null ? onProgress : p -> {};
+        try {
+            List<Long> ids = db.read(h -> {
+                PreparedStatement ps = h.prepare(
+                        "SELECT v.id FROM videos v WHERE v.is_temp = 0 AND v.is_hidden = 0 AND v.is_missing = 0 " +
+                                "AND v.video_codec IS NOT NULL AND (v.height > ? OR v.video_codec <> 'h264') " +
+                                "AND NOT EXISTS (SELECT 1 FROM videos p WHERE p.parent_id = v.id AND p.is_hidden = 1) " +
+                                "ORDER BY v.id DESC");
+                ps.setInt(1, PROXY_HEIGHT);
+                List<Long> found = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) found.add(rs.getLong(1));
+                }
+                return found;
+            });
+
+            int done = 0;
+            int built = 0;
+            for (long id : ids) {
+                if (Thread.currentThread().isInterrupted()) break;
+                if (buildProxy(id)) built++;
+                progress.accept(++done / (double) ids.size());
             }
+            if (built > 0) LOG.info("Built preview proxies for {} asset(s)", built);
+            return built;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            for (Path p : toDelete) {
-                try {
-                    Path abs = p.toAbsolutePath().normalize();
-                    if (abs.startsWith(vaultDir)) Files.deleteIfExists(abs);
-                    else System.err.println("Skip delete (outside vault): " + abs);
-                } catch (IOException ex) {
-                    System.err.println("Failed to delete file: " + p + " | " + ex.getMessage());
+    /** Stored audio peaks of one asset, or null if none are built yet or the file changed since. Never decodes. */
+    public WaveformPeaks waveform(long id) {
+        Path file = resolvePaths(List.of(id), false).get(id);
+        return file == null ? null : waveforms.get(id, file);
+    }
+
+    /**
+     * Stored audio peaks of one asset, decoding its audio once to build them if needed. Blocks for
+     * the length of that decode, so call it off the UI thread. Null for assets without audio.
+     */
+    public WaveformPeaks buildWaveform(long id) {
+        Path file = resolvePaths(List.of(id), false).get(id);
+        if (file == null) return null;
+        WaveformPeaks stored = waveforms.get(id, file);
+        if (stored != null) return stored;
+        MediaInfo info = mediaInfo(id);
+        if (info == null || !info.hasAudio()) return null;
+        try {
+            return waveforms.build(id, file);
+        } catch (IOException e) {
+            LOG.warn("Could not build waveform for asset {}", id, e);
+            return null;
+        }
+    }
+
+    /** Stored filmstrip of one asset at {@code intervalMs}, or null if not built yet or out of date. Never decodes. */
+    public Filmstrip filmstrip(long id, long intervalMs) {
+        Path file = resolvePaths(List.of(id), false).get(id);
+        return file == null ? null : filmstrips.get(id, file, intervalMs);
+    }
+
+    /**
+     * Stored filmstrip of one asset at {@code intervalMs}, cutting it first if needed (one ffmpeg
+     * pass; call it off the UI thread). When the asset's keyframes are at least twice as dense as
+     * the interval only keyframes are decoded. Null for assets without video.
+     */
+    public Filmstrip buildFilmstrip(long id, long intervalMs) {
+        Path file = resolvePaths(List.of(id), false).get(id);
+        if (file == null) return null;
+        Filmstrip stored = filmstrips.get(id, file, intervalMs);
+        if (stored != null) return stored;
+        MediaInfo info = mediaInfo(id);
+        if (info == null || !info.hasVideo()) return null;
+        KeyframeIndex kf = keyframes(id);
+        boolean keyframesOnly = kf != null && kf.size() > 1 && info.durationMs() / kf.size() <= intervalMs / 2;
+        try {
+            return filmstrips.build(id, file, intervalMs, info.durationMs(), keyframesOnly);
+        } catch (IOException e) {
+            LOG.warn("Could not build filmstrip for asset {}", id, e);
+            return null;
+        }
+    }
+
+    /**
+     * Poster JPEG of one asset, fitted into {@code width}x{@code height}: read from disk, or cut
+     * with one keyframe decode the first time. Blocks, so call it off the UI thread. Null for
+     * assets without video or whose file is gone.
+     */
+    public Path thumbnail(long id, int width, int height) {
+        Path file = resolvePaths(List.of(id), false).get(id);
+        if (file == null) return null;
+        MediaInfo info = mediaInfo(id);
+        if (info != null && info.isKnown() && !info.hasVideo()) return null;
+        try {
+            return thumbnails.get(id, file, info == null ? 0 : info.durationMs(), width, height);
+        } catch (IOException e) {
+            LOG.warn("Could not make thumbnail for asset {}", id, e);
+            return null;
+        }
+    }
+
+    /** Records that {@code file} was just opened or saved with these clips, for {@link #recentProjects}. */
+    public void rememberProject(Path file, List<TimelineClip> clips) {
+        String title = file.getFileName().toString().replace(".framecut", "");
+        long duration = 0;
+        for (TimelineClip c : clips) duration += Math.max(0, c.endMs() - c.startMs());
+        long total = duration;
+        try {
+            db.write(h -> {
+                PreparedStatement ps = h.prepare(
+                        "INSERT INTO recent_projects(path, title, opened_at, clip_count, duration_ms, poster_id) VALUES(?,?,?,?,?,?) " +
+                                "ON CONFLICT(path) DO UPDATE SET (title, opened_at, clip_count, duration_ms, poster_id) = " +
+                                "(excluded.title, excluded.opened_at, excluded.clip_count, excluded.duration_ms, excluded.poster_id)");
+                ps.setString(1, file.toAbsolutePath().normalize().toString());
+                ps.setString(2, title);
+                ps.setString(3, Instant.now().toString());
+                ps.setInt(4, clips.size());
+                ps.setLong(5, total);
+                if (clips.isEmpty()) ps.setNull(6, Types.INTEGER);
+                else ps.setLong(6, clips.get(0).assetId());
+                ps.executeUpdate();
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Recently opened or saved projects whose file still exists, newest first. */
+    public List<RecentProject> recentProjects(int limit) {
+        try {
+            List<RecentProject> rows = db.read(h -> {
+                List<RecentProject> out = new ArrayList<>();
+                PreparedStatement ps = h.prepare(
+                        "SELECT path, title, opened_at, clip_count, duration_ms, poster_id FROM recent_projects ORDER BY opened_at DESC LIMIT ?");
+                ps.setInt(1, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        out.add(new RecentProject(Path.of(rs.getString(1)), rs.getString(2), Instant.parse(rs.getString(3)),
+                                rs.getInt(4), rs.getLong(5), rs.getLong(6)));
+                    }
+                }
+                return out;
+            });
+            rows.removeIf(r -> !Files.isRegularFile(r.file()));
+            return rows;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Deletes the rows for {@code ids} in one transaction, {@value #DELETE_CHUNK} ids per statement
+     * so selections of any size stay under SQLite's bound-variable limit. Files are not touched:
+     * the vault files no remaining row uses are returned for {@link #reclaimFiles}, which callers
+     * should run off the UI thread.
+     */
+    public List<Path> deleteByIds(List<Long> requested) {
+        if (requested == null || requested.isEmpty()) return List.of();
+
+        try {
+            // An asset's preview proxies go with it.
+            List<Long> ids = new ArrayList<>(requested);
+            ids.addAll(proxiesOf(requested));
+            List<Path> toDelete = db.write(h -> {
+                Set<Path> out = new LinkedHashSet<>();
+                for (int from = 0; from < ids.size(); from += DELETE_CHUNK) {
+                    String chunk = jsonArray(ids.subList(from, Math.min(ids.size(), from + DELETE_CHUNK)));
+
+                    PreparedStatement sel = h.prepare(
+                            "SELECT path, edit_path, storage FROM videos WHERE id IN (SELECT value FROM json_each(?))");
+                    sel.setString(1, chunk);
+                    try (ResultSet rs = sel.executeQuery()) {
+                        while (rs.next()) {
+                            String p1 = rs.getString(1);
+                            String p2 = rs.getString(2);
+                            // Referenced originals belong to the user, never to the vault.
+                            boolean owned = ImportStrategy.fromColumn(rs.getString(3)).ownsFile();
+                            if (owned && p1 != null && !p1.isBlank()) out.add(Path.of(p1));
+                            if (p2 != null && !p2.isBlank()) out.add(Path.of(p2));
+                        }
+                    }
+
+                    PreparedStatement del = h.prepare("DELETE FROM videos WHERE id IN (SELECT value FROM json_each(?))");
+                    del.setString(1, chunk);
+                    del.executeUpdate();
+                    PreparedStatement cold = h.prepare("DELETE FROM video_blobs WHERE video_id IN (SELECT value FROM json_each(?))");
+                    cold.setString(1, chunk);
+                    cold.executeUpdate();
                 }
+
+                // Deduplicated assets share one vault file; it goes only with its last row.
+                out.removeIf(p -> referenced(h, p));
+                return new ArrayList<>(out);
+            });
+            cache.invalidate(ids);
+            for (Long id : ids) {
+                materialized.invalidate(id);
+                waveforms.delete(id);
+                filmstrips.delete(id);
+                thumbnails.delete(id);
             }
+            return toDelete;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
-    /** One-time migration: move legacy BLOBs into files and set their path. */
-    private void migrateBlobsToVault() {
-        try (Connection c = DriverManager.getConnection(url);
-             PreparedStatement ps = c.prepareStatement(
-                     "SELECT id,title,data FROM videos WHERE is_temp = 0 AND path IS NULL AND data IS NOT NULL"
-             );
-             ResultSet rs = ps.executeQuery()) {
+    /**
+     * Deletes files returned by {@link #deleteByIds} / {@link #deleteAllTempVideos}. Anything
+     * outside the vault, or picked up again since (a re-import of the same content, committed or
+     * still in flight), is left alone; see {@link #reclaim}. Progress is reported as the fraction
+     * of files handled.
+     *
+     * @return bytes freed
+     */
+    public long reclaimFiles(List<Path> files, Consumer<Double> onProgress) {
+        return reclaim(files, null, onProgress);
+    }
 
-            while (rs.next()) {
-                long id = rs.getLong(1);
-                String title = rs.getString(2);
-                byte[] bytes = rs.getBytes(3);
-                if (bytes == null || bytes.length == 0) continue;
+    /**
+     * Reclaims orphaned vault files, flags rows whose media is gone and optionally re-verifies
+     * content hashes. Long-running; call it from a background thread.
+     */
+    public VaultScanner.Report scanVault(VaultScanner.Options options, Consumer<Double> onProgress) {
+        try {
+            VaultScanner.Report report = new VaultScanner(db, vaultDir, this).scan(options, onProgress);
+            cache.clear(); // paths may have gone away underneath cached entries
+            return report;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                String safe = (title == null ? "untitled" : title).replaceAll("[\\\\/:*?\"<>|]", "_");
-                if (!safe.toLowerCase().endsWith(".mp4")) safe += ".mp4";
-                Path dest = vaultDir.resolve(id + "-" + safe);
+    /**
+     * Deletes vault files the scanner found no row for, unless they were modified after
+     * {@code cutoff}; otherwise as {@link #reclaimFiles}.
+     *
+     * @return bytes freed
+     */
+    long reclaimOrphans(List<Path> files, Instant cutoff, Consumer<Double> onProgress) {
+        return reclaim(files, cutoff, onProgress);
+    }
 
-                Files.write(dest, bytes);
+    /**
+     * Each file is checked again under the writer lock, so no row can be committed for it in
+     * between: still unreferenced (path or edit_path) and not claimed by an import in progress.
+     * The claim check and the delete happen under the claim lock, so an import that reuses a
+     * content-addressed file either claims it first or finds it gone and writes its own.
+     */
+    private long reclaim(List<Path> files, Instant cutoff, Consumer<Double> onProgress) {
+        long freed = 0;
+        for (int from = 0; from < files.size(); from += DELETE_CHUNK) {
+            List<Path> chunk = files.subList(from, Math.min(files.size(), from + DELETE_CHUNK));
+            try {
+                freed += db.write(h -> {
+                    long bytes = 0;
+                    for (Path p : chunk) {
+                        Path abs = p.toAbsolutePath().normalize();
+                        if (!abs.startsWith(vaultDir)) {
+                            LOG.warn("Not deleting {}: outside the vault", abs);
+                        } else if (referenced(h, abs)) {
+                            LOG.debug("Not deleting {}: in use again", abs);
+                        } else {
+                            bytes += deleteUnclaimed(abs, cutoff);
+                        }
+                    }
+                    return bytes;
+                });
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            if (onProgress != null) onProgress.accept(Math.min(files.size(), from + DELETE_CHUNK) / (double) files.size());
+        }
+        return freed;
+    }
 
-                try (PreparedStatement upd = c.prepareStatement("UPDATE videos SET path=?, data=NULL WHERE id=?")) {
-                    upd.setString(1, dest.toAbsolutePath().toString());
-                    upd.setLong(2, id);
-                    upd.executeUpdate();
-                }
+    private long deleteUnclaimed(Path abs, Instant cutoff) {
+        synchronized (importing) {
+            if (importing.containsKey(abs)) {
+                LOG.debug("Not deleting {}: an import is placing it", abs);
+                return 0;
             }
-        } catch (Exception e) {
-            System.err.println("Migration warning: " + e.getMessage());
+            try {
+                BasicFileAttributes a = Files.readAttributes(abs, BasicFileAttributes.class);
+                if (cutoff != null && a.lastModifiedTime().toInstant().isAfter(cutoff)) return 0;
+                Files.delete(abs);
+                return a.size();
+            } catch (NoSuchFileException ignored) {
+                return 0; // already gone
+            } catch (IOException e) {
+                LOG.warn("Could not delete {}: {}", abs, e.getMessage());
+                return 0;
+            }
+        }
+    }
+
+    /** True if any media is still stored inside the database rather than in the vault. */
+    public boolean hasLegacyBlobs() {
+        try {
+            return legacy.pending();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * One-time migration: stream legacy BLOBs into vault files and set their path.
+     * Safe to run on a background thread; each asset is committed on its own.
+     */
+    public void migrateBlobsToVault(Consumer<Double> onProgress) {
+        try {
+            legacy.migrate(cache, onProgress);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,143 @@
+package videocutter.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import videocutter.service.FfmpegService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Waveform sidecars under {@code media/.cache/waveforms}, one per asset id, plus the last few
+ * mapped in memory. A sidecar records the size and mtime of the file it was decoded from and is
+ * ignored once those no longer match.
+ */
+final class WaveformStore {
+    private static final Logger LOG = LoggerFactory.getLogger(WaveformStore.class);
+
+    private static final int OPEN_LIMIT = 32;
+
+    private final Path dir;
+    private final FfmpegService ff;
+
+    private final Map<Long, WaveformPeaks> open = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, WaveformPeaks> eldest) {
+            return size() > OPEN_LIMIT;
+        }
+    };
+
+    WaveformStore(Path dir, FfmpegService ff) {
+        this.dir = dir;
+        this.ff = ff;
+    }
+
+    /** The stored peaks for {@code source}, or null if there are none or they are out of date. */
+    WaveformPeaks get(long id, Path source) {
+        BasicFileAttributes a = attrs(source);
+        if (a == null) return null;
+        synchronized (this) {
+            WaveformPeaks p = open.get(id);
+            if (p != null && p.matches(a.size(), a.lastModifiedTime().toMillis())) return p;
+        }
+        try {
+            WaveformPeaks p = WaveformPeaks.open(file(id));
+            if (p == null || !p.matches(a.size(), a.lastModifiedTime().toMillis())) return null;
+            synchronized (this) { open.put(id, p); }
+            return p;
+        } catch (IOException e) {
+            LOG.debug("Could not read waveform for {}: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Decodes {@code source}'s first audio stream and writes its sidecar. One full decode. */
+    WaveformPeaks build(long id, Path source) throws IOException {
+        BasicFileAttributes a = attrs(source);
+        if (a == null) return null;
+        long t0 = System.nanoTime();
+        Path part = pending(id);
+        try {
+            Process p = ff.startPcmDecode(source, WaveformPeaks.SAMPLE_RATE);
+            try (InputStream pcm = p.getInputStream()) {
+                WaveformPeaks.build(pcm, part, a.size(), a.lastModifiedTime().toMillis());
+            }
+            try {
+                if (p.waitFor() != 0) {
+                    LOG.warn("Audio decode failed for asset {}", id);
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                p.destroyForcibly();
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            publish(id, part);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+        LOG.info("Built waveform for asset {} in {} ms", id, (System.nanoTime() - t0) / 1_000_000);
+        return get(id, source);
+    }
+
+    /**
+     * Writes the sidecar of {@code source} from PCM decoded elsewhere (mono s16le at
+     * {@link WaveformPeaks#SAMPLE_RATE}), reading {@code pcm} to its end.
+     */
+    void write(long id, Path source, InputStream pcm) throws IOException {
+        BasicFileAttributes a = attrs(source);
+        if (a == null) {
+            pcm.transferTo(OutputStream.nullOutputStream());
+            return;
+        }
+        Path part = pending(id);
+        try {
+            WaveformPeaks.build(pcm, part, a.size(), a.lastModifiedTime().toMillis());
+            publish(id, part);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    /**
+     * A fresh temp file for one writer's sidecar. The analysis pass and the lazy builder can
+     * decode the same asset at once; each publishes its own complete file, last one wins.
+     */
+    private Path pending(long id) throws IOException {
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, id + "-", ".peaks.part");
+    }
+
+    private void publish(long id, Path part) throws IOException {
+        Files.move(part, file(id), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (this) { open.remove(id); }
+    }
+
+    void delete(long id) {
+        synchronized (this) { open.remove(id); }
+        try {
+            Files.deleteIfExists(file(id));
+        } catch (IOException e) {
+            LOG.debug("Could not delete waveform for {}: {}", id, e.getMessage());
+        }
+    }
+
+    private Path file(long id) {
+        return dir.resolve(id + ".peaks");
+    }
+
+    private static BasicFileAttributes attrs(Path source) {
+        try {
+            return Files.readAttributes(source, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
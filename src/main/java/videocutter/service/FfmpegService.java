@@ -7,21 +7,46 @@ import videocutter.model.VideoAsset;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 public class FfmpegService {
     private static final Logger LOG = LoggerFactory.getLogger(FfmpegService.class);
 
-    public record Segment(Path input, long startMs, long endMs) {
+    private static final Pattern SHOWINFO_TIME_BASE = Pattern.compile("time_base:\\s*(\\d+)/(\\d+)");
+    private static final Pattern SHOWINFO_PTS = Pattern.compile("\\bpts:\\s*(-?\\d+)");
+
+    /** Frames per GOP in preview proxies; half a second or less at common rates. */
+    public static final int PROXY_GOP = 12;
+
+    /**
+     * @param info stored probe result for {@code input}, or null to probe at export time
+     * @param keyframes keyframe index for {@code input}, or null to fall back to a fixed pre-seek window
+     */
+    public record Segment(Path input, long startMs, long endMs, MediaInfo info, KeyframeIndex keyframes) {
+        public Segment(Path input, long startMs, long endMs) {
+            this(input, startMs, endMs, null, null);
+        }
+
+        /** Where to put {@code -ss} before {@code -i}: the keyframe preceding the in-point, if known. */
+        double preSeekSec() {
+            if (keyframes != null && keyframes.size() > 0) return keyframes.floor(startMs) / 1000.0;
+            return Math.max(0.0, startMs / 1000.0 - 4.0);
+        }
     }
 
     private String ffmpeg() {
@@ -35,74 +60,421 @@ public class FfmpegService {
     // Cache encoder availability so we don't spawn "ffmpeg -encoders" repeatedly.
     private Boolean nvencAvailable;
 
+    /** Duration and frame size only; see {@link #probeInfo} for the rest. */
     public Meta probe(Path file) {
+        return probeInfo(file).meta();
+    }
+
+    /**
+     * Everything about {@code file} the app uses, from a single {@code ffprobe -of json} run.
+     * Returns {@link MediaInfo#UNKNOWN} if ffprobe fails. Callers that keep the result
+     * (the repository stores it per asset) should not need to probe the same file again.
+     */
+    public MediaInfo probeInfo(Path file) {
+        try {
+            String out = ffprobeJson(file,
+                    "-show_entries", "format=duration,bit_rate:stream=codec_type,codec_name,width,height," +
+                            "r_frame_rate,pix_fmt,sample_rate,channels,channel_layout");
+            return out == null ? MediaInfo.UNKNOWN : parseProbe(out);
+        } catch (Exception e) {
+            LOG.error("ffprobe failed", e);
+            return MediaInfo.UNKNOWN;
+        }
+    }
+
+    /**
+     * Runs {@code ffprobe -v error <args> -of json file} and returns its stdout, or null if it
+     * exits non-zero. Stderr is drained on its own thread and only logged: ffprobe reports
+     * damage it worked around (a corrupt packet, a missing index) there while still exiting 0,
+     * and none of that may end up in the JSON.
+     */
+    private String ffprobeJson(Path file, String... args) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>(List.of(ffprobe(), "-v", "error"));
+        cmd.addAll(List.of(args));
+        cmd.addAll(List.of("-of", "json", file.toString()));
+        Process p = new ProcessBuilder(cmd).start();
+
+        StringBuilder errors = new StringBuilder();
+        Thread drain = new Thread(() -> {
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    if (errors.length() < 2000) errors.append(line).append('\n');
+                }
+            } catch (IOException ignored) {}
+        }, "ffprobe-stderr-drain");
+        drain.setDaemon(true);
+        drain.start();
+
+        String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        int exit = p.waitFor();
+        drain.join(5_000);
+        if (exit != 0) {
+            LOG.warn("ffprobe failed for: {}\n{}", file, errors.toString().trim());
+            return null;
+        }
+        if (!errors.isEmpty()) LOG.info("ffprobe reported problems in {}: {}", file, errors.toString().trim());
+        return out;
+    }
+
+    static MediaInfo parseProbe(String json) {
+        Map<String, Object> root = Json.object(Json.parse(json));
+        Map<String, Object> format = Json.object(root.get("format"));
+        List<Object> streams = Json.array(root.get("streams"));
+
+        Map<String, Object> video = null;
+        Map<String, Object> audio = null;
+        for (Object o : streams) {
+            Map<String, Object> st = Json.object(o);
+            String type = Json.string(st.get("codec_type"));
+            if (video == null && "video".equals(type)) video = st;
+            if (audio == null && "audio".equals(type)) audio = st;
+        }
+
+        long durationMs = Math.max(1, (long) (Json.number(format.get("duration"), 0.001) * 1000));
+        Map<String, Object> v = video != null ? video : Map.of();
+        Map<String, Object> a = audio != null ? audio : Map.of();
+        return new MediaInfo(
+                durationMs,
+                (int) Json.number(v.get("width"), 0),
+                (int) Json.number(v.get("height"), 0),
+                rate(Json.string(v.get("r_frame_rate"))),
+                video != null ? Objects.requireNonNullElse(Json.string(v.get("codec_name")), "unknown") : null,
+                Json.string(v.get("pix_fmt")),
+                audio != null ? Objects.requireNonNullElse(Json.string(a.get("codec_name")), "unknown") : null,
+                (int) Json.number(a.get("sample_rate"), 0),
+                (int) Json.number(a.get("channels"), 0),
+                Json.string(a.get("channel_layout")),
+                (long) Json.number(format.get("bit_rate"), 0),
+                streams.size());
+    }
+
+    /** A detected scene change: where the new shot starts and how different it is (0–1). */
+    public record SceneCut(long ms, double score) {}
+
+    /**
+     * Writes one JPEG poster frame near {@code atMs}, scaled to fit {@code width}x{@code height}
+     * keeping its aspect. Seeks before opening the input, so it decodes from the nearest
+     * keyframe only. Returns false if ffmpeg fails or writes nothing.
+     */
+    public boolean thumbnail(Path file, long atMs, int width, int height, Path out) {
         try {
             Process p = new ProcessBuilder(
-                    ffprobe(),
-                    "-v", "error",
-                    "-show_entries", "format=duration:stream=width,height",
-                    "-of", "default=noprint_wrappers=1:nokey=0",
-                    file.toString()
+                    ffmpeg(),
+                    "-hide_banner", "-nostats", "-loglevel", "error",
+                    "-ss", msToTs(atMs),
+                    "-i", file.toString(),
+                    "-map", "0:v:0", "-an", "-sn", "-dn",
+                    "-frames:v", "1",
+                    "-vf", String.format("scale=%d:%d:force_original_aspect_ratio=decrease", width, height),
+                    "-q:v", "4",
+                    "-f", "image2", "-y",
+                    out.toString()
             ).redirectErrorStream(true).start();
+            String log = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (p.waitFor() != 0 || !Files.isRegularFile(out) || Files.size(out) == 0) {
+                LOG.debug("Thumbnail failed for {}: {}", file, log.trim());
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            LOG.warn("Thumbnail failed for {}", file, e);
+            return false;
+        }
+    }
 
+    /**
+     * Writes a filmstrip of the first video stream as JPEG sprite sheets in one pass: one frame
+     * every {@code intervalMs}, scaled and letterboxed to {@code tileW}x{@code tileH}, laid out
+     * {@code cols}x{@code rows} per sheet as {@code sheet-0001.jpg}, {@code sheet-0002.jpg}, … in
+     * {@code dir}. With {@code keyframesOnly} the decoder skips everything but keyframes, which
+     * is far cheaper and good enough when keyframes are denser than the interval.
+     *
+     * @return the number of sheets written, or -1 if ffmpeg fails
+     */
+    public int filmstrip(Path file, long intervalMs, int tileW, int tileH, int cols, int rows,
+                         boolean keyframesOnly, Path dir) {
+        try {
+            List<String> cmd = new ArrayList<>(List.of(ffmpeg(), "-hide_banner", "-nostats", "-loglevel", "error"));
+            if (keyframesOnly) cmd.addAll(List.of("-skip_frame", "nokey"));
+            cmd.addAll(List.of(
+                    "-i", file.toString(),
+                    "-map", "0:v:0", "-an", "-sn", "-dn",
+                    "-vf", String.format(java.util.Locale.US,
+                            "fps=1000/%d,scale=%d:%d:force_original_aspect_ratio=decrease:flags=fast_bilinear," +
+                                    "pad=%d:%d:(ow-iw)/2:(oh-ih)/2,tile=%dx%d",
+                            intervalMs, tileW, tileH, tileW, tileH, cols, rows),
+                    "-q:v", "5",
+                    "-f", "image2", "-y",
+                    dir.resolve("sheet-%04d.jpg").toString()));
+            Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
             String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
             if (p.waitFor() != 0) {
-                LOG.warn("ffprobe failed for: {}\n{}", file, out);
-                return new Meta(1, 0, 0);
+                LOG.warn("Filmstrip failed for {}: {}", file, out.trim());
+                return -1;
             }
+            int sheets = 0;
+            while (Files.exists(dir.resolve(String.format("sheet-%04d.jpg", sheets + 1)))) sheets++;
+            return sheets;
+        } catch (Exception e) {
+            LOG.warn("Filmstrip failed for {}", file, e);
+            return -1;
+        }
+    }
+
+    /** A poster frame to write during {@link #analyze}: fitted into width x height, as JPEG. */
+    public record Poster(int width, int height, Path out) {}
 
-            long durationMs = 1;
-            int width = 0;
-            int height = 0;
+    /**
+     * What one {@link #analyze} pass produces. Parts that don't apply are skipped: scene cuts with
+     * a threshold of 0, the filmstrip without a directory, posters with an empty list, frame
+     * samples without a file, and every video part when the file has no video; PCM needs a rate
+     * and an audio stream.
+     *
+     * @param sampleOut raw frames of {@code sampleSize}x{@code sampleSize} 8-bit luma, one every
+     *                  {@code sampleIntervalMs} from the start, written back to back
+     */
+    public record AnalysisPlan(boolean keyframes, double sceneThreshold,
+                               long stripIntervalMs, int tileW, int tileH, int cols, int rows, Path stripDir,
+                               long posterAtMs, List<Poster> posters,
+                               long sampleIntervalMs, int sampleSize, Path sampleOut,
+                               int pcmRate) {}
+
+    /** Consumes the PCM stream of an analysis pass (see {@link #startPcmDecode} for the format). */
+    public interface PcmSink {
+        void accept(InputStream pcm) throws IOException;
+    }
 
-            Matcher d = Pattern.compile("duration=([0-9]+\\.?[0-9]*)").matcher(out);
-            if (d.find()) {
-                durationMs = (long) (Double.parseDouble(d.group(1)) * 1000);
+    /**
+     * What an {@link #analyze} pass found. Null parts were not asked for; image outputs are
+     * files in the plan's locations.
+     *
+     * @param sheets filmstrip sheets written
+     */
+    public record Analysis(KeyframeIndex keyframes, List<SceneCut> sceneCuts, int sheets) {}
+
+    /**
+     * Every decode-based index of one file from a single ffmpeg run: the first video stream is
+     * decoded once and split between keyframe logging, scene scoring, the filmstrip, the posters
+     * and the frame samples; the first audio stream is resampled once and streamed to {@code pcm} on the
+     * calling thread while ffmpeg's log (keyframes, scene scores) is parsed on another.
+     * Returns null if ffmpeg fails; partial outputs are then left for the caller to discard.
+     */
+    public Analysis analyze(Path file, MediaInfo info, AnalysisPlan plan, PcmSink pcm) {
+        boolean video = info.hasVideo();
+        boolean audio = info.hasAudio() && plan.pcmRate() > 0 && pcm != null;
+
+        List<String> branches = new ArrayList<>();
+        List<String> graph = new ArrayList<>();
+        List<String> outputs = new ArrayList<>();
+        List<String> nullMaps = new ArrayList<>();
+        if (video) {
+            if (plan.keyframes()) branches.add("k");
+            if (plan.sceneThreshold() > 0) branches.add("s");
+            if (plan.stripDir() != null) branches.add("f");
+            if (!plan.posters().isEmpty()) branches.add("p");
+            if (plan.sampleOut() != null) branches.add("h");
+        }
+        if (!branches.isEmpty()) {
+            StringBuilder split = new StringBuilder("[0:v:0]split=" + branches.size());
+            for (String b : branches) split.append("[v").append(b).append(']');
+            graph.add(split.toString());
+        }
+        if (branches.contains("k")) {
+            graph.add("[vk]select='eq(key,1)',showinfo[ko]");
+            nullMaps.add("[ko]");
+        }
+        if (branches.contains("s")) {
+            graph.add(String.format(java.util.Locale.US,
+                    "[vs]scale=160:-2:flags=fast_bilinear,select='gt(scene,%.3f)',metadata=print[so]", plan.sceneThreshold()));
+            nullMaps.add("[so]");
+        }
+        if (branches.contains("f")) {
+            graph.add(String.format(java.util.Locale.US,
+                    "[vf]fps=1000/%d,scale=%d:%d:force_original_aspect_ratio=decrease:flags=fast_bilinear," +
+                            "pad=%d:%d:(ow-iw)/2:(oh-ih)/2,tile=%dx%d[fo]",
+                    plan.stripIntervalMs(), plan.tileW(), plan.tileH(), plan.tileW(), plan.tileH(), plan.cols(), plan.rows()));
+            outputs.addAll(List.of("-map", "[fo]", "-q:v", "5", "-f", "image2", "-y",
+                    plan.stripDir().resolve("sheet-%04d.jpg").toString()));
+        }
+        if (branches.contains("p")) {
+            // One frame at the poster time, then end of stream for that branch.
+            int n = plan.posters().size();
+            StringBuilder p = new StringBuilder(String.format(java.util.Locale.US,
+                    "[vp]select='gte(t,%.3f)',trim=end_frame=1,split=%d", plan.posterAtMs() / 1000.0, n));
+            for (int i = 0; i < n; i++) p.append("[p").append(i).append(']');
+            graph.add(p.toString());
+            for (int i = 0; i < n; i++) {
+                Poster poster = plan.posters().get(i);
+                graph.add(String.format("[p%d]scale=%d:%d:force_original_aspect_ratio=decrease[po%d]",
+                        i, poster.width(), poster.height(), i));
+                outputs.addAll(List.of("-map", "[po" + i + "]", "-q:v", "4", "-f", "image2", "-update", "1", "-y",
+                        poster.out().toString()));
             }
+        }
+        if (branches.contains("h")) {
+            graph.add(String.format(java.util.Locale.US,
+                    "[vh]fps=1000/%d,scale=%d:%d:flags=area,format=gray[ho]",
+                    plan.sampleIntervalMs(), plan.sampleSize(), plan.sampleSize()));
+            outputs.addAll(List.of("-map", "[ho]", "-f", "rawvideo", "-y", plan.sampleOut().toString()));
+        }
+        if (audio) {
+            graph.add("[0:a:0]aresample=" + plan.pcmRate() + ",aformat=sample_fmts=s16:channel_layouts=mono[ao]");
+            outputs.addAll(List.of("-map", "[ao]", "-c:a", "pcm_s16le", "-f", "s16le", "pipe:1"));
+        }
+        if (graph.isEmpty()) return new Analysis(null, null, 0);
+        if (!nullMaps.isEmpty()) {
+            for (String m : nullMaps) outputs.addAll(List.of("-map", m));
+            outputs.addAll(List.of("-f", "null", "-"));
+        }
 
-            Matcher w = Pattern.compile("width=([0-9]+)").matcher(out);
-            if (w.find()) {
-                width = Integer.parseInt(w.group(1));
+        List<String> cmd = new ArrayList<>(List.of(ffmpeg(), "-hide_banner", "-nostats", "-loglevel", "info",
+                "-i", file.toString(), "-filter_complex", String.join(";", graph)));
+        cmd.addAll(outputs);
+
+        try {
+            Process p = new ProcessBuilder(cmd).start();
+
+            // showinfo logs its input time base once ("config in time_base: 1/15360, …") and then
+            // each keyframe ("n:  12 pts:  61440 pts_time:4.004 …"); metadata=print logs
+            // "frame:3 pts:… pts_time:9.2" followed by "lavfi.scene_score=0.41".
+            LongStream.Builder kfPts = LongStream.builder();
+            LongStream.Builder kfMs = LongStream.builder();
+            int[] timeBase = new int[2];
+            List<SceneCut> cuts = new ArrayList<>();
+            StringBuilder errors = new StringBuilder();
+            Thread log = new Thread(() -> {
+                double ptsTime = -1;
+                try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getErrorStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        int at = line.indexOf("pts_time:");
+                        if (line.contains("Parsed_showinfo") && line.contains("config in")) {
+                            Matcher m = SHOWINFO_TIME_BASE.matcher(line);
+                            if (m.find()) {
+                                timeBase[0] = Integer.parseInt(m.group(1));
+                                timeBase[1] = Integer.parseInt(m.group(2));
+                            }
+                        } else if (line.contains("Parsed_showinfo") && line.contains(" n:") && at >= 0) {
+                            // Filter timestamps already count from the container start, like -ss.
+                            Matcher m = SHOWINFO_PTS.matcher(line);
+                            if (m.find()) kfPts.add(Long.parseLong(m.group(1)));
+                            // pts_time has six significant digits: only a fallback (see KeyframeIndex).
+                            double t = Json.number(line.substring(at + 9).trim().split("\\s+")[0], -1);
+                            if (t >= 0) kfMs.add((Math.round(t * 1_000_000) + 999) / 1000);
+                        } else if (line.contains("Parsed_metadata") && at >= 0) {
+                            ptsTime = Json.number(line.substring(at + 9).trim().split("\\s+")[0], -1);
+                        } else if (line.contains("lavfi.scene_score=") && ptsTime >= 0) {
+                            double score = Json.number(line.substring(line.indexOf("lavfi.scene_score=") + 18).trim(), 0);
+                            cuts.add(new SceneCut(Math.round(ptsTime * 1000), score));
+                            ptsTime = -1;
+                        } else if (line.contains("rror") && errors.length() < 2000) {
+                            errors.append(line).append('\n');
+                        }
+                    }
+                } catch (IOException ignored) {
+                    // Process went away; the exit code tells the rest.
+                }
+            }, "ffmpeg-analysis-log");
+            log.setDaemon(true);
+            log.start();
+
+            try (InputStream out = p.getInputStream()) {
+                if (audio) pcm.accept(out);
+                else out.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                p.destroyForcibly();
+                throw e;
+            }
+            int exit = p.waitFor();
+            log.join();
+            if (exit != 0) {
+                LOG.warn("Analysis failed for {}: {}", file, errors.toString().trim());
+                return null;
             }
 
-            Matcher h = Pattern.compile("height=([0-9]+)").matcher(out);
-            if (h.find()) {
-                height = Integer.parseInt(h.group(1));
+            KeyframeIndex keyframes = plan.keyframes() && video ? keyframeIndex(kfPts.build().toArray(), kfMs.build().toArray(), timeBase) : null;
+            int sheets = 0;
+            if (plan.stripDir() != null && video) {
+                while (Files.exists(plan.stripDir().resolve(String.format("sheet-%04d.jpg", sheets + 1)))) sheets++;
             }
-            return new Meta(durationMs, width, height);
+            return new Analysis(keyframes, plan.sceneThreshold() > 0 && video ? cuts : null, sheets);
         } catch (Exception e) {
-            LOG.error("ffprobe failed", e);
-            return new Meta(1, 0, 0);
+            LOG.warn("Analysis failed for {}", file, e);
+            return null;
         }
     }
 
+    /**
+     * The keyframe index from showinfo's log: exact ticks when it reported its time base and a
+     * pts for every keyframe, otherwise the rounded-up pts_time milliseconds. Null if none were logged.
+     */
+    static KeyframeIndex keyframeIndex(long[] pts, long[] ms, int[] timeBase) {
+        if (timeBase[0] > 0 && timeBase[1] > 0 && pts.length > 0 && pts.length == ms.length) {
+            return KeyframeIndex.of(pts, timeBase[0], timeBase[1]);
+        }
+        return ms.length > 0 ? KeyframeIndex.ofMillis(ms) : null;
+    }
 
     /**
-     * Probes the frame rate of the first video stream in the file.
-     * ffprobe returns r_frame_rate as a fraction e.g. "30/1" or "24000/1001".
-     * Falls back to 30.0 if probing fails or the file has no video stream.
+     * Starts decoding the first audio stream to signed 16-bit little-endian mono PCM at
+     * {@code sampleRate}, written to the process's stdout. The caller drains it and checks the
+     * exit code; at a low rate that is a small fraction of the file's decode cost.
      */
-    public double probeFps(Path file) {
+    public Process startPcmDecode(Path file, int sampleRate) throws IOException {
+        return new ProcessBuilder(
+                ffmpeg(),
+                "-hide_banner", "-nostats", "-loglevel", "error",
+                "-i", file.toString(),
+                "-map", "0:a:0", "-vn", "-sn", "-dn",
+                "-ac", "1", "-ar", String.valueOf(sampleRate),
+                "-f", "s16le", "-"
+        ).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+    }
+
+    /**
+     * Transcodes {@code file} into a preview proxy at {@code out} (MP4): at most {@code maxHeight}
+     * lines, H.264 with a keyframe every {@value #PROXY_GOP} frames and no B-frames, so any frame
+     * decodes after a handful of others, plus stereo AAC. Timestamps count from the container
+     * start like -ss does, so source times carry over unchanged. Throws if ffmpeg fails.
+     */
+    public void proxy(Path file, int maxHeight, Path out) throws IOException {
+        runFFmpeg(List.of(
+                "ffmpeg", "-y",
+                "-hide_banner", "-loglevel", "error",
+                "-i", file.toString(),
+                "-map", "0:v:0", "-map", "0:a:0?", "-sn", "-dn",
+                "-vf", "scale=-2:'min(" + maxHeight + ",trunc(ih/2)*2)':flags=bicubic,format=yuv420p",
+                "-c:v", "libx264", "-preset", "veryfast", "-tune", "fastdecode", "-crf", "26",
+                "-g", String.valueOf(PROXY_GOP), "-bf", "0", "-sc_threshold", "0",
+                "-c:a", "aac", "-b:a", "128k", "-ac", "2",
+                "-movflags", "+faststart", "-f", "mp4",
+                out.toString()
+        ), null);
+    }
+
+    /** ffprobe writes rates as fractions, e.g. "30/1" or "24000/1001"; 0 if unusable. */
+    private static double rate(String fraction) {
+        if (fraction == null) return 0;
         try {
-            Process p = new ProcessBuilder(
-                    ffprobe(),
-                    "-v", "error",
-                    "-select_streams", "v:0",
-                    "-show_entries", "stream=r_frame_rate",
-                    "-of", "default=noprint_wrappers=1:nokey=1",
-                    file.toString()
-            ).redirectErrorStream(true).start();
-            String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
-            p.waitFor();
-            if (out.contains("/")) {
-                String[] parts = out.split("/");
-                double num = Double.parseDouble(parts[0].trim());
-                double den = Double.parseDouble(parts[1].trim());
-                if (den > 0 && num > 0) return num / den;
-            }
-        } catch (Exception e) {
-            LOG.warn("probeFps failed for {}, falling back to 30", file);
+            int slash = fraction.indexOf('/');
+            if (slash < 0) return Double.parseDouble(fraction);
+            double num = Double.parseDouble(fraction.substring(0, slash).trim());
+            double den = Double.parseDouble(fraction.substring(slash + 1).trim());
+            return den > 0 && num > 0 ? num / den : 0;
+        } catch (NumberFormatException e) {
+            return 0;
         }
+    }
+
+    /**
+     * Frame rate of the first video stream. Falls back to 30.0 if probing fails or the file
+     * has no video stream.
+     */
+    public double probeFps(Path file) {
+        double fps = probeInfo(file).fps();
+        if (fps > 0) return fps;
+        LOG.warn("probeFps failed for {}, falling back to 30", file);
         return 30.0;
     }
 
@@ -146,12 +518,327 @@ public class FfmpegService {
             throw new IllegalArgumentException("No segments to export.");
         }
 
-        // Use a single, robust render path. Smart-copy was brittle and offered minor speedups
-        // for a narrow set of cases. A modern encoder is fast
-        // enough that a simple re-encode is a better default.
+        // Footage that already is what the render would produce keeps its untouched GOPs; anything
+        // else, or a smart render that ffmpeg rejects, goes through the full re-encode.
+        H264Params params = canSmartRender(segs, resolution) ? sharedH264Params(segs) : null;
+        if (params != null) {
+            List<Piece> pieces = new ArrayList<>();
+            for (Segment s : segs) pieces.addAll(pieces(s));
+            if (reproducible(pieces, params)) {
+                MonotonicProgress progress = onProgress == null ? null : new MonotonicProgress(onProgress);
+                try {
+                    exportTimelineSmart(segs, pieces, params, output, progress);
+                    return;
+                } catch (IOException e) {
+                    LOG.warn("Smart render failed, re-encoding the whole timeline: {}", e.getMessage());
+                }
+                // The full render takes the rest of the bar from wherever the smart one stopped.
+                if (progress != null) onProgress = slice(progress, progress.reached(), 1.0 - progress.reached());
+            }
+        }
         exportTimelineRender(segs, resolution, output, onProgress);
     }
 
+    /**
+     * True if x264 can re-encode the pieces that need it with exactly the sources' SPS/PPS. The
+     * PPS must be one x264 writes, and one frame of the first such piece, encoded the way
+     * {@link #encodePiece} will encode it, must come out with the same parameter sets. Checked
+     * before any piece is rendered, so a timeline that can't be smart rendered costs one frame
+     * and not a partial export.
+     */
+    private boolean reproducible(List<Piece> pieces, H264Params params) {
+        Piece first = pieces.stream().filter(p -> !p.copy).findFirst().orElse(null);
+        if (first == null) return true;
+        if (params.pps() == null) {
+            LOG.info("Smart render skipped: x264 can't write the PPS of {}", first.segment.input);
+            return false;
+        }
+        Path trial = null;
+        try {
+            trial = Files.createTempFile("smart-render-trial-", ".ts");
+            List<String> cmd = encodeCommand(first, params);
+            cmd.addAll(List.of("-frames:v", "1", "-f", "mpegts", trial.toString()));
+            runFFmpeg(cmd, null);
+            if (!params.sameDecoderSetup(h264Params(trial))) {
+                LOG.info("Smart render skipped: x264 doesn't reproduce the H.264 parameter sets of {}", first.segment.input);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.info("Smart render skipped: trial encode of {} failed: {}", first.segment.input, e.getMessage());
+            return false;
+        } finally {
+            if (trial != null) {
+                try {
+                    Files.deleteIfExists(trial);
+                } catch (IOException e) {
+                    LOG.debug("Could not delete {}: {}", trial, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * The H.264 setup every segment's source shares, or null if they differ, ffprobe can't tell,
+     * or x264 can't be told to produce it. The output MP4 gets one avcC for all of them.
+     */
+    private H264Params sharedH264Params(List<Segment> segs) {
+        H264Params shared = null;
+        Map<Path, Boolean> seen = new HashMap<>();
+        for (Segment s : segs) {
+            if (seen.put(s.input, Boolean.TRUE) != null) continue;
+            H264Params p = h264Params(s.input);
+            if (p == null || p.parameterSets().isEmpty() || p.x264Profile() == null || p.x264Level() == null) {
+                LOG.info("Smart render skipped: no usable H.264 parameter sets in {}", s.input);
+                return null;
+            }
+            if (shared != null && !shared.sameDecoderSetup(p)) {
+                LOG.info("Smart render skipped: {} is encoded with different H.264 parameter sets", s.input);
+                return null;
+            }
+            shared = p;
+        }
+        return shared;
+    }
+
+    /** Profile, level and SPS/PPS of the first video stream of {@code file}; null if ffprobe fails. */
+    H264Params h264Params(Path file) {
+        try {
+            String out = ffprobeJson(file, "-select_streams", "v:0",
+                    "-show_entries", "stream=profile,level,refs,extradata", "-show_data");
+            return out == null ? null : H264Params.parse(out);
+        } catch (Exception e) {
+            LOG.warn("Could not read H.264 parameters of {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * True if every segment's video can go into the output without re-encoding: H.264 4:2:0 at
+     * exactly the target size, one frame rate across the timeline, and an exact keyframe index
+     * to cut on.
+     */
+    boolean canSmartRender(List<Segment> segs, Resolution resolution) {
+        double fps = 0;
+        for (Segment s : segs) {
+            MediaInfo info = s.info;
+            if (info == null || !info.isKnown() || s.keyframes == null || s.keyframes.size() == 0) return false;
+            if (!s.keyframes.exact()) return false;
+            if (!"h264".equals(info.videoCodec()) || !"yuv420p".equals(info.pixelFormat())) return false;
+            if (info.width() != resolution.width() || info.height() != resolution.height()) return false;
+            if (info.fps() <= 0 || (fps > 0 && Math.abs(info.fps() - fps) > 0.01)) return false;
+            fps = info.fps();
+        }
+        return true;
+    }
+
+    /**
+     * A stretch of one segment's video that is either copied packet for packet or re-encoded:
+     * the frames with {@code startPts <= pts < endPts}, in the segment's keyframe time base.
+     */
+    record Piece(Segment segment, long startPts, long endPts, boolean copy) {
+        long durationMs() {
+            return Math.round(segment.keyframes.seconds(endPts - startPts) * 1000);
+        }
+    }
+
+    /**
+     * Splits a segment at the first keyframe at or after its in-point and the last one before
+     * its out-point: whole GOPs between them are copied, the partial GOPs outside are
+     * re-encoded. Boundaries are keyframe ticks, so the keyframe that starts the copied run is
+     * the first frame after the leading piece, and the one that ends it is the first frame of
+     * the trailing piece; no frame is in two pieces. A segment without a whole GOP in it is
+     * re-encoded in one piece.
+     */
+    static List<Piece> pieces(Segment s) {
+        KeyframeIndex kf = s.keyframes;
+        long from = kf.ticksAt(s.startMs);
+        long to = kf.ticksAt(s.endMs);
+        long first = kf.ceilingPts(from);
+        long last = kf.floorPts(to);
+        if (first < 0 || last <= first) return List.of(new Piece(s, from, to, false));
+        List<Piece> out = new ArrayList<>(3);
+        if (from < first) out.add(new Piece(s, from, first, false));
+        out.add(new Piece(s, first, last, true));
+        if (last < to) out.add(new Piece(s, last, to, false));
+        return out;
+    }
+
+    /**
+     * Smart render: each piece goes to its own MPEG-TS file (parameter sets travel in-band, so
+     * copied and re-encoded H.264 can follow one another), the concat demuxer joins them without
+     * touching a frame, and the audio, rendered once for the whole timeline, is muxed alongside.
+     * Audio is always re-encoded: it is cheap, and AAC frames don't line up with video cuts.
+     *
+     * Assumes closed GOPs (x264's and most cameras' default), so a copied GOP never references
+     * frames outside itself. Re-encoded pieces must come out with the sources' own SPS/PPS, since
+     * the MP4 keeps a single copy of those; {@link #reproducible} checks that up front, and a
+     * piece that still doesn't fails the smart render.
+     */
+    private void exportTimelineSmart(List<Segment> segs, List<Piece> pieces, H264Params params, Path output, Consumer<Double> onProgress) throws IOException {
+        // Progress weights: copying moves bytes, encoding decodes and encodes every frame.
+        long copyMs = 0, encodeMs = 0, totalMs = 0;
+        for (Piece p : pieces) {
+            if (p.copy) copyMs += p.durationMs();
+            else encodeMs += p.durationMs();
+        }
+        for (Segment s : segs) totalMs += Math.max(0, s.endMs - s.startMs);
+        double total = Math.max(1.0, encodeMs + copyMs / 20.0 + totalMs / 10.0 + totalMs / 40.0);
+        LOG.info("Smart render: {} pieces, {} ms copied, {} ms re-encoded", pieces.size(), copyMs, encodeMs);
+
+        Path dir = Files.createTempDirectory("smart-render-");
+        try {
+            StringBuilder list = new StringBuilder();
+            double done = 0;
+            for (int i = 0; i < pieces.size(); i++) {
+                Piece p = pieces.get(i);
+                Path file = dir.resolve(String.format("piece-%04d.ts", i));
+                long durMs = p.durationMs();
+                double weight = p.copy ? durMs / 20.0 : durMs;
+                if (p.copy) copyPiece(p, file);
+                else encodePiece(p, params, file, new FfmpegProgressParser(durMs, slice(onProgress, done / total, weight / total)));
+                done += weight;
+                report(onProgress, done / total);
+                list.append("file '").append(file.toString().replace("'", "'\\''")).append("'\n");
+            }
+            Path listFile = dir.resolve("pieces.txt");
+            Files.writeString(listFile, list.toString(), StandardCharsets.UTF_8);
+
+            Path audio = dir.resolve("audio.m4a");
+            renderAudio(segs, audio, new FfmpegProgressParser(totalMs, slice(onProgress, done / total, totalMs / 10.0 / total)));
+
+            runFFmpeg(List.of(
+                    "ffmpeg", "-y",
+                    "-hide_banner", "-loglevel", "error",
+                    "-f", "concat", "-safe", "0", "-i", listFile.toString(),
+                    "-i", audio.toString(),
+                    "-map", "0:v:0", "-map", "1:a:0",
+                    "-c", "copy",
+                    "-movflags", "+faststart",
+                    output.toString()
+            ), null);
+            report(onProgress, 1.0);
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path f : files.toList()) Files.deleteIfExists(f);
+            } catch (IOException e) {
+                LOG.debug("Could not clean up {}: {}", dir, e.getMessage());
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * Copies whole GOPs. The input seek lands exactly on the piece's first keyframe; the segment
+     * muxer then starts a new file at the keyframe that ends the piece, and only the first file
+     * is kept. A duration limit can't make that cut: it compares decode timestamps, and with
+     * B-frames the closing keyframe decodes before the piece's last frames are shown.
+     */
+    private void copyPiece(Piece p, Path out) throws IOException {
+        KeyframeIndex kf = p.segment.keyframes;
+        // Split half a frame early, which still only matches the closing keyframe.
+        double splitSec = kf.seconds(p.endPts - p.startPts) - 0.5 / p.segment.info.fps();
+        String name = out.getFileName().toString().replace(".ts", "");
+        Path pattern = out.resolveSibling(name + "-%d.ts");
+        runFFmpeg(List.of(
+                "ffmpeg", "-y",
+                "-hide_banner", "-loglevel", "error",
+                "-ss", microsToTs(kf.micros(p.startPts)),
+                "-i", p.segment.input.toString(),
+                "-t", String.format(java.util.Locale.US, "%.6f", splitSec + 1.0),
+                "-map", "0:v:0", "-an", "-sn", "-dn",
+                "-c:v", "copy", "-bsf:v", "h264_mp4toannexb",
+                "-f", "segment", "-segment_format", "mpegts",
+                "-segment_times", String.format(java.util.Locale.US, "%.6f", splitSec),
+                pattern.toString()
+        ), null);
+        Files.move(out.resolveSibling(name + "-0.ts"), out);
+    }
+
+    /**
+     * Re-encodes a partial GOP. x264 is set up from the sources' PPS (see {@link H264Params.Pps}),
+     * which also fixes the rate control: CRF at the PPS's initial QP, which is what x264 writes
+     * there. If the SPS/PPS still come out different, this throws.
+     */
+    private void encodePiece(Piece p, H264Params params, Path out, FfmpegProgressParser progress) throws IOException {
+        List<String> cmd = encodeCommand(p, params);
+        cmd.addAll(List.of("-f", "mpegts", out.toString()));
+        runFFmpeg(cmd, progress);
+
+        if (!params.sameDecoderSetup(h264Params(out))) {
+            throw new IOException("re-encoded piece has different H.264 parameter sets than the source");
+        }
+    }
+
+    /**
+     * The ffmpeg command for a piece, without its output. The input keeps the analysis pass's
+     * timestamps (-copyts from the container start), so the trim selects exactly the piece's
+     * frames by tick; the seek only skips decoding and is not allowed to drop frames itself.
+     */
+    private static List<String> encodeCommand(Piece p, H264Params params) {
+        KeyframeIndex kf = p.segment.keyframes;
+        long pre = Math.max(0, kf.floorPts(p.startPts));
+        H264Params.Pps pps = params.pps();
+        return new ArrayList<>(List.of(
+                "ffmpeg", "-y",
+                "-hide_banner", "-loglevel", "error",
+                "-noaccurate_seek", "-copyts", "-start_at_zero",
+                "-ss", microsToTs(kf.micros(pre)),
+                "-i", p.segment.input.toString(),
+                "-map", "0:v:0", "-an", "-sn", "-dn",
+                "-vf", String.format("trim=start_pts=%d:end_pts=%d,setpts=PTS-STARTPTS", p.startPts, p.endPts),
+                "-c:v", "libx264", "-preset", "medium", "-crf", String.valueOf(pps.picInitQp()), "-pix_fmt", "yuv420p",
+                "-profile:v", params.x264Profile(), "-level", params.x264Level(),
+                "-x264-params", pps.x264Params()));
+    }
+
+    /** The timeline's audio on its own, cut exactly like {@link #exportTimelineRender} cuts it. */
+    private void renderAudio(List<Segment> segs, Path out, FfmpegProgressParser progress) throws IOException {
+        StringBuilder fc = new StringBuilder();
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y", "-hide_banner"));
+        for (int i = 0; i < segs.size(); i++) {
+            Segment s = segs.get(i);
+            double preSec = s.preSeekSec();
+            cmd.addAll(List.of("-ss", String.format(java.util.Locale.US, "%.3f", preSec), "-i", s.input.toString()));
+            appendAudioChain(fc, i, s, s.startMs / 1000.0 - preSec, s.endMs / 1000.0 - preSec);
+        }
+        for (int i = 0; i < segs.size(); i++) fc.append("[a").append(i).append("]");
+        fc.append("concat=n=").append(segs.size()).append(":v=0:a=1[aout]");
+        cmd.addAll(List.of("-filter_complex", fc.toString(), "-map", "[aout]", "-vn",
+                "-c:a", "aac", "-b:a", "192k", out.toString()));
+        runFFmpeg(cmd, progress);
+    }
+
+    /** Maps a step's own 0..1 progress onto [from, from + width] of the whole export. */
+    private static Consumer<Double> slice(Consumer<Double> onProgress, double from, double width) {
+        return onProgress == null ? null : p -> onProgress.accept(Math.min(1.0, from + p * width));
+    }
+
+    private static void report(Consumer<Double> onProgress, double p) {
+        if (onProgress != null) onProgress.accept(Math.min(1.0, p));
+    }
+
+    /** Passes progress on only when it moves forward, and remembers how far it got. */
+    private static final class MonotonicProgress implements Consumer<Double> {
+        private final Consumer<Double> target;
+        private double reached;
+
+        MonotonicProgress(Consumer<Double> target) {
+            this.target = target;
+        }
+
+        @Override
+        public synchronized void accept(Double p) {
+            if (p <= reached) return;
+            reached = p;
+            target.accept(p);
+        }
+
+        synchronized double reached() {
+            return reached;
+        }
+    }
+
     private void exportTimelineRender(List<Segment> segs, Resolution resolution, Path output, Consumer<Double> onProgress) throws IOException {
         int tw = resolution.width();
         int th = resolution.height();
@@ -164,12 +851,11 @@ public class FfmpegService {
             long durMs = Math.max(0, s.endMs - s.startMs);
             totalDurationMs += durMs;
 
-            // The input is pre-seeked to (startSec - 4s), so trim timestamps must be
+            // The input is pre-seeked to the preceding keyframe, so trim timestamps must be
             // relative to that seek point, not to the original file start.
-            double preSec    = Math.max(0.0, s.startMs / 1000.0 - 4.0);
+            double preSec    = s.preSeekSec();
             double startSec  = s.startMs / 1000.0 - preSec;
             double endSec    = s.endMs   / 1000.0 - preSec;
-            double durSec    = durMs / 1000.0;
 
             // Video chain — no fps filter so source fps is preserved.
             // concat uses the first stream's fps; ffmpeg normalises mixed-fps inputs
@@ -181,16 +867,7 @@ public class FfmpegService {
                             "format=yuv420p[v%d];",
                     i, startSec, endSec, tw, th, tw, th, i));
 
-            // Audio chain — fall back to silence if the file has no audio stream.
-            if (hasAudio(s.input)) {
-                fc.append(String.format(java.util.Locale.US,
-                        "[%d:a]atrim=start=%.6f:end=%.6f,asetpts=PTS-STARTPTS[a%d];",
-                        i, startSec, endSec, i));
-            } else {
-                fc.append(String.format(java.util.Locale.US,
-                        "aevalsrc=0:channel_layout=stereo:sample_rate=44100:duration=%.6f[a%d];",
-                        durSec, i));
-            }
+            appendAudioChain(fc, i, s, startSec, endSec);
         }
 
         // Concat video and audio streams
@@ -205,11 +882,11 @@ public class FfmpegService {
         cmd.add("-y");
         cmd.add("-hide_banner");
 
-        // Inputs — use input-side seeking (-ss before -i) so FFmpeg jumps to a keyframe
-        // near the trim point instead of decoding the entire file from frame 0.
+        // Inputs — use input-side seeking (-ss before -i) so FFmpeg jumps to the keyframe
+        // just before the trim point instead of decoding the entire file from frame 0.
         // The trim filter then handles frame-accurate cutting within the small decoded window.
         for (Segment s : segs) {
-            double preSec = Math.max(0.0, s.startMs / 1000.0 - 4.0);
+            double preSec = s.preSeekSec();
             cmd.add("-ss");
             cmd.add(String.format(java.util.Locale.US, "%.3f", preSec));
             cmd.add("-i");
@@ -241,25 +918,27 @@ public class FfmpegService {
         runFFmpeg(cmd, new FfmpegProgressParser(totalDurationMs, onProgress));
     }
 
+    /** Segment {@code i}'s audio as {@code [a<i>]}: trimmed like its video, or silence if the file has none. */
+    private void appendAudioChain(StringBuilder fc, int i, Segment s, double startSec, double endSec) {
+        boolean audio = s.info != null && s.info.isKnown() ? s.info.hasAudio() : hasAudio(s.input);
+        if (audio) {
+            fc.append(String.format(java.util.Locale.US,
+                    "[%d:a]atrim=start=%.6f:end=%.6f,asetpts=PTS-STARTPTS[a%d];",
+                    i, startSec, endSec, i));
+        } else {
+            fc.append(String.format(java.util.Locale.US,
+                    "aevalsrc=0:channel_layout=stereo:sample_rate=44100:duration=%.6f[a%d];",
+                    endSec - startSec, i));
+        }
+    }
+
 
     /** Returns true if the file has at least one audio stream. */
     public boolean hasAudio(Path file) {
-        try {
-            Process p = new ProcessBuilder(
-                    ffprobe(),
-                    "-v", "error",
-                    "-select_streams", "a:0",
-                    "-show_entries", "stream=codec_type",
-                    "-of", "default=noprint_wrappers=1:nokey=1",
-                    file.toString()
-            ).redirectErrorStream(true).start();
-            String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
-            p.waitFor();
-            return out.contains("audio");
-        } catch (Exception e) {
-            LOG.warn("hasAudio probe failed for {}, assuming true", file);
-            return true; // safe default: let FFmpeg try and fail loudly if wrong
-        }
+        MediaInfo info = probeInfo(file);
+        if (info.isKnown()) return info.hasAudio();
+        LOG.warn("hasAudio probe failed for {}, assuming true", file);
+        return true; // safe default: let FFmpeg try and fail loudly if wrong
     }
 
     private void runFFmpeg(List<String> args, FfmpegProgressParser progress) throws IOException {
@@ -329,4 +1008,8 @@ public class FfmpegService {
     private String msToTs(long ms) {
         return String.format(java.util.Locale.US, "%.3f", ms / 1000.0);
     }
+
+    private static String microsToTs(long us) {
+        return String.format(java.util.Locale.US, "%d.%06d", us / 1_000_000, us % 1_000_000);
+    }
 }
\ No newline at end of file
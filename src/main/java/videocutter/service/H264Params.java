@@ -0,0 +1,240 @@
+package videocutter.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How an H.264 stream's decoder is set up: profile and level as ffprobe names them, and the
+ * SPS/PPS NAL units from its extradata (hex). Packets concatenated behind one MP4 sample
+ * description are decoded with one set of these, so every piece of a smart render must carry
+ * exactly the same ones.
+ *
+ * @param refs reference frames the SPS allows, 0 if unknown
+ */
+record H264Params(String profile, int level, int refs, Set<String> parameterSets) {
+
+    /** Reads the first stream of {@code ffprobe -show_entries stream=profile,level,refs,extradata -show_data -of json}. */
+    static H264Params parse(String json) {
+        List<Object> streams = Json.array(Json.object(Json.parse(json)).get("streams"));
+        if (streams.isEmpty()) return null;
+        Map<String, Object> st = Json.object(streams.get(0));
+        String dump = Json.string(st.get("extradata"));
+        return new H264Params(
+                Json.string(st.get("profile")),
+                (int) Json.number(st.get("level"), 0),
+                (int) Json.number(st.get("refs"), 0),
+                dump == null ? Set.of() : parameterSets(hexDump(dump)));
+    }
+
+    /** True if a decoder set up for one of the two streams decodes the other's packets correctly. */
+    boolean sameDecoderSetup(H264Params other) {
+        return other != null && !parameterSets.isEmpty() && parameterSets.equals(other.parameterSets);
+    }
+
+    /** The {@code -profile:v} for libx264, or null for a profile x264 can't produce in 8-bit 4:2:0. */
+    String x264Profile() {
+        if (profile == null) return null;
+        return switch (profile) {
+            case "Baseline", "Constrained Baseline" -> "baseline";
+            case "Main" -> "main";
+            case "High" -> "high";
+            default -> null;
+        };
+    }
+
+    /** The {@code -level} for libx264 ("4.1" for 41), or null if unknown. */
+    String x264Level() {
+        return level >= 10 ? level / 10 + "." + level % 10 : null;
+    }
+
+    /** The first PPS among the parameter sets, or null if there is none or x264 couldn't write it. */
+    Pps pps() {
+        for (String set : parameterSets) {
+            byte[] nal = HexFormat.of().parseHex(set);
+            if ((nal[0] & 0x1F) == 8) return Pps.parse(nal);
+        }
+        return null;
+    }
+
+    /**
+     * The picture parameter set fields libx264 derives from its options. x264 always writes one
+     * slice group, one default L1 reference, an initial QS of 26, deblocking control, the
+     * flat scaling lists and the same offset for both chroma planes; a PPS that differs in any
+     * of those can't be reproduced, and {@link #parse} returns null for it.
+     *
+     * @param picInitQp the QP x264 writes here for {@code -crf} of the same value
+     * @param refs      default active L0 references, x264's {@code ref}
+     */
+    record Pps(boolean cabac, int picInitQp, int refs, boolean weightedPred, boolean weightedBipred,
+               int chromaQpOffset, boolean constrainedIntra, boolean transform8x8) {
+
+        static Pps parse(byte[] nal) {
+            try {
+                Bits b = new Bits(nal);
+                b.ue(); // pic_parameter_set_id
+                b.ue(); // seq_parameter_set_id
+                boolean cabac = b.flag();
+                if (b.flag()) return null; // bottom_field_pic_order_in_frame_present
+                if (b.ue() != 0) return null; // num_slice_groups_minus1
+                int refs = b.ue() + 1;
+                if (b.ue() != 0) return null; // num_ref_idx_l1_default_active_minus1
+                boolean weightedPred = b.flag();
+                int bipred = b.bits(2);
+                if (bipred == 1) return null; // explicit B weights; x264 only does implicit
+                int qp = 26 + b.se();
+                int qs = 26 + b.se();
+                int chromaQpOffset = b.se();
+                if (qs != 26 || !b.flag()) return null; // deblocking_filter_control_present
+                boolean constrainedIntra = b.flag();
+                if (b.flag()) return null; // redundant_pic_cnt_present
+                boolean transform8x8 = false;
+                if (b.moreData()) {
+                    transform8x8 = b.flag();
+                    if (b.flag()) return null; // pic_scaling_matrix_present
+                    if (b.se() != chromaQpOffset) return null; // second_chroma_qp_index_offset
+                }
+                return new Pps(cabac, qp, refs, weightedPred, bipred == 2, chromaQpOffset, constrainedIntra, transform8x8);
+            } catch (IndexOutOfBoundsException e) {
+                return null;
+            }
+        }
+
+        /**
+         * {@code -x264-params} that make x264 write this PPS. Psychovisual tuning is off because
+         * x264 lowers the chroma QP offset by its own amount while it is on.
+         */
+        String x264Params() {
+            return String.join(":",
+                    "cabac=" + (cabac ? 1 : 0),
+                    "ref=" + refs,
+                    "weightp=" + (weightedPred ? 2 : 0),
+                    "weightb=" + (weightedBipred ? 1 : 0),
+                    "8x8dct=" + (transform8x8 ? 1 : 0),
+                    "constrained-intra=" + (constrainedIntra ? 1 : 0),
+                    "psy=0",
+                    "chroma-qp-offset=" + chromaQpOffset);
+        }
+    }
+
+    /** Reads the RBSP of a NAL unit (after its header byte) bit by bit, Exp-Golomb codes included. */
+    private static final class Bits {
+        private final byte[] rbsp;
+        private final int end;
+        private int pos;
+
+        Bits(byte[] nal) {
+            // Drop the emulation prevention byte from every 00 00 03.
+            ByteArrayOutputStream out = new ByteArrayOutputStream(nal.length);
+            int zeros = 0;
+            for (int i = 1; i < nal.length; i++) {
+                int v = nal[i] & 0xFF;
+                if (zeros >= 2 && v == 3) {
+                    zeros = 0;
+                    continue;
+                }
+                zeros = v == 0 ? zeros + 1 : 0;
+                out.write(v);
+            }
+            rbsp = out.toByteArray();
+            // The stop bit: the last 1 in the unit, followed only by zero padding.
+            int last = rbsp.length * 8 - 1;
+            while (last >= 0 && !bit(last)) last--;
+            end = last;
+        }
+
+        private boolean bit(int i) {
+            return (rbsp[i >> 3] >> (7 - (i & 7)) & 1) != 0;
+        }
+
+        boolean flag() {
+            if (pos >= end) throw new IndexOutOfBoundsException("past the end of the RBSP");
+            return bit(pos++);
+        }
+
+        int bits(int n) {
+            int v = 0;
+            for (int i = 0; i < n; i++) v = v << 1 | (flag() ? 1 : 0);
+            return v;
+        }
+
+        int ue() {
+            int zeros = 0;
+            while (!flag()) {
+                if (++zeros > 31) throw new IndexOutOfBoundsException("malformed Exp-Golomb code");
+            }
+            return (int) ((1L << zeros) - 1 + bits(zeros));
+        }
+
+        int se() {
+            int k = ue();
+            return (k & 1) != 0 ? (k + 1) / 2 : -(k / 2);
+        }
+
+        boolean moreData() {
+            return pos < end;
+        }
+    }
+
+    /**
+     * SPS and PPS NAL units (types 7 and 8) in {@code extradata}, as hex. MP4 sources carry an
+     * avcC record; MPEG-TS ones (our pieces) carry Annex B start codes. Empty if neither parses.
+     */
+    static Set<String> parameterSets(byte[] extradata) {
+        Set<String> out = new LinkedHashSet<>();
+        if (extradata.length > 6 && extradata[0] == 1) {
+            // avcC: version, profile, compat, level, length size, SPS count, (len, SPS)*, PPS count, (len, PPS)*
+            int i = 5;
+            for (int list = 0; list < 2; list++) {
+                if (i >= extradata.length) return Set.of();
+                int n = extradata[i++] & (list == 0 ? 0x1F : 0xFF);
+                for (int k = 0; k < n; k++) {
+                    if (i + 2 > extradata.length) return Set.of();
+                    int len = (extradata[i] & 0xFF) << 8 | (extradata[i + 1] & 0xFF);
+                    i += 2;
+                    if (i + len > extradata.length) return Set.of();
+                    addParameterSet(out, extradata, i, i + len);
+                    i += len;
+                }
+            }
+            return out;
+        }
+        int start = -1;
+        for (int i = 0; i + 2 < extradata.length; i++) {
+            if (extradata[i] == 0 && extradata[i + 1] == 0 && extradata[i + 2] == 1) {
+                if (start >= 0) addParameterSet(out, extradata, start, i);
+                start = i + 3;
+                i += 2;
+            }
+        }
+        if (start >= 0) addParameterSet(out, extradata, start, extradata.length);
+        return out;
+    }
+
+    private static void addParameterSet(Set<String> out, byte[] data, int from, int to) {
+        // A four-byte start code leaves its leading zero at the end of the NAL before it.
+        while (to > from && data[to - 1] == 0) to--;
+        if (to <= from) return;
+        int type = data[from] & 0x1F;
+        if (type == 7 || type == 8) out.add(HexFormat.of().formatHex(data, from, to));
+    }
+
+    /**
+     * Bytes of an ffprobe {@code -show_data} dump: lines of {@code "00000010: 6764 001f … ascii"},
+     * sixteen bytes as hex in a fixed 40-column field after the offset.
+     */
+    static byte[] hexDump(String dump) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String line : dump.split("\n")) {
+            if (line.length() < 10 || line.charAt(8) != ':') continue;
+            String hex = line.substring(10, Math.min(line.length(), 50)).replace(" ", "");
+            for (int i = 0; i + 1 < hex.length(); i += 2) {
+                out.write(Integer.parseInt(hex, i, i + 2, 16));
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,157 @@
+package videocutter.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader for ffprobe output: objects become {@code Map<String, Object>}, arrays
+ * {@code List<Object>}, numbers {@code Double}, plus String, Boolean and null.
+ * Not a general-purpose parser — just enough to avoid a dependency for one call site.
+ */
+final class Json {
+    private final String s;
+    private int i;
+
+    private Json(String s) {
+        this.s = s;
+    }
+
+    static Object parse(String text) {
+        Json p = new Json(text);
+        Object v = p.value();
+        p.ws();
+        if (p.i != p.s.length()) throw p.error("trailing characters");
+        return v;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> object(Object v) {
+        return v instanceof Map ? (Map<String, Object>) v : Map.of();
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Object> array(Object v) {
+        return v instanceof List ? (List<Object>) v : List.of();
+    }
+
+    /** ffprobe writes some numbers as strings ("10.010000"); accepts either. */
+    static double number(Object v, double fallback) {
+        if (v instanceof Double d) return d;
+        if (v instanceof String str) {
+            try {
+                return Double.parseDouble(str.trim());
+            } catch (NumberFormatException ignored) {}
+        }
+        return fallback;
+    }
+
+    static String string(Object v) {
+        return v instanceof String str && !str.isEmpty() ? str : null;
+    }
+
+    private Object value() {
+        ws();
+        if (i >= s.length()) throw error("unexpected end");
+        char c = s.charAt(i);
+        switch (c) {
+            case '{': return obj();
+            case '[': return arr();
+            case '"': return str();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:  return num();
+        }
+    }
+
+    private Map<String, Object> obj() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        i++; // {
+        ws();
+        if (peek() == '}') { i++; return out; }
+        while (true) {
+            ws();
+            if (peek() != '"') throw error("expected key");
+            String key = str();
+            ws();
+            expect(':');
+            out.put(key, value());
+            ws();
+            if (peek() == ',') { i++; continue; }
+            expect('}');
+            return out;
+        }
+    }
+
+    private List<Object> arr() {
+        List<Object> out = new ArrayList<>();
+        i++; // [
+        ws();
+        if (peek() == ']') { i++; return out; }
+        while (true) {
+            out.add(value());
+            ws();
+            if (peek() == ',') { i++; continue; }
+            expect(']');
+            return out;
+        }
+    }
+
+    private String str() {
+        i++; // opening quote
+        StringBuilder sb = new StringBuilder();
+        while (i < s.length()) {
+            char c = s.charAt(i++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') { sb.append(c); continue; }
+            if (i >= s.length()) break;
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (i + 4 > s.length()) throw error("bad escape");
+                    sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    i += 4;
+                    break;
+                default: sb.append(e); // \" \\ \/
+            }
+        }
+        throw error("unterminated string");
+    }
+
+    private Double num() {
+        int start = i;
+        while (i < s.length() && "+-0123456789.eE".indexOf(s.charAt(i)) >= 0) i++;
+        if (start == i) throw error("unexpected character");
+        return Double.parseDouble(s.substring(start, i));
+    }
+
+    private Object literal(String word, Object v) {
+        if (!s.startsWith(word, i)) throw error("unexpected token");
+        i += word.length();
+        return v;
+    }
+
+    private void ws() {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+    }
+
+    private char peek() {
+        return i < s.length() ? s.charAt(i) : '\0';
+    }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("expected '" + c + "'");
+        i++;
+    }
+
+    private IllegalArgumentException error(String what) {
+        return new IllegalArgumentException("Invalid JSON at " + i + ": " + what);
+    }
+}
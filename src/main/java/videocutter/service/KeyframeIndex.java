@@ -0,0 +1,167 @@
+package videocutter.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Keyframe times of an asset's first video stream, ascending: exact presentation timestamps in
+ * the stream's time base, counted from the start of the file (the origin ffmpeg's {@code -ss}
+ * uses). Frame-exact cuts work on these ticks. The millisecond views round up, so that seeking
+ * to a keyframe never lands just before it and falls back a whole GOP.
+ *
+ * Stored as unsigned LEB128 varints of the gaps between keyframes: a typical 1–2 s GOP costs two
+ * or three bytes per keyframe, so an hour of video indexes in a few KB. The time base is stored
+ * next to them; indexes written before it was kept hold rounded-up milliseconds and are not
+ * {@link #exact()}.
+ */
+public final class KeyframeIndex {
+    private final long[] pts;
+    private final long[] ms;
+    private final int tbNum;
+    private final int tbDen;
+    private final boolean exact;
+
+    private KeyframeIndex(long[] pts, int tbNum, int tbDen, boolean exact) {
+        this.pts = pts;
+        this.tbNum = tbNum;
+        this.tbDen = tbDen;
+        this.exact = exact;
+        this.ms = new long[pts.length];
+        for (int i = 0; i < pts.length; i++) ms[i] = millis(pts[i]);
+    }
+
+    /** Sorts and de-duplicates {@code pts}, timestamps in units of {@code tbNum/tbDen} seconds. */
+    public static KeyframeIndex of(long[] pts, int tbNum, int tbDen) {
+        if (tbNum <= 0 || tbDen <= 0) throw new IllegalArgumentException("time base " + tbNum + "/" + tbDen);
+        return new KeyframeIndex(sorted(pts), tbNum, tbDen, true);
+    }
+
+    /** An index of whole milliseconds, for when ffmpeg didn't report exact timestamps. Not {@link #exact()}. */
+    public static KeyframeIndex ofMillis(long[] ms) {
+        return new KeyframeIndex(sorted(ms), 1, 1000, false);
+    }
+
+    private static long[] sorted(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (long t : sorted) {
+            if (t < 0) continue;
+            if (n == 0 || sorted[n - 1] != t) sorted[n++] = t;
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+
+    public int size() { return pts.length; }
+
+    /** True if the ticks are the stream's own timestamps, so cuts on them are frame-exact. */
+    public boolean exact() { return exact; }
+
+    /** The time base as ffmpeg writes it, e.g. {@code "1/15360"}; null for a millisecond index. */
+    public String timeBase() {
+        return exact ? tbNum + "/" + tbDen : null;
+    }
+
+    /** The last keyframe at or before {@code t} ms — where a seek to {@code t} should start decoding. 0 if none. */
+    public long floor(long t) {
+        int i = Arrays.binarySearch(ms, t);
+        if (i >= 0) return ms[i];
+        int before = -i - 2;
+        return before >= 0 ? ms[before] : 0;
+    }
+
+    /** The first keyframe at or after {@code t} ms, or -1 if there is none. */
+    public long ceiling(long t) {
+        int i = Arrays.binarySearch(ms, t);
+        if (i >= 0) return ms[i];
+        int after = -i - 1;
+        return after < ms.length ? ms[after] : -1;
+    }
+
+    /** The last keyframe at or before tick {@code t}, or -1 if there is none. */
+    public long floorPts(long t) {
+        int i = Arrays.binarySearch(pts, t);
+        if (i >= 0) return pts[i];
+        int before = -i - 2;
+        return before >= 0 ? pts[before] : -1;
+    }
+
+    /** The first keyframe at or after tick {@code t}, or -1 if there is none. */
+    public long ceilingPts(long t) {
+        int i = Arrays.binarySearch(pts, t);
+        if (i >= 0) return pts[i];
+        int after = -i - 1;
+        return after < pts.length ? pts[after] : -1;
+    }
+
+    /** The first tick at or after {@code t} ms: frames at or after {@code t} have at least this pts. */
+    public long ticksAt(long t) {
+        return -Math.floorDiv(-t * tbDen, 1000L * tbNum);
+    }
+
+    /** Tick {@code t} in milliseconds, rounded up. */
+    public long millis(long t) {
+        return -Math.floorDiv(-t * 1000L * tbNum, tbDen);
+    }
+
+    /** Tick {@code t} in microseconds, rounded up; as an input {@code -ss} it seeks to exactly that frame. */
+    public long micros(long t) {
+        return -Math.floorDiv(-t * 1_000_000L * tbNum, tbDen);
+    }
+
+    /** A span of {@code ticks} in seconds. */
+    public double seconds(long ticks) {
+        return ticks * (double) tbNum / tbDen;
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pts.length * 3);
+        long prev = 0;
+        for (long t : pts) {
+            long d = t - prev;
+            prev = t;
+            while ((d & ~0x7FL) != 0) {
+                out.write((int) ((d & 0x7F) | 0x80));
+                d >>>= 7;
+            }
+            out.write((int) d);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Inverse of {@link #encode()}; {@code count} sizes the array up front. {@code timeBase} is
+     * what {@link #timeBase()} returned, null for a millisecond index.
+     */
+    public static KeyframeIndex decode(byte[] data, int count, String timeBase) {
+        long[] pts = new long[count];
+        int n = 0;
+        long t = 0;
+        int i = 0;
+        while (i < data.length && n < count) {
+            long d = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = data[i++] & 0xFF;
+                d |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && i < data.length);
+            t += d;
+            pts[n++] = t;
+        }
+        if (n != count) pts = Arrays.copyOf(pts, n);
+
+        int slash = timeBase == null ? -1 : timeBase.indexOf('/');
+        if (slash > 0) {
+            try {
+                int num = Integer.parseInt(timeBase.substring(0, slash).trim());
+                int den = Integer.parseInt(timeBase.substring(slash + 1).trim());
+                if (num > 0 && den > 0) return new KeyframeIndex(pts, num, den, true);
+            } catch (NumberFormatException ignored) {
+                // Unreadable: treat it like an index from before time bases were stored.
+            }
+        }
+        return new KeyframeIndex(pts, 1, 1000, false);
+    }
+}
@@ -0,0 +1,26 @@
+package videocutter.service;
+
+/**
+ * Everything the app needs to know about a media file from one ffprobe run: container, first
+ * video stream and first audio stream. Text fields are null when the stream is absent.
+ *
+ * @param fps frame rate of the first video stream (r_frame_rate), 0 if unknown
+ * @param bitRate overall container bit rate in bits/s, 0 if unknown
+ * @param streams number of streams of any kind; 0 means the probe failed
+ */
+public record MediaInfo(long durationMs, int width, int height, double fps,
+                        String videoCodec, String pixelFormat,
+                        String audioCodec, int sampleRate, int channels, String channelLayout,
+                        long bitRate, int streams) {
+
+    /** What a failed probe yields; the same placeholders {@link FfmpegService#probe} always used. */
+    public static final MediaInfo UNKNOWN = new MediaInfo(1, 0, 0, 0, null, null, null, 0, 0, null, 0, 0);
+
+    public boolean isKnown() { return streams > 0; }
+
+    public boolean hasVideo() { return videoCodec != null; }
+
+    public boolean hasAudio() { return audioCodec != null; }
+
+    public Meta meta() { return new Meta(durationMs, width, height); }
+}
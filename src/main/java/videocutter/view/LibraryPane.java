@@ -1,16 +1,23 @@
 package videocutter.view;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
+import javafx.scene.image.ImageView;
 import javafx.scene.input.*;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
+import javafx.util.Duration;
 import org.kordamp.ikonli.javafx.FontIcon;
+import videocutter.model.ImportStrategy;
 import videocutter.model.VideoAsset;
 
 import java.io.File;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class LibraryPane {
@@ -27,6 +34,25 @@ public class LibraryPane {
     private final ListView<VideoAsset> list = new ListView<>();
 
     private final Button deleteBtn = new Button("Delete");
+    private final Button dupesBtn  = new Button("Duplicates");
+    private final ComboBox<ImportStrategy> importMode = new ComboBox<>();
+    private final Label status = new Label();
+
+    // Incremental loading: ask for the next page once a cell this close to the end is shown.
+    private static final int LOAD_MORE_THRESHOLD = 20;
+    private boolean hasMore = false;
+    private boolean loadingMore = false;
+    // The list shows duplicate groups (showDuplicates); the next regular load ends that.
+    private boolean reviewingDuplicates = false;
+
+    // Row posters; cells this many rows past either edge of the viewport are fetched ahead.
+    private static final int THUMB_W  = ThumbnailService.LIST_W;
+    private static final int THUMB_H  = ThumbnailService.LIST_H;
+    private static final int PREFETCH = 8;
+    private ThumbnailService thumbs;
+
+    // Search fires once typing pauses rather than on every keystroke.
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(200));
 
     public LibraryPane() {
         root.getStyleClass().addAll("panel", "sidebar");
@@ -53,6 +79,15 @@ public class LibraryPane {
         search.setPromptText("Search media...");
         search.getStyleClass().add("search");
         search.setPrefWidth(280);
+        searchDebounce.setOnFinished(e -> {
+            if (onSearch != null) onSearch.onSearch(searchText());
+        });
+        search.textProperty().addListener((obs, old, text) -> searchDebounce.playFromStart());
+        search.setOnAction(e -> {
+            // Enter searches immediately.
+            searchDebounce.stop();
+            if (onSearch != null) onSearch.onSearch(searchText());
+        });
 
         // ---- Tabs ----
         HBox tabs = new HBox(6, all, video, audio, image);
@@ -83,10 +118,39 @@ public class LibraryPane {
 
         list.setCellFactory(lv -> {
             ListCell<VideoAsset> cell = new ListCell<>() {
+                private final ImageView poster = new ImageView();
+                private final StackPane frame  = new StackPane(poster);
+                private ThumbnailService.Request pendingPoster;
+
+                {
+                    poster.setFitWidth(THUMB_W);
+                    poster.setFitHeight(THUMB_H);
+                    poster.setPreserveRatio(true);
+                    frame.getStyleClass().add("list-thumb");
+                    frame.setMinSize(THUMB_W, THUMB_H);
+                    frame.setPrefSize(THUMB_W, THUMB_H);
+                    setGraphicTextGap(10);
+                }
+
                 @Override protected void updateItem(VideoAsset item, boolean empty) {
                     super.updateItem(item, empty);
+                    // The cell is being reused: whatever it was waiting for belongs to another row.
+                    if (pendingPoster != null) pendingPoster.cancel();
+                    pendingPoster = null;
+                    poster.setImage(null);
+
                     setText((empty || item == null) ? null
                             : item.title() + "  •  " + item.prettyDuration());
+                    setGraphic((empty || item == null || thumbs == null) ? null : frame);
+                    if (empty || item == null) return;
+
+                    if (thumbs != null) {
+                        pendingPoster = thumbs.load(item.id(), THUMB_W, THUMB_H, img -> {
+                            if (getItem() == item) poster.setImage(img);
+                        });
+                        prefetchAround(getIndex());
+                    }
+                    if (getIndex() >= list.getItems().size() - LOAD_MORE_THRESHOLD) requestMore();
                 }
             };
 
@@ -117,9 +181,33 @@ public class LibraryPane {
         deleteBtn.getStyleClass().addAll("btn", "btn-secondary");
         deleteBtn.setOnAction(e -> deleteSelected());
 
-        HBox bottom = new HBox(deleteBtn);
-        bottom.setPadding(new Insets(0, 12, 12, 12));
-        root.setBottom(bottom);
+        dupesBtn.setGraphic(new FontIcon("fas-clone"));
+        dupesBtn.getStyleClass().addAll("btn", "btn-secondary");
+        dupesBtn.setTooltip(new Tooltip("Find re-encoded or trimmed copies of the same footage"));
+        dupesBtn.setOnAction(e -> {
+            if (onFindDuplicates != null) onFindDuplicates.run();
+        });
+
+        importMode.getItems().addAll(ImportStrategy.values());
+        importMode.getSelectionModel().select(ImportStrategy.COPY);
+        importMode.getStyleClass().add("combo-dark");
+        importMode.setTooltip(new Tooltip("How imported files are added to the library"));
+
+        Region bottomSpacer = new Region();
+        HBox.setHgrow(bottomSpacer, Priority.ALWAYS);
+
+        HBox bottom = new HBox(8, deleteBtn, dupesBtn, bottomSpacer, importMode);
+        bottom.setAlignment(Pos.CENTER_LEFT);
+
+        // Import / background job status; hidden while idle.
+        status.getStyleClass().add("muted");
+        status.setWrapText(true);
+        status.managedProperty().bind(status.visibleProperty());
+        status.setVisible(false);
+
+        VBox bottomBox = new VBox(6, status, bottom);
+        bottomBox.setPadding(new Insets(0, 12, 12, 12));
+        root.setBottom(bottomBox);
 
         // ---- OS drag-and-drop import ----
         root.setOnDragOver(e -> {
@@ -156,6 +244,67 @@ public class LibraryPane {
         if (chosen != null && onImport != null) onImport.onImport(chosen.toArray(new File[0]));
     }
 
+    private void prefetchAround(int index) {
+        var items = list.getItems();
+        for (int d = 1; d <= PREFETCH; d++) {
+            if (index + d < items.size()) thumbs.prefetch(items.get(index + d).id(), THUMB_W, THUMB_H);
+            if (index - d >= 0)           thumbs.prefetch(items.get(index - d).id(), THUMB_W, THUMB_H);
+        }
+    }
+
+    private void requestMore() {
+        if (!hasMore || loadingMore || onLoadMore == null) return;
+        loadingMore = true;
+        // Defer: this runs inside cell layout, which must not mutate the item list.
+        Platform.runLater(onLoadMore);
+    }
+
+    /** Replaces the list with a first page of results. */
+    public void setItems(List<VideoAsset> firstPage, boolean hasMore) {
+        this.hasMore = hasMore;
+        this.loadingMore = false;
+        if (reviewingDuplicates) {
+            reviewingDuplicates = false;
+            setStatus(null);
+        }
+        list.setItems(FXCollections.observableArrayList(firstPage));
+    }
+
+    /** Appends a following page; {@code hasMore} is false once the last page has arrived. */
+    public void appendItems(List<VideoAsset> page, boolean hasMore) {
+        this.hasMore = hasMore;
+        this.loadingMore = false;
+        list.getItems().addAll(page);
+    }
+
+    /**
+     * Replaces the list with duplicate groups for review: {@code rows} in group order, with the
+     * copies in {@code redundant} selected, so Delete removes them through the usual flow, and
+     * {@code summary} in the status line. The next search, refresh or load ends the review.
+     */
+    public void showDuplicates(List<VideoAsset> rows, Set<Long> redundant, String summary) {
+        setItems(rows, false);
+        reviewingDuplicates = true;
+        setStatus(summary);
+        list.getSelectionModel().clearSelection();
+        for (int i = 0; i < rows.size(); i++) {
+            if (redundant.contains(rows.get(i).id())) list.getSelectionModel().select(i);
+        }
+        list.scrollTo(0);
+    }
+
+    /** Current search box text, trimmed; empty when not searching. */
+    public String searchText() {
+        String t = search.getText();
+        return t == null ? "" : t.trim();
+    }
+
+    /** Id of the last loaded asset, the keyset cursor for the next page. */
+    public long lastLoadedId() {
+        var items = list.getItems();
+        return items.isEmpty() ? Long.MAX_VALUE : items.get(items.size() - 1).id();
+    }
+
     private void deleteSelected() {
         if (onDeleteMany == null) return;
         var ids = list.getSelectionModel().getSelectedItems()
@@ -168,14 +317,45 @@ public class LibraryPane {
     public interface ImportHandler    { void onImport(File[] files); }
     public interface AddRequested     { void onAdd(long assetId); }
     public interface DeleteManyHandler { void onDelete(List<Long> ids); }
+    public interface SearchHandler    { void onSearch(String text); }
 
     private ImportHandler     onImport;
     private AddRequested      onAddRequested;
     private DeleteManyHandler onDeleteMany;
+    private Runnable          onLoadMore;
+    private SearchHandler     onSearch;
+    private Runnable          onFindDuplicates;
 
     public void setOnImport(ImportHandler handler)      { this.onImport       = handler; }
     public void setOnAddRequested(AddRequested h)       { this.onAddRequested = h; }
     public void setOnDeleteMany(DeleteManyHandler h)    { this.onDeleteMany   = h; }
+    public void setOnLoadMore(Runnable r)               { this.onLoadMore     = r; }
+    public void setOnSearch(SearchHandler h)            { this.onSearch       = h; }
+    public void setOnFindDuplicates(Runnable r)         { this.onFindDuplicates = r; }
+
+    /** Enables row posters; without it rows are text only. */
+    public void setThumbnails(ThumbnailService thumbs) {
+        this.thumbs = thumbs;
+        list.refresh();
+    }
+
+    /** Drops cached posters of deleted assets, whose ids may be handed out again. */
+    public void forgetThumbnails(List<Long> ids) {
+        if (thumbs != null) for (Long id : ids) thumbs.forget(id);
+    }
+
+    /** Shows a one-line status under the list; null or blank hides it. */
+    public void setStatus(String text) {
+        boolean show = text != null && !text.isBlank();
+        status.setText(show ? text : null);
+        status.setVisible(show);
+    }
+
+    /** Import mode picked in the bottom bar; read when files are dropped or chosen. */
+    public ImportStrategy importStrategy() {
+        ImportStrategy s = importMode.getValue();
+        return s == null ? ImportStrategy.COPY : s;
+    }
 
     public BorderPane getRoot()            { return root; }
     public ListView<VideoAsset> list()     { return list; }
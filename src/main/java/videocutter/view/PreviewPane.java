@@ -40,6 +40,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongConsumer;
+import java.util.function.LongUnaryOperator;
 import org.kordamp.ikonli.javafx.FontIcon;
 
 /**
@@ -57,7 +58,8 @@ public class PreviewPane {
     // Scrub overlay (FFmpeg-extracted frame) goes on top of VLC view
     private final ImageView scrubOverlay = new ImageView();
 
-    private File currentFile;
+    private String currentMrl; // file path, or a loopback URL for database-backed media
+    private LongUnaryOperator keyframeBefore; // null: fall back to a fixed pre-seek window
 
     private final StackPane frame = new StackPane();
     private final Label emptyHint = new Label("Preview will appear here");
@@ -213,7 +215,11 @@ public class PreviewPane {
      * it seeks to initialMs and keeps playing. Used when advancing between clips.
      */
     public void loadVideoAndPlay(File file, long initialMs) {
-        currentFile = file;
+        loadVideoAndPlay(file.getAbsolutePath(), initialMs);
+    }
+
+    public void loadVideoAndPlay(String mrl, long initialMs) {
+        currentMrl = mrl;
         desiredMs = initialMs;
         mediaLengthMs = 1;
 
@@ -238,14 +244,19 @@ public class PreviewPane {
         keepPlayingAfterSeek = true;
         hideScrubWhenNearMs = initialMs;
 
-        vlcPlayer.media().play(file.getAbsolutePath());
+        vlcPlayer.media().play(mrl);
 
         startUiTimer();
         updateEmptyState();
     }
 
     public void loadVideo(File file, long initialMs) {
-        currentFile = file;
+        loadVideo(file.getAbsolutePath(), initialMs);
+    }
+
+    /** As {@link #loadVideo(File, long)} for anything VLC and ffmpeg can open: a path or an http URL. */
+    public void loadVideo(String mrl, long initialMs) {
+        currentMrl = mrl;
         desiredMs = initialMs;
         mediaLengthMs = 1;
 
@@ -276,7 +287,6 @@ public class PreviewPane {
         hideScrubWhenNearMs = -1;
 
         // Start playback so VLC pipeline initializes, then we'll pause on first playing event
-        String mrl = file.getAbsolutePath();
         vlcPlayer.media().play(mrl);
 
         // Restart the UI timer if it was stopped by a previous clear().
@@ -383,7 +393,7 @@ public class PreviewPane {
     }
 
     private void uiTick() {
-        if (vlcPlayer == null || currentFile == null) return;
+        if (vlcPlayer == null || currentMrl == null) return;
 
         boolean playing = vlcPlayer.status().isPlaying();
 
@@ -427,7 +437,7 @@ public class PreviewPane {
     }
 
     private void togglePlay() {
-        if (vlcPlayer == null || currentFile == null) return;
+        if (vlcPlayer == null || currentMrl == null) return;
 
         if (vlcPlayer.status().isPlaying()) {
             pause();
@@ -450,14 +460,14 @@ public class PreviewPane {
     }
 
     public void play() {
-        if (vlcPlayer == null || currentFile == null) return;
+        if (vlcPlayer == null || currentMrl == null) return;
         if (!vlcPlayer.status().isPlaying()) {
             togglePlay();
         }
     }
 
     public void pause() {
-        if (vlcPlayer == null || currentFile == null) return;
+        if (vlcPlayer == null || currentMrl == null) return;
         try {
             // Get the EXACT current time from the player right before pausing.
             long pauseTime = vlcPlayer.status().time();
@@ -480,7 +490,7 @@ public class PreviewPane {
     }
 
     private void updateEmptyState() {
-        boolean empty = (currentFile == null);
+        boolean empty = (currentMrl == null);
         emptyHint.setVisible(empty);
         bigPlay.setVisible(empty);
         timeLabel.setVisible(true);
@@ -489,13 +499,19 @@ public class PreviewPane {
 
     public void setInfo(String text) { clipInfo.setText(text); }
 
+    /**
+     * Keyframe lookup for the media about to be loaded (ms → last keyframe at or before it), so
+     * scrub frames decode from exactly the right place. Pass null when no index is available.
+     */
+    public void setKeyframeLookup(LongUnaryOperator keyframeBefore) { this.keyframeBefore = keyframeBefore; }
+
     /**
      * Hybrid seek logic:
      * - If playing → seek VLC directly
      * - If paused  → do NOT seek VLC repeatedly; use FFmpeg frame overlay instead
      */
     public void seekTo(long ms) {
-        if (currentFile == null) return;
+        if (currentMrl == null) return;
 
         long max = (mediaLengthMs > 1 ? mediaLengthMs : ms);
         long target = Math.max(0, Math.min(ms, max));
@@ -524,7 +540,8 @@ public class PreviewPane {
     }
 
     public void clear() {
-        currentFile = null;
+        currentMrl = null;
+        keyframeBefore = null;
         desiredMs = 0;
         mediaLengthMs = 1;
 
@@ -591,22 +608,23 @@ public class PreviewPane {
     // -----------------------
 
     private void requestScrubFrame(long ms) {
-        if (currentFile == null) return;
+        if (currentMrl == null) return;
 
         // Clear queued requests so we don't lag behind
         scrubExec.getQueue().clear();
 
         final long requestId = scrubRequestId.incrementAndGet();
-        final File file = currentFile;
+        final String mrl = currentMrl;
+        final LongUnaryOperator seekIndex = keyframeBefore;
         final long ts = ms;
 
         scrubExec.execute(() -> {
-            byte[] imgBytes = extractFrameJpeg(file, ts);
+            byte[] imgBytes = extractFrameJpeg(mrl, seekIndex, ts);
             if (imgBytes == null || imgBytes.length == 0) return;
 
             Platform.runLater(() -> {
                 if (requestId != scrubRequestId.get()) return; // stale
-                if (currentFile == null || !currentFile.equals(file)) return;
+                if (currentMrl == null || !currentMrl.equals(mrl)) return;
 
                 Image img = new Image(new ByteArrayInputStream(imgBytes), 0, 0, true, true);
                 scrubOverlay.setImage(img);
@@ -614,12 +632,12 @@ public class PreviewPane {
         });
     }
 
-    private byte[] extractFrameJpeg(File file, long ms) {
+    private byte[] extractFrameJpeg(String input, LongUnaryOperator keyframeBefore, long ms) {
         try {
             // Two-step seek:
-            //  - fast keyframe seek with -ss BEFORE -i
+            //  - fast seek with -ss BEFORE -i, to the preceding keyframe when the index is known
             //  - refine with -ss AFTER -i for frame accuracy
-            long preMs = Math.max(0, ms - 4000);
+            long preMs = keyframeBefore != null ? keyframeBefore.applyAsLong(ms) : Math.max(0, ms - 4000);
             long refineMs = ms - preMs;
 
             String preTs = msToTimestamp(preMs);
@@ -629,7 +647,7 @@ public class PreviewPane {
                     ffmpeg(),
                     "-hide_banner", "-loglevel", "error",
                     "-ss", preTs,
-                    "-i", file.getAbsolutePath(),
+                    "-i", input,
                     "-ss", refineTs,
                     "-frames:v", "1",
                     "-an", "-sn", "-dn",
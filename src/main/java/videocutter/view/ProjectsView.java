@@ -3,8 +3,10 @@ package videocutter.view;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -22,8 +24,16 @@ public class ProjectsView {
     private final Button openProject = new Button("Open Project");
     private final TilePane grid = new TilePane();
 
+    private static final int POSTER_W = ThumbnailService.CARD_W;
+    private static final int POSTER_H = ThumbnailService.CARD_H;
+
     private Runnable onNewProject;
     private Runnable onOpenProject;
+    private OpenRecentHandler onOpenRecent;
+
+    private ThumbnailService thumbs;
+    // Poster loads of the cards on screen; cancelled when the cards are replaced.
+    private final List<ThumbnailService.Request> posterLoads = new ArrayList<>();
 
     public ProjectsView() {
         root.getStyleClass().addAll("app-root", "projects-root");
@@ -82,13 +92,35 @@ public class ProjectsView {
     public void setOnNewProject(Runnable r) { this.onNewProject = r; }
     public void setOnOpenProject(Runnable r) { this.onOpenProject = r; }
 
+    public interface OpenRecentHandler { void onOpen(Path file); }
+    public void setOnOpenRecent(OpenRecentHandler h) { this.onOpenRecent = h; }
+
+    /** Enables card posters; cards set before this stay blank. */
+    public void setThumbnails(ThumbnailService thumbs) { this.thumbs = thumbs; }
+
     public BorderPane getRoot() { return root; }
 
-    public record ProjectCardModel(String title, String status, String metaLeft, String metaRight, String badge) {}
+    /**
+     * @param file the project file the card opens
+     * @param posterAssetId asset whose thumbnail fills the card, 0 for none
+     */
+    public record ProjectCardModel(String title, String status, String metaLeft, String metaRight, String badge,
+                                   Path file, long posterAssetId) {}
 
     public void setCards(List<ProjectCardModel> cards) {
+        for (ThumbnailService.Request r : posterLoads) r.cancel();
+        posterLoads.clear();
         grid.getChildren().clear();
-        for (ProjectCardModel m : cards) grid.getChildren().add(new ProjectCard(m));
+        for (ProjectCardModel m : cards) {
+            ProjectCard card = new ProjectCard(m);
+            card.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && m.file() != null && onOpenRecent != null) onOpenRecent.onOpen(m.file());
+            });
+            if (thumbs != null && m.posterAssetId() > 0) {
+                posterLoads.add(thumbs.load(m.posterAssetId(), POSTER_W, POSTER_H, card.poster::setImage));
+            }
+            grid.getChildren().add(card);
+        }
     }
 
     private ToggleButton pill(String text, boolean selected) {
@@ -99,16 +131,9 @@ public class ProjectsView {
         return b;
     }
 
-    private static List<ProjectCardModel> sampleCards() {
-        List<ProjectCardModel> out = new ArrayList<>();
-        out.add(new ProjectCardModel("Summer Travel Vlog", "editing", "1080p • 16:9", "Feb 10, 2026", "3:05"));
-        out.add(new ProjectCardModel("Product Launch Promo", "completed", "4K • 16:9", "Feb 10, 2026", "1:00"));
-        out.add(new ProjectCardModel("Instagram Reel - Recipe", "draft", "1080p • 9:16", "Feb 10, 2026", "0:45"));
-        out.add(new ProjectCardModel("Podcast Episode 12", "editing", "720p • 16:9", "Feb 10, 2026", "53:20"));
-        return out;
-    }
-
     static class ProjectCard extends VBox {
+        final ImageView poster = new ImageView();
+
         ProjectCard(ProjectCardModel m) {
             getStyleClass().add("project-card");
             setPrefWidth(300);
@@ -118,6 +143,11 @@ public class ProjectsView {
             thumb.getStyleClass().add("card-thumb");
             thumb.setPrefHeight(168);
 
+            poster.setFitWidth(300);
+            poster.setFitHeight(168);
+            poster.setPreserveRatio(true);
+            thumb.getChildren().add(poster);
+
             Label badge = new Label(m.badge());
             badge.getStyleClass().add("duration-badge");
             StackPane.setAlignment(badge, Pos.BOTTOM_RIGHT);
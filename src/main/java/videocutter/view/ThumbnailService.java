@@ -0,0 +1,225 @@
+package videocutter.view;
+
+import javafx.scene.image.Image;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import videocutter.model.ThumbnailStore;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.Consumer;
+
+/**
+ * Asset thumbnails for list cells and cards, in two tiers: decoded images in memory, least
+ * recently used dropped first once they exceed a byte budget, over poster files on disk that
+ * a {@link Source} finds or cuts.
+ *
+ * Loads run on a couple of worker threads. Visible cells jump the queue (newest first, since
+ * that is what a fast scroll lands on); prefetches wait behind them. A cell that scrolls away
+ * cancels its request, and a job nobody waits for any more is dropped before it starts.
+ * All public methods except {@link #close()} are meant for the UI thread.
+ */
+public final class ThumbnailService implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ThumbnailService.class);
+
+    /** Library row poster size; the analysis pass cuts these ahead of time. */
+    public static final int LIST_W = ThumbnailStore.LIST_W;
+    public static final int LIST_H = ThumbnailStore.LIST_H;
+    /** Project card poster size. */
+    public static final int CARD_W = ThumbnailStore.CARD_W;
+    public static final int CARD_H = ThumbnailStore.CARD_H;
+
+    /** The disk tier: path of a poster fitted into width x height, or null if there can't be one. */
+    public interface Source {
+        Path thumbnail(long assetId, int width, int height) throws Exception;
+    }
+
+    /** A pending load; {@link #cancel()} is safe to call at any time, any number of times. */
+    public interface Request {
+        void cancel();
+    }
+
+    private record Key(long assetId, int width, int height) {}
+
+    private final class Job {
+        final Key key;
+        final List<Consumer<Image>> waiting = new ArrayList<>();
+        boolean prefetch;
+        boolean started;
+        boolean cancelled;
+
+        Job(Key key) { this.key = key; }
+    }
+
+    private static final Request DONE = () -> {};
+
+    private final Source source;
+    private final long budgetBytes;
+    private final Executor callbacks;
+    private final BlockingDeque<Job> queue = new LinkedBlockingDeque<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    // Guarded by this. Access-ordered: iteration starts at the least recently used image.
+    private final Map<Key, Image> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<Key, Job> pending = new HashMap<>();
+    // Keys that have no thumbnail (audio-only assets, unreadable files); not retried this session.
+    private final Map<Key, Boolean> absent = new HashMap<>();
+    private long memoryBytes;
+
+    /**
+     * @param budgetBytes memory tier size, counted as 4 bytes per decoded pixel
+     * @param callbacks where load callbacks run (the app passes {@code Platform::runLater})
+     */
+    public ThumbnailService(Source source, long budgetBytes, Executor callbacks, int threads) {
+        this.source = source;
+        this.budgetBytes = budgetBytes;
+        this.callbacks = callbacks;
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::work, "thumbnails-" + (i + 1));
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+    }
+
+    /** The image if it is already in memory; never blocks. */
+    public synchronized Image cached(long assetId, int width, int height) {
+        return memory.get(new Key(assetId, width, height));
+    }
+
+    /**
+     * Loads a thumbnail for a visible cell; {@code onLoaded} runs on the callback executor once
+     * it is ready, unless the request was cancelled first. Assets without one never call back.
+     */
+    public Request load(long assetId, int width, int height, Consumer<Image> onLoaded) {
+        Key key = new Key(assetId, width, height);
+        Job job;
+        synchronized (this) {
+            Image img = memory.get(key);
+            if (img != null) {
+                onLoaded.accept(img);
+                return DONE;
+            }
+            if (absent.containsKey(key)) return DONE;
+            job = pending.get(key);
+            if (job == null) {
+                job = new Job(key);
+                pending.put(key, job);
+            }
+            job.prefetch = false;
+            job.waiting.add(onLoaded);
+            // Move it (or a queued prefetch of the same image) to the front; a running one just gains a waiter.
+            if (!job.started) {
+                queue.remove(job);
+                queue.offerFirst(job);
+            }
+        }
+        Job j = job;
+        return () -> cancel(j, onLoaded);
+    }
+
+    /** Queues a thumbnail for a cell about to scroll into view, behind every visible one. */
+    public void prefetch(long assetId, int width, int height) {
+        Key key = new Key(assetId, width, height);
+        Job job;
+        synchronized (this) {
+            if (memory.containsKey(key) || absent.containsKey(key) || pending.containsKey(key)) return;
+            job = new Job(key);
+            job.prefetch = true;
+            pending.put(key, job);
+        }
+        queue.offerLast(job);
+    }
+
+    private synchronized void cancel(Job job, Consumer<Image> onLoaded) {
+        job.waiting.remove(onLoaded);
+        if (job.waiting.isEmpty() && !job.prefetch) {
+            job.cancelled = true;
+            queue.remove(job);
+            pending.remove(job.key, job);
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Job job;
+            try {
+                job = queue.takeFirst();
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (this) {
+                if (job.cancelled) continue;
+                job.started = true;
+            }
+
+            Image img = null;
+            try {
+                Path file = source.thumbnail(job.key.assetId(), job.key.width(), job.key.height());
+                if (file != null) {
+                    // Decoded here, at display size, so the UI thread only ever gets a finished image.
+                    img = new Image(file.toUri().toString(), job.key.width(), job.key.height(), true, true, false);
+                    if (img.isError()) img = null;
+                }
+            } catch (Exception e) {
+                LOG.debug("Thumbnail for asset {} failed: {}", job.key.assetId(), e.getMessage());
+            }
+
+            List<Consumer<Image>> notify;
+            synchronized (this) {
+                pending.remove(job.key, job);
+                if (img == null) {
+                    absent.put(job.key, Boolean.TRUE);
+                    continue;
+                }
+                put(job.key, img);
+                notify = job.cancelled ? List.of() : new ArrayList<>(job.waiting);
+            }
+            if (notify.isEmpty()) continue;
+            Image done = img;
+            callbacks.execute(() -> {
+                for (Consumer<Image> c : notify) c.accept(done);
+            });
+        }
+    }
+
+    private void put(Key key, Image img) {
+        Image old = memory.put(key, img);
+        if (old != null) memoryBytes -= bytes(old);
+        memoryBytes += bytes(img);
+        Iterator<Map.Entry<Key, Image>> it = memory.entrySet().iterator();
+        while (memoryBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<Key, Image> eldest = it.next();
+            if (eldest.getKey().equals(key)) continue;
+            memoryBytes -= bytes(eldest.getValue());
+            it.remove();
+        }
+    }
+
+    private static long bytes(Image img) {
+        return (long) Math.ceil(img.getWidth()) * (long) Math.ceil(img.getHeight()) * 4;
+    }
+
+    /** Forgets an asset's images, e.g. after it was deleted. */
+    public synchronized void forget(long assetId) {
+        memory.entrySet().removeIf(e -> {
+            if (e.getKey().assetId() != assetId) return false;
+            memoryBytes -= bytes(e.getValue());
+            return true;
+        });
+        absent.keySet().removeIf(k -> k.assetId() == assetId);
+    }
+
+    @Override
+    public void close() {
+        for (Thread t : workers) t.interrupt();
+    }
+}
@@ -3,21 +3,37 @@ package videocutter.view;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.Image;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.input.TransferMode;
 import javafx.scene.layout.*;
+import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
 import org.kordamp.ikonli.javafx.FontIcon;
+import videocutter.model.Filmstrip;
 import videocutter.model.TimelineClip;
+import videocutter.model.WaveformPeaks;
 
 import java.util.ArrayList;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 public class TimelinePane {
     private final BorderPane root = new BorderPane();
@@ -25,6 +41,7 @@ public class TimelinePane {
     private final Button cutBtn    = iconBtn("fas-cut");
     private final Button deleteBtn = iconBtn("fas-trash-alt");
     private final Button linkBtn   = iconBtn("fas-link");
+    private final Button scenesBtn = iconBtn("fas-film");
 
     private final Label  zoomLabel = new Label("100%");
     private final Button zoomOut   = iconBtn("fas-search-minus");
@@ -44,6 +61,17 @@ public class TimelinePane {
 
     private static final double X0     = 10;
     private static final double GAP_PX = 2;
+    // Clicks this close to a scene cut land on it; hold Alt to place freely.
+    private static final double SNAP_PX = 6;
+
+    // Audio lane band below the separator; the clip purple from theme.css, a little lighter.
+    private static final double AUDIO_Y    = 76;
+    private static final double AUDIO_H    = 58;
+    private static final Color  WAVE_COLOR = Color.rgb(124, 92, 255, 0.75);
+
+    // Filmstrip frame width the density is picked for; frames are drawn at the clip's height.
+    private static final double STRIP_FRAME_PX = 60;
+    private static final int    SHEET_CACHE    = 32;
 
     private final Line    laneSep      = new Line(0, 70, 5000, 70);
     private final Polygon playheadTri  = new Polygon(0, 0, 10, 0, 5, 7);
@@ -55,11 +83,31 @@ public class TimelinePane {
     private List<TimelineClip>   lastClips  = List.of();
     private TimelineClip         selectedClip = null;
 
+    // Scene-cut times (source ms) per asset; requested from the controller as clips appear.
+    private final Map<Long, long[]> sceneCuts      = new HashMap<>();
+    private final Set<Long>         sceneRequested = new HashSet<>();
+
+    // Audio peaks per asset, drawn for the visible window only into a viewport-sized canvas.
+    private final Map<Long, WaveformPeaks> waveforms     = new HashMap<>();
+    private final Set<Long>                waveRequested = new HashSet<>();
+    private final Canvas                   waveCanvas    = new Canvas();
+
+    // Filmstrips per asset by interval, and their decoded sprite sheets (most recently drawn kept).
+    private final Map<Long, TreeMap<Long, Filmstrip>> filmstrips     = new HashMap<>();
+    private final Map<Long, Set<Long>>                stripRequested = new HashMap<>();
+    private final Map<Path, Image> sheets = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Image> eldest) {
+            return size() > SHEET_CACHE;
+        }
+    };
+
     public TimelinePane() {
         root.getStyleClass().addAll("panel", "timeline");
         root.setPadding(new Insets(10, 12, 12, 12));
 
-        for (Button b : new Button[]{cutBtn, deleteBtn, linkBtn, zoomOut, zoomIn}) {
+        scenesBtn.setTooltip(new Tooltip("Split the selected clip at scene changes"));
+        for (Button b : new Button[]{cutBtn, scenesBtn, deleteBtn, linkBtn, zoomOut, zoomIn}) {
             b.getStyleClass().addAll("btn", "icon-btn");
             b.setFocusTraversable(false);
         }
@@ -68,7 +116,7 @@ public class TimelinePane {
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
 
-        HBox tools = new HBox(8, cutBtn, deleteBtn, linkBtn, spacer, zoomOut, zoomLabel, zoomIn);
+        HBox tools = new HBox(8, cutBtn, scenesBtn, deleteBtn, linkBtn, spacer, zoomOut, zoomLabel, zoomIn);
         tools.setAlignment(Pos.CENTER_LEFT);
         tools.setPadding(new Insets(0, 0, 10, 0));
         root.setTop(tools);
@@ -94,6 +142,11 @@ public class TimelinePane {
         laneSep.getStyleClass().add("lane-sep");
         lanes.getChildren().add(laneSep);
 
+        waveCanvas.setMouseTransparent(true);
+        waveCanvas.setLayoutY(AUDIO_Y);
+        waveCanvas.setHeight(AUDIO_H);
+        lanes.getChildren().add(waveCanvas);
+
         playheadTri.getStyleClass().add("playhead-tri");
         playheadTri.setMouseTransparent(true);
 
@@ -125,6 +178,9 @@ public class TimelinePane {
             e.consume();
         });
 
+        scroller.hvalueProperty().addListener((obs, o, n) -> drawVisible());
+        scroller.viewportBoundsProperty().addListener((obs, o, n) -> drawVisible());
+
         // DnD onto lanes
         lanes.setOnDragOver(e -> {
             if (e.getDragboard().hasString()) e.acceptTransferModes(TransferMode.COPY);
@@ -163,6 +219,7 @@ public class TimelinePane {
 
         Hit hit = hitTestByXAndPick(x, e);
         if (hit == null) return;
+        if (!e.isAltDown()) hit = snapToSceneCut(hit);
 
         selectClip(hit.node.clip);
         setPlayheadTimelineMs(hit.timelineMs);
@@ -175,17 +232,54 @@ public class TimelinePane {
 
     public interface DropHandler  { void onDrop(long assetId); }
     public interface ScrubHandler { void onScrub(TimelineClip clip, long sourceMs, long timelineMs); }
+    public interface SceneCutsHandler { void onSceneCutsNeeded(Set<Long> assetIds); }
+    public interface WaveformHandler  { void onWaveformNeeded(Set<Long> assetIds); }
+    public interface FilmstripHandler { void onFilmstripNeeded(long intervalMs, Set<Long> assetIds); }
 
-    private DropHandler  onDrop;
-    private ScrubHandler onScrub;
+    private DropHandler      onDrop;
+    private ScrubHandler     onScrub;
+    private SceneCutsHandler onSceneCutsNeeded;
+    private WaveformHandler  onWaveformNeeded;
+    private FilmstripHandler onFilmstripNeeded;
 
     public void setOnDrop(DropHandler h)   { onDrop  = h; }
     public void setOnScrub(ScrubHandler h) { onScrub = h; }
+    public void setOnSceneCutsNeeded(SceneCutsHandler h) { onSceneCutsNeeded = h; }
+    public void setOnWaveformNeeded(WaveformHandler h)   { onWaveformNeeded = h; }
+    public void setOnFilmstripNeeded(FilmstripHandler h) { onFilmstripNeeded = h; }
 
     // ---- public API ----
 
     public BorderPane getRoot() { return root; }
     public Button cutBtn()      { return cutBtn; }
+    public Button scenesBtn()   { return scenesBtn; }
+
+    /** Scene cuts (source ms, ascending) for the given assets; drawn on their clips and used for snapping. */
+    public void setSceneCuts(Map<Long, long[]> cuts) {
+        sceneCuts.putAll(cuts);
+        setClips(lastClips);
+    }
+
+    /** Forgets all scene cuts (e.g. after new analysis) so they are requested again. */
+    public void invalidateSceneCuts() {
+        sceneCuts.clear();
+        sceneRequested.clear();
+        setClips(lastClips);
+    }
+
+    /** Audio peaks for one asset, drawn under its clips in the audio lane. */
+    public void setWaveform(long assetId, WaveformPeaks peaks) {
+        if (peaks == null) return;
+        waveforms.put(assetId, peaks);
+        drawWaveforms();
+    }
+
+    /** A filmstrip for one asset; its clips draw from it until one at a closer density arrives. */
+    public void setFilmstrip(long assetId, Filmstrip strip) {
+        if (strip == null) return;
+        filmstrips.computeIfAbsent(assetId, k -> new TreeMap<>()).put(strip.intervalMs(), strip);
+        drawFilmstrips();
+    }
 
     public void selectClip(TimelineClip clip) {
         this.selectedClip = clip;
@@ -212,14 +306,26 @@ public class TimelinePane {
         double x             = X0;
         double yVideo        = 34;
         long   accTimelineMs = 0;
+        Set<Long> missingCuts = new HashSet<>();
+        Set<Long> missingWaves = new HashSet<>();
+        Set<Long> missingStrips = new HashSet<>();
+        long stripInterval = stripInterval();
+        Set<Long> stripsAsked = stripRequested.computeIfAbsent(stripInterval, k -> new HashSet<>());
 
         for (TimelineClip c : clips) {
             long   durMs = Math.max(0, c.endMs() - c.startMs());
             double w     = Math.max(40, (durMs / 1000.0) * pxPerSecond);
 
-            ClipNode node = new ClipNode(c, accTimelineMs, durMs);
+            long[] cuts = sceneCuts.get(c.assetId());
+            if (cuts == null && sceneRequested.add(c.assetId())) missingCuts.add(c.assetId());
+            if (!waveforms.containsKey(c.assetId()) && waveRequested.add(c.assetId())) missingWaves.add(c.assetId());
+            TreeMap<Long, Filmstrip> strips = filmstrips.get(c.assetId());
+            if ((strips == null || !strips.containsKey(stripInterval)) && stripsAsked.add(c.assetId())) missingStrips.add(c.assetId());
+
+            ClipNode node = new ClipNode(c, accTimelineMs, durMs, cuts, w);
             node.relocate(x, yVideo);
             node.setPrefWidth(w);
+            node.heightProperty().addListener((obs, o, n) -> drawFilmstrip(node));
 
             lanes.getChildren().add(node);
             clipNodes.add(node);
@@ -234,9 +340,148 @@ public class TimelinePane {
         laneSep.setEndX(totalW);
 
         drawRuler(totalW);
+        drawVisible();
 
         if (selectedClip != null) selectClip(selectedClip);
         updatePlayheadVisualFromTimelineMs();
+
+        if (!missingCuts.isEmpty() && onSceneCutsNeeded != null) onSceneCutsNeeded.onSceneCutsNeeded(missingCuts);
+        if (!missingWaves.isEmpty() && onWaveformNeeded != null) onWaveformNeeded.onWaveformNeeded(missingWaves);
+        if (!missingStrips.isEmpty() && onFilmstripNeeded != null) onFilmstripNeeded.onFilmstripNeeded(stripInterval, missingStrips);
+    }
+
+    /** Redraws everything that only paints the visible window: filmstrips and the audio lane. */
+    private void drawVisible() {
+        drawFilmstrips();
+        drawWaveforms();
+    }
+
+    private double scrollOffsetPx() {
+        double viewW = scroller.getViewportBounds().getWidth();
+        return scroller.getHvalue() * Math.max(0, lanes.getPrefWidth() - viewW);
+    }
+
+    // ---- filmstrips ----
+
+    /** Filmstrip density for the current zoom: about one frame per {@value #STRIP_FRAME_PX} px. */
+    private long stripInterval() {
+        return Filmstrip.intervalFor(STRIP_FRAME_PX / pxPerSecond * 1000);
+    }
+
+    /** The asset's strip closest to the current density, or null if it has none yet. */
+    private Filmstrip stripFor(long assetId) {
+        TreeMap<Long, Filmstrip> strips = filmstrips.get(assetId);
+        if (strips == null || strips.isEmpty()) return null;
+        long want = stripInterval();
+        Map.Entry<Long, Filmstrip> lo = strips.floorEntry(want);
+        Map.Entry<Long, Filmstrip> hi = strips.ceilingEntry(want);
+        if (lo == null) return hi.getValue();
+        if (hi == null) return lo.getValue();
+        return want - lo.getKey() <= hi.getKey() - want ? lo.getValue() : hi.getValue();
+    }
+
+    private void drawFilmstrips() {
+        for (ClipNode n : clipNodes) drawFilmstrip(n);
+    }
+
+    /**
+     * Paints the frames covering the visible part of one clip onto its strip canvas, straight
+     * from the sprite sheets; slots are aligned to the clip start so frames don't swim on scroll.
+     */
+    private void drawFilmstrip(ClipNode n) {
+        Canvas c = n.strip;
+        Filmstrip strip = stripFor(n.clip.assetId());
+        double h      = n.getHeight();
+        double cw     = n.getPrefWidth();
+        double offset = scrollOffsetPx();
+        double from   = Math.max(0, offset - n.getLayoutX());
+        double to     = Math.min(cw, offset + scroller.getViewportBounds().getWidth() - n.getLayoutX());
+        if (strip == null || h <= 0 || to <= from || n.timelineDurMs <= 0) {
+            c.setWidth(0);
+            return;
+        }
+
+        c.setLayoutX(from);
+        c.setWidth(to - from);
+        c.setHeight(h);
+        GraphicsContext g = c.getGraphicsContext2D();
+        g.clearRect(0, 0, c.getWidth(), h);
+
+        double frameW  = h * strip.tileW() / strip.tileH();
+        double msPerPx = n.timelineDurMs / cw;
+        for (double x = Math.floor(from / frameW) * frameW; x < to; x += frameW) {
+            int frame = strip.frameAt(n.clip.startMs() + (long) ((x + frameW / 2) * msPerPx));
+            Image sheet = sheet(strip.sheetOf(frame));
+            if (sheet == null) continue;
+            g.drawImage(sheet, strip.tileX(frame), strip.tileY(frame), strip.tileW(), strip.tileH(),
+                    x - from, 0, frameW, h);
+        }
+    }
+
+    /** A decoded sprite sheet, or null while it is still loading (the strips redraw once it is in). */
+    private Image sheet(Path file) {
+        Image img = sheets.get(file);
+        if (img == null) {
+            img = new Image(file.toUri().toString(), true);
+            img.progressProperty().addListener((obs, o, p) -> {
+                if (p.doubleValue() >= 1) drawFilmstrips();
+            });
+            sheets.put(file, img);
+        }
+        return img.getProgress() >= 1 && !img.isError() ? img : null;
+    }
+
+    // ---- audio lane ----
+
+    /**
+     * Redraws the audio lane for the visible window only. Each pixel column reads the coarsest
+     * pyramid level whose buckets fit in it, so the cost depends on the viewport width, not on
+     * the zoom or the length of the media.
+     */
+    private void drawWaveforms() {
+        double offset = scrollOffsetPx();
+        double w      = Math.max(0, Math.min(scroller.getViewportBounds().getWidth(), lanes.getPrefWidth()));
+
+        waveCanvas.setLayoutX(offset);
+        waveCanvas.setWidth(w);
+        GraphicsContext g = waveCanvas.getGraphicsContext2D();
+        g.clearRect(0, 0, waveCanvas.getWidth(), AUDIO_H);
+        if (w <= 0 || waveforms.isEmpty()) return;
+
+        g.setFill(WAVE_COLOR);
+        double mid   = AUDIO_H / 2;
+        double scale = mid / 128.0;
+
+        for (ClipNode n : clipNodes) {
+            WaveformPeaks peaks = waveforms.get(n.clip.assetId());
+            double x0 = n.getLayoutX();
+            double cw = n.getPrefWidth();
+            if (peaks == null || n.timelineDurMs <= 0 || x0 + cw < offset || x0 > offset + w) continue;
+
+            double msPerPx = n.timelineDurMs / cw;
+            int    level   = peaks.levelFor(msPerPx);
+            long   bucket  = peaks.bucketMs(level);
+            int    count   = peaks.count(level);
+
+            int from = (int) Math.max(Math.floor(x0), Math.floor(offset));
+            int to   = (int) Math.min(Math.ceil(x0 + cw), Math.ceil(offset + w));
+            for (int px = from; px < to; px++) {
+                double srcMs = n.clip.startMs() + (px - x0) * msPerPx;
+                int i0 = (int) (srcMs / bucket);
+                int i1 = (int) Math.min(count - 1, Math.max(i0, (long) Math.ceil((srcMs + msPerPx) / bucket) - 1));
+                if (i0 < 0 || i0 >= count) continue;
+
+                int lo = Byte.MAX_VALUE;
+                int hi = Byte.MIN_VALUE;
+                for (int i = i0; i <= i1; i++) {
+                    lo = Math.min(lo, peaks.min(level, i));
+                    hi = Math.max(hi, peaks.max(level, i));
+                }
+                double top = mid - (hi + 1) * scale;
+                double h   = Math.max(1, (hi - lo + 1) * scale);
+                g.fillRect(px - offset, top, 1, h);
+            }
+        }
     }
 
     // ---- ruler ----
@@ -339,14 +584,33 @@ public class TimelinePane {
 
     private record Hit(ClipNode node, long timelineMs, long sourceMs) {}
 
+    /** Moves the hit onto the nearest scene cut of its clip if one is within {@link #SNAP_PX}. */
+    private Hit snapToSceneCut(Hit hit) {
+        long[] cuts = sceneCuts.get(hit.node.clip.assetId());
+        if (cuts == null || cuts.length == 0) return hit;
+
+        long tolerance = (long) (SNAP_PX / pxPerSecond * 1000);
+        int  i         = Arrays.binarySearch(cuts, hit.sourceMs);
+        if (i < 0) i = -i - 1;
+        long best = -1;
+        for (int j = Math.max(0, i - 1); j <= Math.min(cuts.length - 1, i); j++) {
+            long d = Math.abs(cuts[j] - hit.sourceMs);
+            if (d <= tolerance && (best < 0 || d < Math.abs(best - hit.sourceMs))) best = cuts[j];
+        }
+        TimelineClip c = hit.node.clip;
+        if (best < c.startMs() || best > c.endMs()) return hit;
+        return new Hit(hit.node, hit.node.timelineStartMs + (best - c.startMs()), best);
+    }
+
     // ---- inner classes ----
 
     static class ClipNode extends StackPane {
         final TimelineClip clip;
         final long         timelineStartMs;
         final long         timelineDurMs;
+        final Canvas       strip = new Canvas();
 
-        ClipNode(TimelineClip clip, long timelineStartMs, long timelineDurMs) {
+        ClipNode(TimelineClip clip, long timelineStartMs, long timelineDurMs, long[] sceneCuts, double widthPx) {
             this.clip            = clip;
             this.timelineStartMs = timelineStartMs;
             this.timelineDurMs   = timelineDurMs;
@@ -354,6 +618,37 @@ public class TimelinePane {
             getStyleClass().add("timeline-clip");
             setPadding(new Insets(8, 10, 8, 10));
 
+            // Filmstrip behind everything, full-bleed and clipped to the clip's rounded corners.
+            // Zero pref size so the canvas never feeds back into the clip's own layout.
+            Pane film = new Pane(strip);
+            film.getStyleClass().add("clip-strip");
+            film.setMouseTransparent(true);
+            film.setPrefSize(0, 0);
+            StackPane.setMargin(film, new Insets(-8, -10, -8, -10));
+            Rectangle round = new Rectangle();
+            round.widthProperty().bind(film.widthProperty());
+            round.heightProperty().bind(film.heightProperty());
+            round.setArcWidth(24);
+            round.setArcHeight(24);
+            film.setClip(round);
+            getChildren().add(film);
+
+            if (sceneCuts != null && sceneCuts.length > 0 && timelineDurMs > 0) {
+                // Full-bleed overlay: cancel the padding so tick x matches the hit-test maths.
+                Pane marks = new Pane();
+                marks.setMouseTransparent(true);
+                StackPane.setMargin(marks, new Insets(-8, -10, -8, -10));
+                for (long cut : sceneCuts) {
+                    if (cut <= clip.startMs() || cut >= clip.endMs()) continue;
+                    double x = (cut - clip.startMs()) / (double) timelineDurMs * widthPx;
+                    Line tick = new Line(x, 0, x, 0);
+                    tick.endYProperty().bind(marks.heightProperty());
+                    tick.getStyleClass().add("scene-cut");
+                    marks.getChildren().add(tick);
+                }
+                getChildren().add(marks);
+            }
+
             Label label = new Label(clip.display());
             label.getStyleClass().add("clip-text");
             getChildren().add(label);
@@ -0,0 +1,67 @@
+package videocutter.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AssetCacheTest {
+
+    private static VideoAsset asset(long id) {
+        return new VideoAsset(id, "clip " + id, 1_000, 1920, 1080, Instant.EPOCH);
+    }
+
+    @Test
+    void putsFromAnUnchangedEpochAreKept() {
+        AssetCache cache = new AssetCache(8);
+        long epoch = cache.epoch();
+        cache.putAsset(asset(1), epoch);
+        cache.putPath(1, Path.of("/vault/a.mp4"), epoch);
+
+        assertEquals(asset(1), cache.asset(1));
+        assertEquals(Path.of("/vault/a.mp4"), cache.path(1));
+    }
+
+    @Test
+    void aReadThatStartedBeforeADeleteIsNotCached() {
+        AssetCache cache = new AssetCache(8);
+        long epoch = cache.epoch();      // reader starts
+        cache.invalidate(List.of(1L));   // the row is deleted meanwhile
+        cache.putAsset(asset(1), epoch); // reader finishes with what it saw
+        cache.putPath(1, Path.of("/vault/a.mp4"), epoch);
+
+        assertNull(cache.asset(1));
+        assertNull(cache.path(1));
+    }
+
+    @Test
+    void clearAndPathInvalidationAlsoStartANewEpoch() {
+        AssetCache cache = new AssetCache(8);
+        long before = cache.epoch();
+        cache.invalidatePath(2);
+        cache.putPath(2, Path.of("/vault/b.mp4"), before);
+        assertNull(cache.path(2));
+
+        long mid = cache.epoch();
+        cache.clear();
+        cache.putAsset(asset(2), mid);
+        assertNull(cache.asset(2));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryGoesFirst() {
+        AssetCache cache = new AssetCache(2);
+        long epoch = cache.epoch();
+        cache.putAsset(asset(1), epoch);
+        cache.putAsset(asset(2), epoch);
+        cache.asset(1);
+        cache.putAsset(asset(3), epoch);
+
+        assertEquals(asset(1), cache.asset(1));
+        assertNull(cache.asset(2));
+    }
+}
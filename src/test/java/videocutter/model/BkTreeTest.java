@@ -0,0 +1,73 @@
+package videocutter.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BkTreeTest {
+
+    private static List<Long> search(BkTree tree, long hash, int radius) {
+        List<Long> out = new ArrayList<>();
+        tree.search(hash, radius, out::add);
+        out.sort(null);
+        return out;
+    }
+
+    @Test
+    void emptyTreeFindsNothing() {
+        assertTrue(search(new BkTree(), 0L, 64).isEmpty());
+    }
+
+    @Test
+    void equalHashesShareANodeAndReportEveryOwner() {
+        BkTree tree = new BkTree();
+        tree.add(0xF0F0L, 1);
+        tree.add(0xF0F0L, 2);
+        tree.add(0xF0F0L, 3);
+        tree.add(0xF0F1L, 4);
+
+        assertEquals(List.of(1L, 2L, 3L), search(tree, 0xF0F0L, 0));
+        assertEquals(List.of(1L, 2L, 3L, 4L), search(tree, 0xF0F0L, 1));
+    }
+
+    @Test
+    void radiusIsInclusive() {
+        BkTree tree = new BkTree();
+        tree.add(0L, 1);
+        tree.add(0xFFL, 2);         // 8 bits away
+        tree.add(0x1FFL, 3);        // 9 bits away
+
+        assertEquals(List.of(1L, 2L), search(tree, 0L, 8));
+        assertEquals(List.of(2L, 3L), search(tree, 0x1FFL, 1));
+        assertEquals(List.of(1L, 2L, 3L), search(tree, -1L, 64));
+    }
+
+    @Test
+    void matchesALinearScan() {
+        Random rnd = new Random(42);
+        long[] hashes = new long[2000];
+        BkTree tree = new BkTree();
+        for (int i = 0; i < hashes.length; i++) {
+            // Clusters of near-identical hashes, like frames sampled from the same shot.
+            hashes[i] = i % 10 == 0 ? rnd.nextLong() : hashes[i - 1] ^ (1L << rnd.nextInt(64));
+            tree.add(hashes[i], i);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            long query = q % 2 == 0 ? hashes[rnd.nextInt(hashes.length)] ^ rnd.nextLong() & rnd.nextLong() & rnd.nextLong()
+                                    : rnd.nextLong();
+            for (int radius : new int[]{0, 4, 8, 16}) {
+                List<Long> expected = new ArrayList<>();
+                for (int i = 0; i < hashes.length; i++) {
+                    if (PerceptualHash.distance(query, hashes[i]) <= radius) expected.add((long) i);
+                }
+                assertEquals(expected, search(tree, query, radius), "query " + Long.toHexString(query) + " r=" + radius);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package videocutter.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateFinderTest {
+
+    /** {@code n} frame hashes far apart from each other (and from any other call's, in practice). */
+    private static long[] frames(Random rnd, int n) {
+        long[] out = new long[n];
+        for (int i = 0; i < n; i++) out[i] = rnd.nextLong();
+        return out;
+    }
+
+    /** The same frames re-encoded: a few bits flipped in each, within {@link DuplicateFinder#RADIUS}. */
+    private static long[] noisy(Random rnd, long[] frames) {
+        long[] out = frames.clone();
+        for (int i = 0; i < out.length; i++) {
+            for (int k = 0; k < 3; k++) out[i] ^= 1L << rnd.nextInt(64);
+        }
+        return out;
+    }
+
+    @Test
+    void reencodedCopiesCluster() {
+        Random rnd = new Random(1);
+        long[] original = frames(rnd, 20);
+        Map<Long, long[]> assets = new HashMap<>();
+        assets.put(7L, original);
+        assets.put(3L, noisy(rnd, original));
+        assets.put(5L, frames(rnd, 20));
+
+        assertEquals(List.of(List.of(3L, 7L)), DuplicateFinder.clusters(assets));
+    }
+
+    @Test
+    void trimmedCopyJoinsItsOriginal() {
+        Random rnd = new Random(2);
+        long[] original = frames(rnd, 30);
+        Map<Long, long[]> assets = new HashMap<>();
+        assets.put(1L, original);
+        // A third of the original: all of its frames are in 1, but only a third of 1's are in it.
+        assets.put(2L, Arrays.copyOfRange(original, 10, 20));
+
+        assertEquals(List.of(List.of(1L, 2L)), DuplicateFinder.clusters(assets));
+    }
+
+    @Test
+    void partialOverlapBelowTheShareIsNotADuplicate() {
+        Random rnd = new Random(3);
+        long[] a = frames(rnd, 10);
+        long[] b = frames(rnd, 10);
+        System.arraycopy(a, 0, b, 0, 5);   // half of each in the other, under MIN_SHARE
+
+        assertTrue(DuplicateFinder.clusters(Map.of(1L, a, 2L, b)).isEmpty());
+    }
+
+    @Test
+    void linksMergeTransitively() {
+        Random rnd = new Random(4);
+        long[] x = frames(rnd, 10);
+        long[] y = frames(rnd, 10);
+        // 2 is all of x and all of y; 1 and 3 each match only half of 2 but all of themselves are in it.
+        long[] both = new long[20];
+        System.arraycopy(x, 0, both, 0, 10);
+        System.arraycopy(y, 0, both, 10, 10);
+        Map<Long, long[]> assets = Map.of(1L, x, 2L, both, 3L, y, 9L, frames(rnd, 10));
+
+        assertEquals(List.of(List.of(1L, 2L, 3L)), DuplicateFinder.clusters(assets));
+    }
+
+    @Test
+    void sameFramesInAnotherOrderAreNotADuplicate() {
+        Random rnd = new Random(6);
+        long[] a = frames(rnd, 12);
+        long[] b = a.clone();
+        // Same shots, cut together differently: every frame matches, but never at one offset.
+        for (int i = 0; i < b.length; i++) b[i] = a[(i * 5) % a.length];
+
+        assertTrue(DuplicateFinder.clusters(Map.of(1L, a, 2L, b)).isEmpty());
+    }
+
+    @Test
+    void overlapThatRunsPastTheOtherAssetIsNotACopy() {
+        Random rnd = new Random(7);
+        long[] b = frames(rnd, 10);
+        // The last 6 of b's frames, then 4 of its own: 60% of it is in b, in order, but it isn't a cut of b.
+        long[] a = new long[10];
+        System.arraycopy(b, 4, a, 0, 6);
+        System.arraycopy(frames(rnd, 4), 0, a, 6, 4);
+
+        assertTrue(DuplicateFinder.clusters(Map.of(1L, a, 2L, b)).isEmpty());
+    }
+
+    @Test
+    void separateTakesOfAStaticShotAreNotDuplicates() {
+        Random rnd = new Random(8);
+        long set = rnd.nextLong();
+        // Two talking-head takes of different lengths: every frame within a few bits of the same picture.
+        long[] take1 = new long[40];
+        long[] take2 = new long[25];
+        for (int i = 0; i < take1.length; i++) take1[i] = set ^ (1L << rnd.nextInt(64)) ^ (1L << rnd.nextInt(64));
+        for (int i = 0; i < take2.length; i++) take2[i] = set ^ (1L << rnd.nextInt(64)) ^ (1L << rnd.nextInt(64));
+
+        assertTrue(DuplicateFinder.clusters(Map.of(1L, take1, 2L, take2)).isEmpty());
+    }
+
+    @Test
+    void staticStretchesDoNotHideAMovingCopy() {
+        Random rnd = new Random(9);
+        long card = rnd.nextLong();
+        // A title card held for 5 s, then 15 s of motion; the copy is a re-encode of it.
+        long[] original = new long[20];
+        for (int i = 0; i < 5; i++) original[i] = card;
+        System.arraycopy(frames(rnd, 15), 0, original, 5, 15);
+
+        assertEquals(List.of(List.of(1L, 2L)), DuplicateFinder.clusters(Map.of(1L, original, 2L, noisy(rnd, original))));
+    }
+
+    @Test
+    void alignmentToleratesOneSampleOfDrift() {
+        // Frames 0..4 of A match B at offset 3, frame 5 only at offset 4 (sampling phase), frame 6 nowhere.
+        Map<Integer, List<Integer>> matches = Map.of(0, List.of(3), 1, List.of(4), 2, List.of(5, 9),
+                3, List.of(6), 4, List.of(7), 5, List.of(9));
+        assertEquals(6, DuplicateFinder.aligned(matches, 7, 10));
+        // B too short to hold all of A at that offset.
+        assertEquals(0, DuplicateFinder.aligned(matches, 7, 8));
+    }
+
+    @Test
+    void assetsWithTooFewFramesAreIgnored() {
+        Random rnd = new Random(5);
+        long[] original = frames(rnd, 10);
+        long[] stub = Arrays.copyOf(original, DuplicateFinder.MIN_FRAMES - 1);
+
+        assertTrue(DuplicateFinder.clusters(Map.of(1L, original, 2L, stub)).isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package videocutter.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ProjectTest {
+
+    private static List<String> spans(Project p) {
+        List<String> out = new ArrayList<>();
+        for (TimelineClip c : p.clips()) out.add(c.assetId() + ":" + c.startMs() + "-" + c.endMs());
+        return out;
+    }
+
+    @Test
+    void splitsAtEveryCutInOrder() {
+        Project p = new Project();
+        TimelineClip clip = new TimelineClip(5, 1_000, 10_000);
+        p.addClip(clip);
+
+        // Unsorted on purpose.
+        assertEquals(4, p.splitClipAtAll(clip, new long[]{7_000, 2_500, 4_000}));
+        assertEquals(List.of("5:1000-2500", "5:2500-4000", "5:4000-7000", "5:7000-10000"), spans(p));
+    }
+
+    @Test
+    void piecesReplaceTheClipInPlace() {
+        Project p = new Project();
+        TimelineClip before = new TimelineClip(1, 0, 1_000);
+        TimelineClip clip = new TimelineClip(2, 0, 3_000);
+        TimelineClip after = new TimelineClip(3, 0, 1_000);
+        p.addClip(before);
+        p.addClip(clip);
+        p.addClip(after);
+
+        assertEquals(2, p.splitClipAtAll(clip, new long[]{1_500}));
+        assertEquals(List.of("1:0-1000", "2:0-1500", "2:1500-3000", "3:0-1000"), spans(p));
+        assertSame(before, p.clips().get(0));
+        assertSame(after, p.clips().get(3));
+    }
+
+    @Test
+    void skipsCutsOutsideOrNearAPieceEdge() {
+        Project p = new Project();
+        TimelineClip clip = new TimelineClip(1, 1_000, 5_000);
+        p.addClip(clip);
+
+        // Outside the clip, within 100 ms of its start or end, within 100 ms of the previous cut, and a repeat.
+        long[] cuts = {0, 500, 1_100, 2_000, 2_000, 2_050, 3_000, 4_900, 6_000};
+        assertEquals(3, p.splitClipAtAll(clip, cuts));
+        assertEquals(List.of("1:1000-2000", "1:2000-3000", "1:3000-5000"), spans(p));
+    }
+
+    @Test
+    void noUsableCutLeavesTheClipAlone() {
+        Project p = new Project();
+        TimelineClip clip = new TimelineClip(1, 1_000, 5_000);
+        p.addClip(clip);
+
+        assertEquals(1, p.splitClipAtAll(clip, new long[]{1_050, 4_950}));
+        assertEquals(1, p.splitClipAtAll(clip, new long[0]));
+        assertSame(clip, p.clips().get(0));
+    }
+
+    @Test
+    void clipNotInTheProjectIsIgnored() {
+        Project p = new Project();
+        p.addClip(new TimelineClip(1, 0, 5_000));
+
+        assertEquals(0, p.splitClipAtAll(new TimelineClip(1, 0, 5_000), new long[]{2_000}));
+        assertEquals(List.of("1:0-5000"), spans(p));
+    }
+
+    @Test
+    void cutsDoNotMutateTheCallersArray() {
+        Project p = new Project();
+        TimelineClip clip = new TimelineClip(1, 0, 9_000);
+        p.addClip(clip);
+        long[] cuts = {6_000, 3_000};
+
+        p.splitClipAtAll(clip, cuts);
+        assertEquals(6_000, cuts[0]);
+        assertEquals(3_000, cuts[1]);
+    }
+}
@@ -0,0 +1,142 @@
+package videocutter.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigrationsTest {
+    @TempDir
+    Path dir;
+
+    private SqlitePool db;
+
+    @BeforeEach
+    void open() throws SQLException {
+        db = new SqlitePool("jdbc:sqlite:" + dir.resolve("library.db"), 1);
+    }
+
+    @AfterEach
+    void close() {
+        db.close();
+    }
+
+    private void exec(String... sql) throws SQLException {
+        db.writeAutoCommit(h -> {
+            try (Statement st = h.connection().createStatement()) {
+                for (String s : sql) st.execute(s);
+            }
+            return null;
+        });
+    }
+
+    private long query(String sql) throws SQLException {
+        return db.writeAutoCommit(h -> {
+            try (Statement st = h.connection().createStatement();
+                 ResultSet rs = st.executeQuery(sql)) {
+                return rs.next() ? rs.getLong(1) : -1L;
+            }
+        });
+    }
+
+    private boolean hasColumn(String table, String column) throws SQLException {
+        return db.read(h -> SchemaMigrations.hasColumn(h, table, column));
+    }
+
+    private boolean exists(String name) throws SQLException {
+        return query("SELECT count(*) FROM sqlite_master WHERE name = '" + name + "'") == 1;
+    }
+
+    @Test
+    void newFileGetsTheWholeSchema() throws SQLException {
+        SchemaMigrations.run(db);
+
+        assertEquals(SchemaMigrations.latest(), query("PRAGMA user_version"));
+        for (String table : new String[]{"videos", "video_blobs", "videos_fts", "keyframes", "scene_cuts",
+                "recent_projects", "frame_hashes"}) {
+            assertTrue(exists(table), table);
+        }
+        for (String column : new String[]{"storage", "content_hash", "size_bytes", "is_missing", "probe_mtime",
+                "scenes_scanned", "analyzed"}) {
+            assertTrue(hasColumn("videos", column), column);
+        }
+        assertTrue(hasColumn("keyframes", "time_base"));
+        assertTrue(exists("idx_videos_parent"));
+    }
+
+    @Test
+    void preVersioningFileKeepsItsRows() throws SQLException {
+        // What the first releases wrote: no user_version, the media inline, fewer columns.
+        exec("CREATE TABLE videos (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, duration_ms INTEGER, " +
+                        "width INTEGER, height INTEGER, created_at TEXT, data BLOB)",
+                "INSERT INTO videos(title, duration_ms, data) VALUES ('Holiday Clip', 4000, x'00000018')");
+        assertEquals(0, query("PRAGMA user_version"));
+
+        SchemaMigrations.run(db);
+
+        assertEquals(SchemaMigrations.latest(), query("PRAGMA user_version"));
+        assertEquals(1, query("SELECT count(*) FROM videos WHERE title = 'Holiday Clip' AND data IS NOT NULL"));
+        assertEquals(0, query("SELECT is_temp FROM videos"));
+        assertEquals(0, query("SELECT is_hidden FROM videos"));
+        assertTrue(hasColumn("videos", "edit_path"));
+        assertEquals("COPY", db.read(h -> {
+            try (ResultSet rs = h.prepare("SELECT storage FROM videos").executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }));
+        // The search index is filled from rows that were already there.
+        assertEquals(1, query("SELECT count(*) FROM videos_fts WHERE videos_fts MATCH 'holiday'"));
+    }
+
+    @Test
+    void runningAgainChangesNothing() throws SQLException {
+        SchemaMigrations.run(db);
+        exec("INSERT INTO videos(title) VALUES ('a')");
+        long objects = query("SELECT count(*) FROM sqlite_master");
+
+        SchemaMigrations.run(db);
+
+        assertEquals(SchemaMigrations.latest(), query("PRAGMA user_version"));
+        assertEquals(objects, query("SELECT count(*) FROM sqlite_master"));
+        assertEquals(1, query("SELECT count(*) FROM videos"));
+    }
+
+    @Test
+    void stepsSurviveASchemaAlreadyPartlyInPlace() throws SQLException {
+        // A file at user_version 0 that some unversioned build had already given later columns and tables.
+        exec("CREATE TABLE videos (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, path TEXT, storage TEXT NOT NULL DEFAULT 'COPY')",
+                "CREATE TABLE video_blobs (video_id INTEGER PRIMARY KEY, data BLOB NOT NULL)",
+                "INSERT INTO videos(title, path, storage) VALUES ('linked', '/media/a.mp4', 'REFERENCE')");
+
+        SchemaMigrations.run(db);
+
+        assertEquals(SchemaMigrations.latest(), query("PRAGMA user_version"));
+        assertEquals(1, query("SELECT count(*) FROM videos WHERE storage = 'REFERENCE' AND path = '/media/a.mp4'"));
+    }
+
+    @Test
+    void millisecondKeyframeIndexesAreQueuedForAnotherPass() throws SQLException {
+        SchemaMigrations.run(db);
+        // Roll the file back to v14: keyframes without a time base, every row analysed.
+        exec("INSERT INTO videos(id, title, analyzed) VALUES (1, 'old', 1), (2, 'no keyframes', 1)",
+                "INSERT INTO keyframes(video_id, count, data) VALUES (1, 1, x'00')",
+                "ALTER TABLE keyframes DROP COLUMN time_base",
+                "PRAGMA user_version=14");
+        assertFalse(hasColumn("keyframes", "time_base"));
+
+        SchemaMigrations.run(db);
+
+        assertTrue(hasColumn("keyframes", "time_base"));
+        assertEquals(0, query("SELECT analyzed FROM videos WHERE id = 1"));
+        assertEquals(1, query("SELECT analyzed FROM videos WHERE id = 2"));
+    }
+}
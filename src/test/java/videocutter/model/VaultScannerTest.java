@@ -0,0 +1,55 @@
+package videocutter.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VaultScannerTest {
+    private static final Instant CUTOFF = Instant.parse("2026-01-01T00:00:00Z");
+    private static final Path VAULT = Path.of("/vault");
+
+    private static VaultScanner.FileInfo at(String instant) {
+        return new VaultScanner.FileInfo(100, Instant.parse(instant));
+    }
+
+    @Test
+    void oldUnreferencedFilesAreOrphans() {
+        Map<Path, VaultScanner.FileInfo> files = new LinkedHashMap<>();
+        files.put(VAULT.resolve("a.mp4"), at("2025-06-01T00:00:00Z"));
+        files.put(VAULT.resolve("b.mp4"), at("2025-06-01T00:00:00Z"));
+
+        List<Path> orphans = VaultScanner.orphans(files, Set.of(VAULT.resolve("b.mp4")), CUTOFF, p -> false);
+
+        assertEquals(List.of(VAULT.resolve("a.mp4")), orphans);
+    }
+
+    @Test
+    void recentlyModifiedFilesAreKept() {
+        Map<Path, VaultScanner.FileInfo> files = Map.of(
+                VAULT.resolve("new.mp4"), at("2026-01-01T00:00:01Z"),
+                VAULT.resolve("edge.mp4"), at("2026-01-01T00:00:00Z"));
+
+        List<Path> orphans = VaultScanner.orphans(files, Set.of(), CUTOFF, p -> false);
+
+        // Exactly at the cutoff is old enough.
+        assertEquals(List.of(VAULT.resolve("edge.mp4")), orphans);
+    }
+
+    @Test
+    void filesClaimedByAnImportAreKeptWhateverTheirAge() {
+        // A hard link to a years-old original: old mtime, no row yet.
+        Path linked = VAULT.resolve("linked.mov");
+        Map<Path, VaultScanner.FileInfo> files = Map.of(linked, at("2019-03-02T10:00:00Z"));
+
+        assertTrue(VaultScanner.orphans(files, Set.of(), CUTOFF, linked::equals).isEmpty());
+        assertEquals(List.of(linked), VaultScanner.orphans(files, Set.of(), CUTOFF, p -> false));
+    }
+}
@@ -0,0 +1,98 @@
+package videocutter.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HexFormat;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class H264ParamsTest {
+    private static final Set<String> SETS = Set.of("6764001f", "68ebe3cb");
+
+    // avcC with one SPS and one PPS, as an MP4 source carries it.
+    private static final byte[] AVCC = HexFormat.of().parseHex("0164001fffe100046764001f01000468ebe3cb");
+
+    // The same parameter sets in-band, as an MPEG-TS piece carries them, with an SEI that doesn't count.
+    private static final byte[] ANNEX_B = HexFormat.of().parseHex("000000016764001f0000000168ebe3cb0000010605ff80");
+
+    @Test
+    void readsAvcC() {
+        assertEquals(SETS, H264Params.parameterSets(AVCC));
+    }
+
+    @Test
+    void readsAnnexB() {
+        assertEquals(SETS, H264Params.parameterSets(ANNEX_B));
+    }
+
+    @Test
+    void truncatedAvcCYieldsNothing() {
+        assertTrue(H264Params.parameterSets(java.util.Arrays.copyOf(AVCC, AVCC.length - 2)).isEmpty());
+        assertTrue(H264Params.parameterSets(new byte[0]).isEmpty());
+    }
+
+    @Test
+    void decodesFfprobeHexDump() {
+        String dump = "\n00000000: 0164 001f ffe1 0004 6764 001f 0100 0468 .d......gd.....h\n"
+                + "00000010: ebe3 cb                                 ...\n";
+        assertArrayEquals(AVCC, H264Params.hexDump(dump));
+    }
+
+    @Test
+    void parsesProbeJson() {
+        H264Params p = H264Params.parse("""
+                {"programs": [], "streams": [{"profile": "High", "level": 41, "refs": 4,
+                  "extradata": "\\n00000000: 0164 001f ffe1 0004 6764 001f 0100 0468 .d......gd.....h\\n00000010: ebe3 cb                                 ...\\n"}]}
+                """);
+        assertEquals("high", p.x264Profile());
+        assertEquals("4.1", p.x264Level());
+        assertEquals(4, p.refs());
+        assertEquals(SETS, p.parameterSets());
+        assertNull(H264Params.parse("{\"streams\": []}"));
+    }
+
+    @Test
+    void sameSetupMeansSameParameterSetsWhateverTheFraming() {
+        H264Params mp4 = new H264Params("High", 31, 4, H264Params.parameterSets(AVCC));
+        H264Params ts = new H264Params("High", 31, 4, H264Params.parameterSets(ANNEX_B));
+        assertTrue(mp4.sameDecoderSetup(ts));
+
+        H264Params otherPps = new H264Params("High", 31, 4, Set.of("6764001f", "68eb0000"));
+        assertFalse(mp4.sameDecoderSetup(otherPps));
+        assertFalse(mp4.sameDecoderSetup(null));
+        assertFalse(new H264Params("High", 31, 4, Set.of()).sameDecoderSetup(new H264Params("High", 31, 4, Set.of())));
+    }
+
+    @Test
+    void onlyProfilesX264CanMatch() {
+        assertEquals("baseline", new H264Params("Constrained Baseline", 30, 1, SETS).x264Profile());
+        assertEquals("main", new H264Params("Main", 30, 1, SETS).x264Profile());
+        assertNull(new H264Params("High 10", 30, 1, SETS).x264Profile());
+        assertNull(new H264Params(null, 30, 1, SETS).x264Profile());
+        assertNull(new H264Params("High", 0, 1, SETS).x264Level());
+    }
+
+    @Test
+    void readsX264sOwnPps() {
+        // x264 --preset medium --crf 23, High profile: CABAC, 3 refs, weighted P and B, 8x8 transform.
+        H264Params p = new H264Params("High", 31, 3, Set.of("6764001f", "68ebe3cb22c0"));
+        H264Params.Pps pps = p.pps();
+        assertEquals(new H264Params.Pps(true, 23, 3, true, true, -2, false, true), pps);
+        assertEquals("cabac=1:ref=3:weightp=2:weightb=1:8x8dct=1:constrained-intra=0:psy=0:chroma-qp-offset=-2",
+                pps.x264Params());
+    }
+
+    @Test
+    void ppsX264CantWriteIsRejected() {
+        // Two slice groups.
+        assertNull(H264Params.Pps.parse(HexFormat.of().parseHex("68c480")));
+        // Cut off before the deblocking flags.
+        assertNull(H264Params.Pps.parse(HexFormat.of().parseHex("68ebe3")));
+        assertNull(new H264Params("High", 31, 3, Set.of("6764001f")).pps());
+    }
+}
@@ -0,0 +1,55 @@
+package videocutter.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonTest {
+
+    @Test
+    void parsesNestedValues() {
+        Map<String, Object> root = Json.object(Json.parse(
+                "{ \"a\": [1, 2.5, -3e2], \"b\": {\"c\": true, \"d\": null}, \"e\": \"x\" }"));
+        assertEquals(List.of(1.0, 2.5, -300.0), Json.array(root.get("a")));
+        Map<String, Object> b = Json.object(root.get("b"));
+        assertEquals(Boolean.TRUE, b.get("c"));
+        assertTrue(b.containsKey("d"));
+        assertNull(b.get("d"));
+        assertEquals("x", root.get("e"));
+    }
+
+    @Test
+    void decodesEscapes() {
+        assertEquals("a\"b\\c/d\ne\u00e9", Json.parse("\"a\\\"b\\\\c\\/d\\ne\\u00e9\""));
+    }
+
+    @Test
+    void emptyContainers() {
+        assertEquals(Map.of(), Json.parse("{}"));
+        assertEquals(List.of(), Json.parse(" [ ] "));
+    }
+
+    @Test
+    void rejectsAnythingAfterTheValue() {
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("{} [error] corrupt packet"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("{\"a\": 1"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("\"open"));
+    }
+
+    @Test
+    void accessorsTolerateMissingAndStringlyTypedValues() {
+        assertEquals(Map.of(), Json.object(null));
+        assertEquals(List.of(), Json.array("not a list"));
+        assertEquals(10.01, Json.number("10.010000", 0), 1e-9);
+        assertEquals(7, Json.number(null, 7));
+        assertEquals(7, Json.number("N/A", 7));
+        assertNull(Json.string(""));
+        assertNull(Json.string(1.0));
+    }
+}
@@ -0,0 +1,116 @@
+package videocutter.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyframeIndexTest {
+
+    @Test
+    void encodesGapsAsVarints() {
+        // Gaps 0, 127, 1 and 16384: one, one, one and three bytes.
+        KeyframeIndex kf = KeyframeIndex.ofMillis(new long[]{0, 127, 128, 16_512});
+        assertArrayEquals(new byte[]{0x00, 0x7F, 0x01, (byte) 0x80, (byte) 0x80, 0x01}, kf.encode());
+    }
+
+    @Test
+    void decodeInvertsEncode() {
+        long[] times = {0, 2_002, 4_004, 6_006, 600_000, 3_600_000_000L};
+        KeyframeIndex kf = KeyframeIndex.ofMillis(times);
+        KeyframeIndex back = KeyframeIndex.decode(kf.encode(), kf.size(), null);
+        assertEquals(times.length, back.size());
+        for (long t : times) assertEquals(t, back.floor(t));
+        assertArrayEquals(kf.encode(), back.encode());
+    }
+
+    @Test
+    void decodeStopsAtTruncatedData() {
+        KeyframeIndex kf = KeyframeIndex.ofMillis(new long[]{1_000, 2_000, 3_000});
+        byte[] data = kf.encode();
+        KeyframeIndex back = KeyframeIndex.decode(java.util.Arrays.copyOf(data, data.length - 2), 3, null);
+        assertEquals(2, back.size());
+        assertEquals(2_000, back.floor(10_000));
+    }
+
+    @Test
+    void sortsAndDropsDuplicatesAndNegatives() {
+        KeyframeIndex kf = KeyframeIndex.ofMillis(new long[]{4_000, -5, 0, 2_000, 2_000});
+        assertEquals(3, kf.size());
+        assertEquals(KeyframeIndex.ofMillis(new long[]{0, 2_000, 4_000}).encode().length, kf.encode().length);
+    }
+
+    @Test
+    void floorAndCeilingIncludeExactHits() {
+        KeyframeIndex kf = KeyframeIndex.ofMillis(new long[]{1_000, 3_000, 5_000});
+        assertEquals(0, kf.floor(999));
+        assertEquals(1_000, kf.floor(1_000));
+        assertEquals(1_000, kf.floor(2_999));
+        assertEquals(3_000, kf.floor(3_000));
+        assertEquals(5_000, kf.floor(9_000));
+
+        assertEquals(1_000, kf.ceiling(0));
+        assertEquals(3_000, kf.ceiling(1_001));
+        assertEquals(5_000, kf.ceiling(5_000));
+        assertEquals(-1, kf.ceiling(5_001));
+    }
+
+    @Test
+    void keepsTicksAndTimeBaseThroughStorage() {
+        // 29.97 fps in a 1/90000 time base: keyframes every 2.002 s.
+        KeyframeIndex kf = KeyframeIndex.of(new long[]{0, 180_180, 360_360}, 1, 90_000);
+        assertTrue(kf.exact());
+        assertEquals("1/90000", kf.timeBase());
+
+        KeyframeIndex back = KeyframeIndex.decode(kf.encode(), kf.size(), kf.timeBase());
+        assertTrue(back.exact());
+        assertEquals(360_360, back.floorPts(400_000));
+        assertEquals(180_180, back.ceilingPts(1));
+    }
+
+    @Test
+    void indexWithoutTimeBaseIsMilliseconds() {
+        KeyframeIndex legacy = KeyframeIndex.decode(KeyframeIndex.ofMillis(new long[]{0, 2_002}).encode(), 2, null);
+        assertFalse(legacy.exact());
+        assertNull(legacy.timeBase());
+        assertEquals(2_002, legacy.floor(3_000));
+        assertFalse(KeyframeIndex.decode(new byte[]{0}, 1, "garbage").exact());
+    }
+
+    @Test
+    void millisecondViewsRoundUp() {
+        // 23.976 fps in 1/24000: a keyframe at 25025 ticks is 1042.708 ms.
+        KeyframeIndex kf = KeyframeIndex.of(new long[]{0, 25_025}, 1, 24_000);
+        assertEquals(1_043, kf.millis(25_025));
+        assertEquals(1_042_709, kf.micros(25_025));
+        assertEquals(1_043, kf.floor(1_043));
+        assertEquals(0, kf.floor(1_042));
+        assertEquals(1_043, kf.ceiling(1_001));
+    }
+
+    @Test
+    void ticksAtIsTheFirstTickAtOrAfter() {
+        KeyframeIndex kf = KeyframeIndex.of(new long[]{0}, 1, 24_000);
+        assertEquals(25_032, kf.ticksAt(1_043));
+        assertEquals(24_000, kf.ticksAt(1_000));
+        assertEquals(0, kf.ticksAt(0));
+
+        KeyframeIndex coarse = KeyframeIndex.of(new long[]{0}, 1001, 30_000);
+        assertEquals(30, coarse.ticksAt(1_001));
+        assertEquals(31, coarse.ticksAt(1_002));
+        assertEquals(1.001, coarse.seconds(30), 1e-12);
+    }
+
+    @Test
+    void exactFloorAndCeilingReportMissingAsMinusOne() {
+        KeyframeIndex kf = KeyframeIndex.of(new long[]{512, 30_720}, 1, 15_360);
+        assertEquals(-1, kf.floorPts(511));
+        assertEquals(512, kf.floorPts(512));
+        assertEquals(512, kf.floorPts(30_719));
+        assertEquals(30_720, kf.ceilingPts(513));
+        assertEquals(-1, kf.ceilingPts(30_721));
+    }
+}
@@ -0,0 +1,61 @@
+package videocutter.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProbeParseTest {
+
+    @Test
+    void readsFirstVideoAndAudioStream() {
+        MediaInfo info = FfmpegService.parseProbe("""
+                {
+                    "programs": [],
+                    "streams": [
+                        {"codec_name": "h264", "codec_type": "video", "width": 1920, "height": 1080,
+                         "pix_fmt": "yuv420p", "r_frame_rate": "30000/1001"},
+                        {"codec_name": "aac", "codec_type": "audio", "sample_rate": "48000",
+                         "channels": 2, "channel_layout": "stereo"},
+                        {"codec_name": "mov_text", "codec_type": "subtitle"}
+                    ],
+                    "format": {"duration": "12.345000", "bit_rate": "8000000"}
+                }
+                """);
+        assertTrue(info.isKnown());
+        assertEquals(12_345, info.durationMs());
+        assertEquals(1920, info.width());
+        assertEquals(1080, info.height());
+        assertEquals(29.97, info.fps(), 0.001);
+        assertEquals("h264", info.videoCodec());
+        assertEquals("yuv420p", info.pixelFormat());
+        assertEquals("aac", info.audioCodec());
+        assertEquals(48_000, info.sampleRate());
+        assertEquals(2, info.channels());
+        assertEquals("stereo", info.channelLayout());
+        assertEquals(8_000_000, info.bitRate());
+        assertEquals(3, info.streams());
+    }
+
+    @Test
+    void audioOnlyFile() {
+        MediaInfo info = FfmpegService.parseProbe("""
+                {"streams": [{"codec_name": "mp3", "codec_type": "audio", "sample_rate": "44100", "channels": 1}],
+                 "format": {"duration": "3.000000"}}
+                """);
+        assertFalse(info.hasVideo());
+        assertTrue(info.hasAudio());
+        assertNull(info.pixelFormat());
+        assertEquals(0, info.fps());
+        assertEquals(3_000, info.durationMs());
+    }
+
+    @Test
+    void missingDurationIsNeverZero() {
+        MediaInfo info = FfmpegService.parseProbe("{\"streams\": [], \"format\": {}}");
+        assertEquals(1, info.durationMs());
+        assertFalse(info.isKnown());
+    }
+}
@@ -0,0 +1,99 @@
+package videocutter.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmartRenderPiecesTest {
+    private static final Path FILE = Path.of("clip.mp4");
+
+    // 30 fps in a 1/15360 time base (512 ticks a frame), a keyframe every 2 s.
+    private static final KeyframeIndex GOP_2S = KeyframeIndex.of(new long[]{0, 30_720, 61_440, 92_160}, 1, 15_360);
+
+    // 29.97 fps in a 1/90000 time base: a keyframe every 2.002 s.
+    private static final KeyframeIndex NTSC = KeyframeIndex.of(new long[]{0, 180_180, 360_360, 540_540}, 1, 90_000);
+
+    private static List<FfmpegService.Piece> pieces(KeyframeIndex kf, long startMs, long endMs) {
+        return FfmpegService.pieces(new FfmpegService.Segment(FILE, startMs, endMs, null, kf));
+    }
+
+    @Test
+    void copiesWholeGopsAndEncodesTheEnds() {
+        List<FfmpegService.Piece> p = pieces(GOP_2S, 500, 5_000);
+        assertEquals(3, p.size());
+        assertPiece(p.get(0), 7_680, 30_720, false);
+        assertPiece(p.get(1), 30_720, 61_440, true);
+        assertPiece(p.get(2), 61_440, 76_800, false);
+    }
+
+    @Test
+    void piecesTileTheSegmentWithoutOverlap() {
+        for (long start = 0; start < 4_000; start += 37) {
+            List<FfmpegService.Piece> p = pieces(NTSC, start, start + 4_500);
+            assertEquals(NTSC.ticksAt(start), p.get(0).startPts());
+            assertEquals(NTSC.ticksAt(start + 4_500), p.get(p.size() - 1).endPts());
+            for (int i = 1; i < p.size(); i++) {
+                // Half-open ranges that meet: a boundary keyframe is in exactly one piece.
+                assertEquals(p.get(i - 1).endPts(), p.get(i).startPts());
+            }
+            for (FfmpegService.Piece piece : p) {
+                if (piece.copy()) {
+                    assertEquals(piece.startPts(), NTSC.floorPts(piece.startPts()));
+                    assertEquals(piece.endPts(), NTSC.floorPts(piece.endPts()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void leadingPieceEndsBeforeTheKeyframe() {
+        // 2.002 s is 2002 ms exactly here, but the piece boundary is the tick, not a rounded time.
+        List<FfmpegService.Piece> p = pieces(NTSC, 1_000, 6_000);
+        assertPiece(p.get(0), 90_000, 180_180, false);
+        assertPiece(p.get(1), 180_180, 360_360, true);
+        assertTrue(p.get(1).copy());
+    }
+
+    @Test
+    void inPointOnAKeyframeNeedsNoLeadingPiece() {
+        List<FfmpegService.Piece> p = pieces(GOP_2S, 2_000, 6_000);
+        assertEquals(1, p.size());
+        assertPiece(p.get(0), 30_720, 92_160, true);
+    }
+
+    @Test
+    void outPointOnAKeyframeLeavesThatKeyframeOut() {
+        List<FfmpegService.Piece> p = pieces(NTSC, 2_002, 4_004);
+        assertEquals(1, p.size());
+        assertPiece(p.get(0), 180_180, 360_360, true);
+    }
+
+    @Test
+    void segmentWithoutAWholeGopIsOneEncodedPiece() {
+        List<FfmpegService.Piece> p = pieces(NTSC, 2_100, 4_003);
+        assertEquals(1, p.size());
+        assertPiece(p.get(0), 189_000, 360_270, false);
+
+        p = pieces(GOP_2S, 100, 1_900);
+        assertEquals(1, p.size());
+        assertFalse(p.get(0).copy());
+    }
+
+    @Test
+    void pastTheLastKeyframeIsOneEncodedPiece() {
+        List<FfmpegService.Piece> p = pieces(GOP_2S, 6_500, 7_000);
+        assertEquals(1, p.size());
+        assertPiece(p.get(0), 99_840, 107_520, false);
+    }
+
+    private static void assertPiece(FfmpegService.Piece p, long startPts, long endPts, boolean copy) {
+        assertEquals(startPts, p.startPts(), "start");
+        assertEquals(endPts, p.endPts(), "end");
+        assertEquals(copy, p.copy(), "copy");
+    }
+}